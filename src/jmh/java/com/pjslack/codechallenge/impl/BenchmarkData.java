@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.generator.DatasetGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A generated data set held in memory for the benchmarks.
+ *
+ * The data comes from the DatasetGenerator with its default seed, so the
+ * catalog and the listing feed both grow by the scale factor and every run of
+ * a benchmark sees the same bytes.
+ *
+ * @author Peter J Slack
+ */
+final class BenchmarkData
+{
+
+    /**
+     * the product catalog as UTF-8 JSON lines
+     */
+    final byte[] products;
+
+    /**
+     * the listings as UTF-8 JSON lines
+     */
+    final byte[] listings;
+
+    private BenchmarkData(byte[] products, byte[] listings)
+    {
+        this.products = products;
+        this.listings = listings;
+    }
+
+    /**
+     * @param scale - the number of copies of the bundled catalog
+     * @return the generated data set
+     * @throws IOException - if the data cannot be generated
+     */
+    static BenchmarkData generate(int scale) throws IOException
+    {
+        ByteArrayOutputStream products = new ByteArrayOutputStream();
+        ByteArrayOutputStream listings = new ByteArrayOutputStream();
+        try (Writer p = new OutputStreamWriter(products, StandardCharsets.UTF_8);
+                Writer l = new OutputStreamWriter(listings, StandardCharsets.UTF_8))
+        {
+            new DatasetGenerator(scale, DatasetGenerator.DEFAULT_SEED).generate(p, l, null);
+        }
+        return new BenchmarkData(products.toByteArray(), listings.toByteArray());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
+import com.pjslack.codechallenge.normalize.KeyNormalizer;
+import com.pjslack.codechallenge.searchengine.MatchResult;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks matching one listing, the whole of match() and the matchModel()
+ * step once the manufacturer or family is known, the inner loop of the match
+ * phase.
+ *
+ * The titles cover a plain hit, a hit found through the product family, a hit
+ * that needs the duplicate model resolution and a miss.
+ *
+ * @author Peter J Slack
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MatchModelBenchmark
+{
+
+    /**
+     * manufacturer|family|title of a representative listing
+     */
+    @Param(
+            {
+                "Canon||Canon PowerShot D10 12.1 MP Waterproof Digital Camera with 3x Optical Image Stabilized Zoom and 2.5-inch LCD (Blue/Silver)",
+                "Sony|Cyber-shot|Sony Cyber-shot DSC-W310 12.1MP Digital Camera with 4x Wide Angle Zoom with Digital Steady Shot Image Stabilization and 2.7 inch LCD (Silver)",
+                "Nikon||Nikon Coolpix S3000 12.0 MP Digital Camera with 4x Optical Zoom and 2.7-Inch LCD (Red)",
+                "Canon||Canon Battery Grip BG-E6 for EOS 5D Mark II"
+            })
+    public String listing;
+
+    private SlackerTestMethod engine;
+    private ModelScope scope;
+    private String titleC;
+    private Listing listingObject;
+
+    /**
+     * Builds the engine and conditions the listing
+     *
+     * @throws IOException - if the bundled data cannot be read
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        Logger.getLogger(CodeChallenge.class.getName()).setLevel(Level.OFF);
+        Logger.getLogger(SlackerTestMethod.class.getName()).setLevel(Level.OFF);
+
+        engine = new SlackerTestMethod(new CodeChallenge());
+        engine.buildIndex();
+
+        String[] fields = listing.split("\\|", 3);
+        //the scope is found once, as the vocabulary search would find it
+        scope = engine.modelScope(KeyNormalizer.conditionManufacturer(fields[0]),
+                fields[1].isEmpty() ? null : KeyNormalizer.conditionFamily(fields[1]));
+        titleC = fields[2].toUpperCase();
+        listingObject = new Listing(fields[2], fields[0], null);
+    }
+
+    /**
+     * @return the matched product or the reason there is none
+     */
+    @Benchmark
+    public MatchResult matchModel()
+    {
+        return engine.matchModel(scope, titleC);
+    }
+
+    /**
+     * @return the matched product or the reason there is none
+     */
+    @Benchmark
+    public MatchResult match()
+    {
+        return engine.match(listingObject);
+    }
+}
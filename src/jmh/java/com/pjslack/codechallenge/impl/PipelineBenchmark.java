@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks each phase of the pipeline separately: loading the JSON lines,
+ * validating them into products and listings, building the object relation
+ * maps, matching and writing the results.
+ *
+ * The data is generated by the DatasetGenerator at the scale parameter and
+ * held in memory so that the disk is not part of the measurement.
+ *
+ * @author Peter J Slack
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark
+{
+
+    /**
+     * the number of copies of the bundled catalog
+     */
+    @Param(
+            {
+                "1", "4"
+            })
+    public int scale;
+
+    /**
+     * the number of matching threads
+     */
+    @Param(
+            {
+                "1"
+            })
+    public int threads;
+
+    private byte[] listingData;
+    private byte[] productData;
+    private CodeChallenge codeChallenge;
+    private SlackerTestMethod engine;
+    private HashMap<String, ArrayList<Listing>> results;
+    private File resultFile;
+
+    /**
+     * Builds the data and a loaded and indexed engine for the later phases
+     *
+     * @throws IOException - if the data cannot be built
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        //the duplicate and invalid record warnings would swamp the output
+        Logger.getLogger(CodeChallenge.class.getName()).setLevel(Level.OFF);
+        Logger.getLogger(SlackerTestMethod.class.getName()).setLevel(Level.OFF);
+
+        BenchmarkData data = BenchmarkData.generate(scale);
+        listingData = data.listings;
+        productData = data.products;
+        codeChallenge = newCodeChallenge();
+
+        engine = new SlackerTestMethod(codeChallenge);
+        engine.setParallelism(threads);
+        engine.buildObjectRelationMaps();
+        engine.match();
+        results = engine.getResults();
+
+        resultFile = File.createTempFile("codeChallenge", ".txt");
+    }
+
+    /**
+     * removes the result file
+     */
+    @TearDown
+    public void tearDown()
+    {
+        resultFile.delete();
+    }
+
+    private CodeChallenge newCodeChallenge() throws IOException
+    {
+        return new CodeChallenge(new ByteArrayInputStream(listingData), new ByteArrayInputStream(productData));
+    }
+
+    /**
+     * @param bh - consumes each record
+     * @return the number of listing records parsed
+     * @throws IOException - if the data cannot be read
+     */
+    @Benchmark
+    public long loadListings(Blackhole bh) throws IOException
+    {
+        return codeChallenge.loadResourceStream(new ByteArrayInputStream(listingData), bh::consume);
+    }
+
+    /**
+     * @return the listings and products parsed and validated
+     * @throws IOException - if the data cannot be read
+     */
+    @Benchmark
+    public CodeChallenge loadAndValidate() throws IOException
+    {
+        return newCodeChallenge();
+    }
+
+    /**
+     * @return an engine with its object relation maps built
+     */
+    @Benchmark
+    public SlackerTestMethod buildObjectRelationMaps()
+    {
+        SlackerTestMethod e = new SlackerTestMethod(codeChallenge);
+        e.buildObjectRelationMaps();
+        return e;
+    }
+
+    /**
+     * @return the number of matched listings
+     */
+    @Benchmark
+    public int match()
+    {
+        engine.clearResults();
+        engine.match();
+        return engine.getNumberOfMatches();
+    }
+
+    /**
+     * @throws IOException - if the results cannot be written
+     */
+    @Benchmark
+    public void dumpResults() throws IOException
+    {
+        codeChallenge.dumpResults(resultFile.getPath(), results);
+    }
+}
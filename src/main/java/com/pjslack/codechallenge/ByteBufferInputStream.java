@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a byte buffer from its position to its limit, the buffer's position
+ * moves as it is read
+ *
+ * @author Peter J Slack
+ */
+public final class ByteBufferInputStream extends InputStream
+{
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a stream over a buffer
+     *
+     * @param buffer - the buffer, read from its position to its limit
+     */
+    public ByteBufferInputStream(ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read()
+    {
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!buffer.hasRemaining())
+        {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+}
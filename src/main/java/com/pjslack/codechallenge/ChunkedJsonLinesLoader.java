@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+
+/**
+ * Reads a UTF-8 JSON lines file with several threads.
+ *
+ * The file is split into chunks that end on a line feed, each chunk is
+ * memory mapped and parsed on a pool thread, and the records of the chunks are
+ * handed to the consumer on the calling thread in file order. The consumer sees
+ * exactly the records a JsonLinesReader over the whole file would give, in the
+ * same order, so the checks that depend on the order of the records, such as
+ * which of two listings with the same title is the duplicate, are unchanged.
+ *
+ * A line feed byte never occurs inside a multi-byte UTF-8 character so a chunk
+ * boundary never splits a character. Only a few chunks are parsed ahead of the
+ * consumer so the parsed records held at once stay bounded.
+ *
+ * Chunks are read into JSON objects unless another ChunkReader is given, such
+ * as the ListingScanner that only decodes the fields the matching needs. The
+ * bytes of the file can be given to a digest as the chunks are mapped, in file
+ * order, so a file that is hashed is still only read once.
+ *
+ * @author Peter J Slack
+ */
+public class ChunkedJsonLinesLoader
+{
+
+    /**
+     * the default target size of a chunk in bytes
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+    /**
+     * the bytes read at a time looking for the end of a line
+     */
+    private static final int SCAN_SIZE = 8192;
+
+    /**
+     * Reads the records of one chunk
+     *
+     * @param <T> - the record type
+     */
+    public interface ChunkReader<T>
+    {
+
+        /**
+         * Reads every record of a chunk, it may be called on several threads
+         * at once for different chunks
+         *
+         * @param chunk - the chunk from its position to its limit, every line
+         * ends with a line feed but the last line of the file
+         * @param offset - the offset of the chunk in the file
+         * @param records - given each record in order
+         * @return the number of records read
+         * @throws JsonException - if a line cannot be read
+         */
+        long read(ByteBuffer chunk, long offset, Consumer<T> records) throws JsonException;
+    }
+
+    /**
+     * reads every line as a JSON object
+     */
+    public static final ChunkReader<JsonObject> JSON_LINES = (chunk, offset, records) ->
+    {
+        try (JsonLinesReader reader = new JsonLinesReader(new ByteBufferInputStream(chunk)))
+        {
+            reader.forEachRemaining(records);
+            return reader.getRecordCount();
+        }
+    };
+
+    private final int threads;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Creates a loader
+     *
+     * @param threads - the threads parsing chunks
+     */
+    public ChunkedJsonLinesLoader(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param bytes - the target size of a chunk, a chunk is longer when its
+     * last line is
+     * @throws IllegalArgumentException - if the size is not positive
+     */
+    public void setChunkSize(int bytes) throws IllegalArgumentException
+    {
+        if (bytes <= 0)
+        {
+            throw (new IllegalArgumentException("chunk size must be positive"));
+        }
+        chunkSize = bytes;
+    }
+
+    /**
+     * @return the target size of a chunk in bytes
+     */
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * Reads every record of a file
+     *
+     * @param file - the JSON lines file
+     * @param records - given each record in file order on the calling thread
+     * @return the number of records read
+     * @throws IOException - error reading the file
+     * @throws JsonException - if the file is not valid JSON lines
+     */
+    public long load(File file, Consumer<JsonObject> records) throws IOException, JsonException
+    {
+        return load(file, JSON_LINES, records);
+    }
+
+    /**
+     * Reads every record of a file with a chunk reader
+     *
+     * @param <T> - the record type
+     * @param file - the JSON lines file
+     * @param reader - reads the records of each chunk
+     * @param records - given each record in file order on the calling thread
+     * @return the number of records read
+     * @throws IOException - error reading the file
+     * @throws JsonException - if the file is not valid JSON lines
+     */
+    public <T> long load(File file, ChunkReader<T> reader, Consumer<T> records) throws IOException, JsonException
+    {
+        return load(file, reader, records, null);
+    }
+
+    /**
+     * Reads every record of a file with a chunk reader, hashing the bytes of
+     * the file as they are read
+     *
+     * @param <T> - the record type
+     * @param file - the JSON lines file
+     * @param reader - reads the records of each chunk
+     * @param records - given each record in file order on the calling thread
+     * @param digest - updated with every byte of the file in order, null for
+     * none
+     * @return the number of records read
+     * @throws IOException - error reading the file
+     * @throws JsonException - if the file is not valid JSON lines
+     */
+    public <T> long load(File file, ChunkReader<T> reader, Consumer<T> records, MessageDigest digest) throws IOException, JsonException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            List<long[]> chunks = split(channel);
+            if (chunks.size() <= 1 || threads == 1)
+            {
+                long count = 0;
+                for (long[] chunk : chunks)
+                {
+                    count += parse(file, map(file, channel, chunk, digest), chunk[0], reader, records);
+                }
+                return count;
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, chunks.size()), (r) ->
+            {
+                Thread t = new Thread(r, "json-lines-loader");
+                t.setDaemon(true);
+                return t;
+            });
+            try
+            {
+                long count = 0;
+                ArrayDeque<Future<List<T>>> pending = new ArrayDeque<>();
+                int next = 0;
+                while (next < chunks.size() || !pending.isEmpty())
+                {
+                    //keep every thread busy and one chunk more waiting for the consumer
+                    //the chunks are mapped and hashed here so the digest sees
+                    //them in file order
+                    while (next < chunks.size() && pending.size() <= threads)
+                    {
+                        long[] chunk = chunks.get(next++);
+                        ByteBuffer buffer = map(file, channel, chunk, digest);
+                        pending.add(pool.submit(() ->
+                        {
+                            List<T> parsed = new ArrayList<>();
+                            parse(file, buffer, chunk[0], reader, parsed::add);
+                            return parsed;
+                        }));
+                    }
+
+                    List<T> parsed = await(pending.remove());
+                    parsed.forEach(records);
+                    count += parsed.size();
+                }
+                return count;
+            } finally
+            {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static <T> List<T> await(Future<List<T>> chunk) throws IOException, JsonException
+    {
+        try
+        {
+            return chunk.get();
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw (new IOException("interrupted reading JSON lines", ex));
+        } catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw (new IOException(cause));
+        }
+    }
+
+    /**
+     * Splits the file into chunks of about the chunk size that each end after
+     * a line feed or at the end of the file
+     *
+     * @param channel - the file
+     * @return the start and end offset of each chunk
+     * @throws IOException - error reading the file
+     */
+    List<long[]> split(FileChannel channel) throws IOException
+    {
+        List<long[]> chunks = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        long start = 0;
+        while (start < size)
+        {
+            long end = Math.min(size, start + chunkSize);
+            //move the end past the next line feed
+            while (end < size)
+            {
+                scan.clear();
+                int n = channel.read(scan, end);
+                if (n <= 0)
+                {
+                    end = size;
+                    break;
+                }
+                int i = 0;
+                while (i < n && scan.get(i) != '\n')
+                {
+                    i++;
+                }
+                end += i < n ? i + 1 : n;
+                if (i < n)
+                {
+                    break;
+                }
+            }
+            chunks.add(new long[]
+            {
+                start, end
+            });
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Maps a chunk and hashes it
+     *
+     * @return the chunk from its start to its end
+     */
+    private static ByteBuffer map(File file, FileChannel channel, long[] chunk, MessageDigest digest) throws IOException
+    {
+        long length = chunk[1] - chunk[0];
+        if (length > Integer.MAX_VALUE)
+        {
+            throw (new IOException("a line of " + file + " near byte " + chunk[0] + " is longer than 2GB"));
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], length);
+        if (digest != null)
+        {
+            digest.update(buffer.duplicate());
+        }
+        return buffer;
+    }
+
+    private static <T> long parse(File file, ByteBuffer buffer, long offset, ChunkReader<T> reader, Consumer<T> records) throws JsonException
+    {
+        try
+        {
+            return reader.read(buffer, offset, records);
+        } catch (JsonException ex)
+        {
+            //the line numbers of a reader count from the start of the chunk
+            throw (new JsonException(file + " from byte " + offset + ": " + ex.getMessage(), ex));
+        }
+    }
+}
@@ -23,19 +23,29 @@
  */
 package com.pjslack.codechallenge;
 
+import com.pjslack.codechallenge.impl.IndexSnapshot;
+import com.pjslack.codechallenge.impl.MatchTracer;
 import com.pjslack.codechallenge.impl.SlackerTestMethod;
+import com.pjslack.codechallenge.impl.TitleMatchCache;
+import com.pjslack.codechallenge.metrics.Metrics;
+import com.pjslack.codechallenge.normalize.KeyNormalizer;
 import com.pjslack.codechallenge.searchengine.AbstractSearchEngine;
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
+import com.pjslack.codechallenge.searchengine.ResultSink;
+import com.pjslack.codechallenge.searchengine.SearchEngines;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.json.Json;
@@ -44,9 +54,9 @@ import javax.json.JsonArrayBuilder;
 import javax.json.JsonBuilderFactory;
 import javax.json.JsonException;
 import javax.json.JsonObject;
-import javax.json.JsonReader;
 
 import javax.json.stream.JsonParsingException;
+import javax.management.JMException;
 
 /**
  * This is a Framework Class and main entry point for the code challenge refer
@@ -68,15 +78,18 @@ public final class CodeChallenge
     public static final String PRODUCTS_RESOURCE_PATH = "/products.txt";
 
     /**
-     * The raw product JSON array products are expected in JSON line format
+     * the file name of the match index snapshot the match server keeps in the
+     * working directory, a command line run only keeps one when given --index
+     */
+    public static final String INDEX_SNAPSHOT_FILE_NAME = "codeChallenge.idx";
+
+    /*
+     * Products are expected in JSON line format
      * Product { "product_name": String // A unique id for the product
      * "manufacturer": String "family": String // optional grouping of products
      * "model": String "announced-date": String // ISO-8601 formatted date
      * string, e.g. 2011-04-28T19:00:00.000-05:00 } * } }
-     */
-    private final JsonArray products;
-
-    /**
+     *
      * Listing
      *
      * {
@@ -84,21 +97,23 @@ public final class CodeChallenge
      * // who manufactures the product for sale "currency": String // currency
      * code, e.g. USD, CAD, GBP, etc. "price": String // price, e.g. 19.99,
      * 100.00 }
+     *
+     * Neither is kept as read, each record is checked as it is streamed in
+     * and only the validated Product and Listing records below are kept
      */
-    private final JsonArray listings;
 
     /**
      * this is used to check the uniqueness of the given product set we will
      * check against, this contains a validated data set to use for the
      * processing
      */
-    private final HashMap<String, JsonObject> productKeys = new HashMap<>();
+    private final HashMap<String, Product> productKeys = new HashMap<>();
 
     /**
      * this is used to check the uniqueness of the given product listing set we
      * will check it contains a validated data set to use for the processing
      */
-    private final HashMap<String, JsonObject> listingKeys = new HashMap<>();
+    private final HashMap<String, Listing> listingKeys = new HashMap<>();
 
     /**
      * any listings that are duplicates we put here so we only search them once.
@@ -107,7 +122,7 @@ public final class CodeChallenge
      * duplicate listings to the ones that have been matched up to a product.
      *
      */
-    private final HashMap<String, ArrayList<JsonObject>> duplicateListings = new HashMap<>();
+    private final HashMap<String, ArrayList<Listing>> duplicateListings = new HashMap<>();
 
     /**
      * Field name used in listing and product list to identify manufacturer
@@ -154,17 +169,65 @@ public final class CodeChallenge
      */
     private int numInvalidProductDefinitions = 0;
 
+    /**
+     * the number of listings left out by the listing filter
+     */
+    private int numSkippedListings = 0;
+
+    /**
+     * the problems found in the input, the search engines report into it
+     */
+    private final ValidationReport validationReport = new ValidationReport();
+
+    /**
+     * the timings and counts of this run, the search engines record into it
+     */
+    private final Metrics metrics = new Metrics();
+
     /**
      * Program to test a search engine to match products to product listings
      *
-     * @param args - no arguments required
+     * @param args - the options described by CommandLineOptions.usage(), none
+     * are required
      */
     public static void main(String[] args)
     {
+        CommandLineOptions options = null;
+        try
+        {
+            options = CommandLineOptions.parse(args);
+        } catch (IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            System.err.println(CommandLineOptions.usage());
+            System.exit(1);
+        }
+        if (options.isHelp())
+        {
+            System.out.println(CommandLineOptions.usage());
+            return;
+        }
+
+        //the statistics stay off standard output when the results are written there
+        PrintStream report = options.isStandardOutput() ? System.err : System.out;
+
         CodeChallenge c = null;
+        //the product data is hashed to validate the index snapshot
+        MessageDigest catalogDigest = IndexSnapshot.newCatalogDigest();
         try
         {
-            c = new CodeChallenge();
+            File listingFile = options.getChunkedListings();
+            File productFile = options.getChunkedProducts();
+            //plain files are always mapped and scanned, on one thread or many,
+            //so a file is read the same way whatever the thread count
+            if (listingFile != null && productFile != null)
+            {
+                //the product file is hashed by the loader as it is read
+                c = new CodeChallenge(listingFile, productFile, options.getThreads(), catalogDigest);
+            } else
+            {
+                c = new CodeChallenge(options.openListings(), new DigestInputStream(options.openProducts(), catalogDigest));
+            }
 
         } catch (NullPointerException | IllegalStateException | JsonException | IOException ex)
         {
@@ -176,52 +239,199 @@ public final class CodeChallenge
             System.exit(2);
         }
 
-        //TODO: allow user to enter different search implementations
-        AbstractSearchEngine se = new SlackerTestMethod(c);
+        try
+        {
+            //the timings can be watched with jconsole while a long run goes on
+            Metrics.register(c.getMetrics());
+        } catch (JMException ex)
+        {
+            Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Metrics could not be registered with JMX", ex);
+        }
+
+        AbstractSearchEngine se = SearchEngines.create(options.getEngine(), c);
+        se.setParallelism(options.getThreads());
+        se.setBatchSize(options.getBatchSize());
+
+        MatchTracer tracer = null;
+        if (options.getTrace() != null)
+        {
+            if (se instanceof SlackerTestMethod)
+            {
+                tracer = new MatchTracer(options.getTraceCapacity(), options.getTraceSample());
+                ((SlackerTestMethod) se).setTracer(tracer);
+            } else
+            {
+                Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "{0} cannot be traced", se.getImplementationName());
+            }
+        }
 
         //let's see how fast this is
         long startTime = System.currentTimeMillis();
 
+        //an unchanged catalog reads the index built by an earlier run, only
+        //the SlackerTestMethod index can be kept
+        byte[] catalogHash = catalogDigest.digest();
+        File snapshotFile = se instanceof SlackerTestMethod ? options.getIndex() : null;
+        boolean snapshotLoaded = false;
+        if (snapshotFile != null)
+        {
+            long start = c.getMetrics().start();
+            try
+            {
+                snapshotLoaded = IndexSnapshot.load(snapshotFile, catalogHash, (SlackerTestMethod) se);
+            } catch (IOException | RuntimeException ex)
+            {
+                Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Index snapshot could not be read, building the index", ex);
+            }
+            if (snapshotLoaded)
+            {
+                c.getMetrics().stop(Metrics.PHASE_READ_INDEX, start);
+            }
+        }
+
+        TitleMatchCache titleCache = null;
+        if (options.getTitleCache() > 0)
+        {
+            if (se instanceof SlackerTestMethod)
+            {
+                titleCache = new TitleMatchCache(options.getTitleCache(), c.getMetrics());
+                //the results read back refer to the products of the index
+                se.buildIndex();
+                if (options.getTitleCacheFile() != null)
+                {
+                    try
+                    {
+                        titleCache.load(options.getTitleCacheFile(), catalogHash, (SlackerTestMethod) se);
+                    } catch (IOException ex)
+                    {
+                        Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Title cache could not be read", ex);
+                        titleCache.clear();
+                    }
+                }
+                ((SlackerTestMethod) se).setTitleCache(titleCache);
+            } else
+            {
+                Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "{0} has no title cache", se.getImplementationName());
+            }
+        }
+
         se.process();
 
         long endTime = System.currentTimeMillis();
 
-        long difference = endTime - startTime;
-
-        HashMap<String, ArrayList<JsonObject>> results = se.getResults();
+        if (titleCache != null && options.getTitleCacheFile() != null)
+        {
+            try
+            {
+                titleCache.write(options.getTitleCacheFile(), catalogHash);
+            } catch (IOException ex)
+            {
+                Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Title cache could not be written", ex);
+            }
+        }
 
-        //TODO: allow user to enter different output file names via command line
-        String outputFile = System.getProperty("user.dir") + File.separator + "codeChallenge.txt";
+        if (snapshotFile != null && !snapshotLoaded)
+        {
+            try
+            {
+                IndexSnapshot.write(snapshotFile, catalogHash, (SlackerTestMethod) se);
+            } catch (IOException ex)
+            {
+                Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Index snapshot could not be written", ex);
+            }
+        }
 
-        System.out.println();
-        System.out.println();
-        System.out.println("***************SEARCH ENGINE***********************");
-        System.out.println("Search Implementation : " + se.getImplementationName());
-        System.out.println("Description : " + se.getImplementationDescription());
-        System.out.println();
+        long difference = endTime - startTime;
 
-        System.out.println("*************INPUT STATISTICS**********************");
-        System.out.println("Total Product Defintions   : " + c.getTotalProductDefintions());
-        System.out.println("Total Invalid Defintions   : " + c.getTotalInvalidProdctListings());
-        System.out.println("Total Listings             : " + c.getTotalListings());
-        System.out.println();
+        ResultSink sink = se.getResultSink();
+
+        report.println();
+        report.println();
+        report.println("***************SEARCH ENGINE***********************");
+        report.println("Search Implementation : " + se.getImplementationName());
+        report.println("Description : " + se.getImplementationDescription());
+        report.println("Threads : " + se.getParallelism());
+        report.println("Batch size : " + se.getBatchSize());
+        report.println("Index : " + (snapshotLoaded ? "read from " + snapshotFile : "built"));
+        if (titleCache != null)
+        {
+            report.println("Title cache hit/miss : " + titleCache.getHits() + "/" + titleCache.getMisses()
+                    + String.format(" (%.1f%%)", 100 * titleCache.getHitRate()));
+        }
+        report.println();
+
+        report.println("*************INPUT STATISTICS**********************");
+        report.println("Listings                   : " + (options.getListings() == null ? "bundled" : options.getListings()));
+        report.println("Products                   : " + (options.getProducts() == null ? "bundled" : options.getProducts()));
+        report.println("Total Product Defintions   : " + c.getTotalProductDefintions());
+        report.println("Total Invalid Defintions   : " + c.getTotalInvalidProdctListings());
+        report.println("Total Listings             : " + c.getTotalListings());
+        report.println("Manufacturer cache hit/miss: " + KeyNormalizer.MANUFACTURERS.getHits()
+                + "/" + KeyNormalizer.MANUFACTURERS.getMisses());
+        report.println("Family cache hit/miss      : " + KeyNormalizer.FAMILIES.getHits()
+                + "/" + KeyNormalizer.FAMILIES.getMisses());
+        report.println();
+
+        List<String> issues = c.getValidationReport().getSummary();
+        if (!issues.isEmpty())
+        {
+            report.println("*************VALIDATION****************************");
+            issues.forEach(report::println);
+            report.println();
+        }
 
-        System.out.println("*****************RESULTS***************************");
-        System.out.println("Total Hits                 : " + se.getNumberOfMatches());
-        System.out.println("Total Misses               : " + se.getNumberOfMisses());
-        System.out.println("Elapsed Process Time (s)   : " + difference / 1000);
-        System.out.println();
-        System.out.println("Save file name             : " + outputFile);
+        report.println("*****************RESULTS***************************");
+        report.println("Total Hits                 : " + se.getNumberOfMatches());
+        report.println("Total Misses               : " + se.getNumberOfMisses());
+        report.println("Elapsed Process Time (s)   : " + difference / 1000);
+        report.println();
+        report.println("Listings per second        : " + Math.round(c.getMetrics().getListingsPerSecond()));
+        c.getMetrics().getPhaseNanos().forEach((phase, nanos) ->
+        {
+            report.println(String.format("%-27s: %d ms", phase, nanos / 1000000));
+        });
+        report.println();
+        report.println("Save file name             : " + options.getOutput());
 
         try
         {
             //sent the results to the file
-            c.dumpResults(outputFile, results);
+            //a sink is always written in product name order
+            if (sink != null)
+            {
+                c.dumpResults(options.openOutput(), sink);
+            } else
+            {
+                c.dumpResults(options.openOutput(), se.getResults(), options.isSorted());
+            }
         } catch (IOException ex)
         {
             Logger.getLogger(CodeChallenge.class.getName()).log(Level.SEVERE, null, ex);
         }
 
+        if (tracer != null)
+        {
+            try
+            {
+                int written = tracer.write(options.getTrace());
+                report.println("Traces written             : " + written + " of " + tracer.getTracesRecorded() + " to " + options.getTrace());
+            } catch (IOException ex)
+            {
+                Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Match traces could not be written", ex);
+            }
+        }
+
+        if (options.getMetrics() != null)
+        {
+            try
+            {
+                c.getMetrics().writeSummary(options.getMetrics());
+            } catch (IOException ex)
+            {
+                Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Metrics summary could not be written", ex);
+            }
+        }
+
     }
 
     /**
@@ -230,49 +440,86 @@ public final class CodeChallenge
      *
      * @param fileName - String of the full path of the filename
      * @param results - the result set from the match as
-     * HashMap&lt;String&lt;ArrayList&lt;JsonObject&gt;&gt;
+     * HashMap&lt;String&lt;ArrayList&lt;Listing&gt;&gt;
      * @throws FileNotFoundException - if the file cannot be create
      * @throws IOException - if the file cannot be written to
      */
-    public void dumpResults(String fileName, HashMap<String, ArrayList<JsonObject>> results) throws FileNotFoundException, IOException
+    public void dumpResults(String fileName, HashMap<String, ArrayList<Listing>> results) throws FileNotFoundException, IOException
     {
+        dumpResults(fileName, results, false);
+    }
 
-        File outputFile = new File(fileName);
-        if (outputFile.exists())
-        {
-        } else
-        {
-            outputFile.createNewFile();
-        }
-
-        FileOutputStream fos = new FileOutputStream(outputFile);
-
-        try (OutputStreamWriter osw = new OutputStreamWriter(fos))
-        {
-            for (String productName : results.keySet())
-            {
+    /**
+     * Dumps the results of the match ups into UTF-8 JSON line format to the
+     * given filename, each line is streamed from the results as it is written
+     *
+     * @param fileName - String of the full path of the filename
+     * @param results - the result set from the match as
+     * HashMap&lt;String&lt;ArrayList&lt;Listing&gt;&gt;
+     * @param sorted - true to write the products in product name order so that
+     * the output of two runs can be compared with diff
+     * @throws FileNotFoundException - if the file cannot be create
+     * @throws IOException - if the file cannot be written to
+     */
+    public void dumpResults(String fileName, HashMap<String, ArrayList<Listing>> results, boolean sorted) throws FileNotFoundException, IOException
+    {
+        dumpResults(new FileOutputStream(fileName), results, sorted);
+    }
 
-                ArrayList<JsonObject> listings = results.get(productName);
-                JsonArrayBuilder resultArray = Json.createArrayBuilder();
-                listings.stream().forEach((j)
-                        -> 
-                        {
-                            resultArray.add(j);
-                });
-                JsonArray outputSet = resultArray.build();
+    /**
+     * Dumps the results of the match ups into UTF-8 JSON line format to the
+     * given stream, which is closed once the results are written
+     *
+     * @param outputStream - the stream the results are written to
+     * @param results - the result set from the match as
+     * HashMap&lt;String&lt;ArrayList&lt;Listing&gt;&gt;
+     * @param sorted - true to write the products in product name order
+     * @throws IOException - if the stream cannot be written to
+     */
+    public void dumpResults(OutputStream outputStream, HashMap<String, ArrayList<Listing>> results, boolean sorted) throws IOException
+    {
+        dumpResults(outputStream, (writer) -> writer.writeAll(results, sorted));
+    }
 
-                JsonObject outputValue = Json.createObjectBuilder()
-                        .add("product_name", productName)
-                        .add("listings", outputSet)
-                        .build();
+    /**
+     * Dumps the results of the match ups into UTF-8 JSON line format to the
+     * given stream in product name order straight from the sink the search
+     * engine wrote them into, the stream is closed once the results are
+     * written
+     *
+     * @param outputStream - the stream the results are written to
+     * @param results - the listings matched to each product
+     * @throws IOException - if the stream cannot be written to
+     */
+    public void dumpResults(OutputStream outputStream, ResultSink results) throws IOException
+    {
+        dumpResults(outputStream, (writer) -> writer.writeAll(results));
+    }
 
-                String outPre = outputValue.toString();
+    /**
+     * Writes results with a ResultWriter
+     */
+    private interface ResultDump
+    {
 
-                osw.write(outPre + "\n");
+        /**
+         * @param writer - the writer of the results
+         * @throws IOException - if a line cannot be written
+         */
+        void write(ResultWriter writer) throws IOException;
+    }
 
-            }
+    private void dumpResults(OutputStream outputStream, ResultDump dump) throws IOException
+    {
+        long start = metrics.start();
+        try (ResultWriter writer = new ResultWriter(outputStream))
+        {
+            dump.write(writer);
+            metrics.counter(Metrics.COUNTER_RESULT_LINES).add(writer.getLinesWritten());
+        } finally
+        {
+            metrics.stop(Metrics.PHASE_DUMP_RESULTS, start);
         }
-
     }
 
     /**
@@ -288,74 +535,178 @@ public final class CodeChallenge
     {
         //we are given this data for the challenge, it is embedded in this jar
         //let's make it into useable form by reading it in.
-        listings = loadResourceStream(this.getClass().getResourceAsStream(CodeChallenge.LISTINGS_RESOURCE_PATH));
-        products = loadResourceStream(this.getClass().getResourceAsStream(CodeChallenge.PRODUCTS_RESOURCE_PATH));
-
-        assert products != null;
-        assert listings != null;
-
-        totalListings = listings.size();
-        numProductDefinitions = products.size();
-
-        buildKeyMaps();
-
+        this(CodeChallenge.class.getResourceAsStream(CodeChallenge.LISTINGS_RESOURCE_PATH),
+                CodeChallenge.class.getResourceAsStream(CodeChallenge.PRODUCTS_RESOURCE_PATH));
     }
 
     /**
-     * Builds the product and listing key maps for use in the search engine
-     * implementation
+     * Constructs the Code Challenge from UTF-8 JSON line formatted listings and
+     * products, the streams are read to the end and closed
+     *
+     * @param listingData - the listings
+     * @param productData - the product definitions
+     * @throws NullPointerException if the input streams are null
+     * @throws IllegalStateException if the JSON parsing state is invalid
+     * @throws JsonException JSON errors
+     * @throws JsonParsingException JSON parsing error
+     * @throws IOException error reading the input streams
      */
-    private void buildKeyMaps()
+    public CodeChallenge(InputStream listingData, InputStream productData) throws NullPointerException, IllegalStateException, JsonException, JsonParsingException, IOException
     {
+        this(listingData, productData, (title) -> true);
+    }
 
-        for (int i = 0; i < listings.size(); i++)
+    /**
+     * Constructs the Code Challenge from UTF-8 JSON line formatted listings and
+     * products keeping only the listings with a title accepted by the filter,
+     * the streams are read to the end and closed
+     *
+     * @param listingData - the listings
+     * @param productData - the product definitions
+     * @param titleFilter - true for the listing titles to keep
+     * @throws NullPointerException if the input streams are null
+     * @throws IllegalStateException if the JSON parsing state is invalid
+     * @throws JsonException JSON errors
+     * @throws JsonParsingException JSON parsing error
+     * @throws IOException error reading the input streams
+     */
+    public CodeChallenge(InputStream listingData, InputStream productData, Predicate<String> titleFilter) throws NullPointerException, IllegalStateException, JsonException, JsonParsingException, IOException
+    {
+        if (productData == null)
         {
-
-            JsonObject j = listings.getJsonObject(i);
-            checkListingEntryStructure(j);
+            throw (new NullPointerException("Input Stream cannot be null cannot be empty"));
         }
 
-        for (int i = 0; i < products.size(); i++)
+        load(() -> loadResourceStream(listingData, (j) ->
         {
-            JsonObject j = products.getJsonObject(i);
-            if (!checkProductEntryStructure(j))
+            if (titleFilter.test(j.getString(PRODUCT_LISTING_TITLE_KEY, null)))
             {
-                numInvalidProductDefinitions++;
+                checkListingEntryStructure(j);
+            } else
+            {
+                numSkippedListings++;
             }
+        }), () -> loadResourceStream(productData, this::loadProduct));
+    }
+
+    /**
+     * Constructs the Code Challenge from UTF-8 JSON line formatted listing and
+     * product files, splitting each file into chunks that are parsed on
+     * several threads. The records are checked in file order so the result is
+     * the same as reading the files as streams. The listings are read by the
+     * ListingScanner, only their titles and manufacturers are decoded and each
+     * listing keeps its line in the mapped file to be written to the results
+     * as it was given.
+     *
+     * @param listingFile - the listings
+     * @param productFile - the product definitions
+     * @param threads - the threads parsing each file
+     * @throws NullPointerException if the files are null
+     * @throws IllegalStateException if the JSON parsing state is invalid
+     * @throws JsonException JSON errors
+     * @throws IOException error reading the files
+     */
+    public CodeChallenge(File listingFile, File productFile, int threads) throws NullPointerException, IllegalStateException, JsonException, IOException
+    {
+        this(listingFile, productFile, threads, null);
+    }
+
+    /**
+     * Constructs the Code Challenge from listing and product files as above,
+     * hashing the product file as it is read
+     *
+     * @param listingFile - the listings
+     * @param productFile - the product definitions
+     * @param threads - the threads parsing each file
+     * @param productDigest - updated with every byte of the product file, null
+     * for none
+     * @throws NullPointerException if the files are null
+     * @throws IllegalStateException if the JSON parsing state is invalid
+     * @throws JsonException JSON errors
+     * @throws IOException error reading the files
+     */
+    public CodeChallenge(File listingFile, File productFile, int threads, MessageDigest productDigest) throws NullPointerException, IllegalStateException, JsonException, IOException
+    {
+        if (listingFile == null || productFile == null)
+        {
+            throw (new NullPointerException("Input file cannot be null"));
         }
 
+        ChunkedJsonLinesLoader loader = new ChunkedJsonLinesLoader(threads);
+        load(() -> loader.load(listingFile, ListingScanner.READER, this::checkListingEntryStructure),
+                () -> loader.load(productFile, ChunkedJsonLinesLoader.JSON_LINES, this::loadProduct, productDigest));
+    }
+
+    /**
+     * Reads and checks every record, from a stream or a file
+     */
+    private interface RecordSource
+    {
+
+        /**
+         * @return the number of records read
+         * @throws IOException - error reading the records
+         */
+        long load() throws IOException;
+    }
+
+    private void load(RecordSource listingData, RecordSource productData) throws IOException
+    {
+        //the key maps are built as the records stream in
+        long start = metrics.start();
+        totalListings = (int) listingData.load();
+        metrics.stop(Metrics.PHASE_LOAD_LISTINGS, start);
+
+        start = metrics.start();
+        numProductDefinitions = (int) productData.load();
+        metrics.stop(Metrics.PHASE_LOAD_PRODUCTS, start);
+
+    }
+
+    /**
+     * @return the problems found in the product definitions and listings
+     */
+    public ValidationReport getValidationReport()
+    {
+        return validationReport;
+    }
+
+    /**
+     * @return the timings and counts of this run
+     */
+    public Metrics getMetrics()
+    {
+        return metrics;
     }
 
     /**
      *
-     * @return - the map of unique product names to the corresponding JsonObject
-     * for the product
+     * @return - the map of unique product names to the corresponding Product
      */
-    public HashMap<String, JsonObject> getProductKeys()
+    public HashMap<String, Product> getProductKeys()
     {
         return productKeys;
     }
 
     /**
      *
-     * @return - the hash map of unique title to the corresponding JsonObject
-     * for the product listing
+     * @return - the hash map of unique title to the corresponding Listing
      */
-    public HashMap<String, JsonObject> getListingKeys()
+    public HashMap<String, Listing> getListingKeys()
     {
         return listingKeys;
     }
 
     /**
      * This function checks to see if the key string is unique and places the
-     * corresponding JsonObject in the product map
+     * corresponding record in the map
      *
      * @param j String - unique string for the product
-     * @param obj JsonObject - JsonObject to be mapped
+     * @param obj the record to be mapped
      * @param map The hash map that will contain the unique key mapping
      * @return
      */
-    private boolean checkKeyUniqueness(String j, JsonObject obj, HashMap<String, JsonObject> map)
+    private <T> boolean checkKeyUniqueness(String j, T obj, HashMap<String, T> map)
     {
         boolean rval = true;
 
@@ -396,14 +747,14 @@ public final class CodeChallenge
         if (productMfg == null)
         {
             rval = false;
-            Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Manufacturer key missing in product.. igonoring entry");
+            validationReport.report(ValidationReport.Issue.PRODUCT_MISSING_MANUFACTURER, j);
         } else
         {
         }
         if (productModel == null)
         {
             rval = false;
-            Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Product Model key missing in Entry.. igonoring entry");
+            validationReport.report(ValidationReport.Issue.PRODUCT_MISSING_MODEL, j);
         } else
         {
         }
@@ -415,15 +766,15 @@ public final class CodeChallenge
         if (productKey == null)
         {
             rval = false;
-            Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Product key missing.. igonoring entry");
+            validationReport.report(ValidationReport.Issue.PRODUCT_MISSING_NAME, j);
         } else //the product key uniqueness checks and enters the entry into our map
         {
             if (rval)
             {
-                if (!checkKeyUniqueness(productKey, j, productKeys))
+                if (!checkKeyUniqueness(productKey, Product.fromJson(j), productKeys))
                 {
                     rval = false;
-                    Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Product key is not unique..ignoring entry : " + productKey);
+                    validationReport.report(ValidationReport.Issue.PRODUCT_DUPLICATE_NAME, productKey);
                 }
             }
         }
@@ -445,30 +796,43 @@ public final class CodeChallenge
      */
     private boolean checkListingEntryStructure(JsonObject j)
     {
-
-        boolean rval = true;
         String title = j.getString(PRODUCT_LISTING_TITLE_KEY, null);
         String mfg = j.getString(PRODUCT_MANUFACTURER_KEY, null);
+        return checkListingEntryStructure(title, mfg, j, title == null || mfg == null ? null : Listing.fromJson(j));
+    }
+
+    private boolean checkListingEntryStructure(ListingScanner.Line line)
+    {
+        String title = line.getTitle();
+        String mfg = line.getManufacturer();
+        return checkListingEntryStructure(title, mfg, line, title == null || mfg == null ? null : line.toListing());
+    }
+
+    private boolean checkListingEntryStructure(String title, String mfg, Object record, Listing listing)
+    {
+
+        boolean rval = true;
         if (mfg == null)
         {
             rval = false;
-            Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Manufacturer key missing in Listing.. igonoring entry");
+            validationReport.report(ValidationReport.Issue.LISTING_MISSING_MANUFACTURER, record);
         }
         if (title == null)
         {
             rval = false;
-            Logger.getLogger(CodeChallenge.class.getName()).log(Level.WARNING, "Title missing in Listing.. igonoring entry");
+            validationReport.report(ValidationReport.Issue.LISTING_MISSING_TITLE, record);
         } else if (rval)
         {
-            if (!checkKeyUniqueness(title, j, listingKeys))
+            if (!checkKeyUniqueness(title, listing, listingKeys))
             {
                 //this is not an error, we build a list of duplicate listings to save on serach time
                 rval = true;
                 numDuplicateListingsDetected++;
+                validationReport.report(ValidationReport.Issue.LISTING_DUPLICATE_TITLE, title);
                 //we build our dupllicate listings here for use in the end game of matching
                 // we don't want to search the same title many times.  A title can have
                 // many prices but identical listings
-                storeDuplicateListing(title, j, duplicateListings);
+                storeDuplicateListing(title, listing, duplicateListings);
 
             }
 
@@ -476,24 +840,38 @@ public final class CodeChallenge
         return rval;
     }
 
+    /**
+     * Checks one product record and enters it in the product map, the record
+     * is counted as an invalid product definition when it is refused
+     *
+     * @param j - the product record
+     */
+    private void loadProduct(JsonObject j)
+    {
+        if (!checkProductEntryStructure(j))
+        {
+            numInvalidProductDefinitions++;
+        }
+    }
+
     /**
      * Stores a duplicate listing to a structured object for matching
      *
      * @param title String - the title of the listing
-     * @param j the json object of the original listing
+     * @param j the duplicate listing
      * @param listSet the set that we will store the duplicates in
      */
-    private void storeDuplicateListing(String title, JsonObject j, HashMap<String, ArrayList<JsonObject>> listSet)
+    private void storeDuplicateListing(String title, Listing j, HashMap<String, ArrayList<Listing>> listSet)
     {
 
         if (listSet.containsKey(title))
         {
-            ArrayList<JsonObject> objList = listSet.get(title);
+            ArrayList<Listing> objList = listSet.get(title);
             objList.add(j);
             listSet.put(title, objList);
         } else
         {
-            ArrayList<JsonObject> objList = new ArrayList<>();
+            ArrayList<Listing> objList = new ArrayList<>();
             objList.add(j);
             listSet.put(title, objList);
         }
@@ -505,7 +883,7 @@ public final class CodeChallenge
      *
      * @return - duplicate listings indexed by product name
      */
-    public HashMap<String, ArrayList<JsonObject>> getDuplicateListings()
+    public HashMap<String, ArrayList<Listing>> getDuplicateListings()
     {
         return duplicateListings;
     }
@@ -513,7 +891,7 @@ public final class CodeChallenge
     /**
      * loads a JSON line formatted resource stream
      *
-     * @param jsonData an input stream of json data to read in
+     * @param jsonData an input stream of UTF-8 json data to read in
      * @return returns a json array of the input data read in from a JSON line
      * format
      * @throws NullPointerException - do not pass a null input stream
@@ -526,40 +904,40 @@ public final class CodeChallenge
             JsonParsingException, IllegalStateException, IOException
     {
 
-        if (jsonData == null)
-        {
-            throw (new NullPointerException("Input Stream cannot be null cannot be empty"));
-        }
-
         JsonBuilderFactory factory = Json.createBuilderFactory(null);
         JsonArrayBuilder builder = factory.createArrayBuilder();
 
-        try
-        {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(jsonData)))
-            {
-                String line;
-                while ((line = reader.readLine()) != null)
-                {
-
-                    InputStream is = new ByteArrayInputStream(line.getBytes());
-                    try (JsonReader jsonReader = Json.createReader(is))
-                    {
-                        JsonObject obj = jsonReader.readObject();
-                        builder.add(obj);
-                    }
-                }
-            }
-        } catch (NullPointerException | JsonException | IllegalStateException | IOException e)
-        {
-            throw (e);
-        }
+        loadResourceStream(jsonData, builder::add);
 
         JsonArray rval = builder.build();
 
         return rval;
     }
 
+    /**
+     * streams a JSON line formatted resource stream to a callback one record at
+     * a time without keeping the records, the stream is closed at the end
+     *
+     * @param jsonData an input stream of UTF-8 json data to read in
+     * @param records receives each record in the order they are read
+     * @return the number of records read
+     * @throws NullPointerException - do not pass a null input stream
+     * @throws JsonException - exception parsing JSON data in the stream
+     * @throws JsonParsingException - exception parsing JSON data in the stream
+     * @throws IllegalStateException - illegal JSON state
+     * @throws IOException - error reading in stream of JSON data
+     */
+    public long loadResourceStream(InputStream jsonData, Consumer<JsonObject> records) throws NullPointerException, JsonException,
+            JsonParsingException, IllegalStateException, IOException
+    {
+
+        try (JsonLinesReader reader = new JsonLinesReader(jsonData))
+        {
+            reader.forEachRemaining(records);
+            return reader.getRecordCount();
+        }
+    }
+
     /**
      * A function to allow our implementations to report a product Definition
      * error
@@ -597,6 +975,15 @@ public final class CodeChallenge
         return numProductDefinitions;
     }
 
+    /**
+     *
+     * @return the number of listings left out by the listing filter
+     */
+    public int getNumberOfSkippedListings()
+    {
+        return numSkippedListings;
+    }
+
     /**
      *
      * @return detected invalid product descriptions, this includes non unique
@@ -0,0 +1,507 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge;
+
+import com.pjslack.codechallenge.impl.MatchTracer;
+import com.pjslack.codechallenge.impl.TitleMatchCache;
+import com.pjslack.codechallenge.searchengine.AbstractSearchEngine;
+import com.pjslack.codechallenge.searchengine.SearchEngines;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The command line options of CodeChallenge.main.
+ *
+ * Every option has a default that gives the same run as before there were
+ * options: the bundled listings and products, the default engine on every
+ * processor and the results in codeChallenge.txt in the working directory.
+ * An input of "-" is read from standard input and an output of "-" is written
+ * to standard output. Inputs starting with the gzip magic number are
+ * decompressed as they are read and outputs ending in .gz are compressed.
+ * Uncompressed input files are split into chunks parsed on every thread.
+ *
+ * @author Peter J Slack
+ */
+public final class CommandLineOptions
+{
+
+    /**
+     * the path naming standard input or standard output
+     */
+    public static final String STANDARD_STREAM = "-";
+
+    /**
+     * the buffer placed over files and standard input
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private String listings = null;
+    private String products = null;
+    private String output = System.getProperty("user.dir") + File.separator + "codeChallenge.txt";
+    private String index = null;
+    private String engine = SearchEngines.DEFAULT_ENGINE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int batchSize = AbstractSearchEngine.DEFAULT_BATCH_SIZE;
+    private String metrics = null;
+    private String trace = null;
+    private int titleCache = 0;
+    private String titleCacheFile = null;
+    private int traceSample = 1;
+    private int traceCapacity = MatchTracer.DEFAULT_CAPACITY;
+    private boolean sorted = false;
+    private boolean help = false;
+
+    private CommandLineOptions()
+    {
+    }
+
+    /**
+     * Reads the options, each option is given as --name value or --name=value
+     *
+     * @param args - the command line
+     * @return the options
+     * @throws IllegalArgumentException - if an option is unknown, has no value
+     * or has a value that cannot be used
+     */
+    public static CommandLineOptions parse(String[] args) throws IllegalArgumentException
+    {
+        CommandLineOptions o = new CommandLineOptions();
+        for (int i = 0; i < args.length; i++)
+        {
+            String name = args[i];
+            String value = null;
+            int equals = name.indexOf('=');
+            if (name.startsWith("--") && equals > 0)
+            {
+                value = name.substring(equals + 1);
+                name = name.substring(0, equals);
+            }
+
+            switch (name)
+            {
+                case "-h":
+                case "--help":
+                    o.help = true;
+                    continue;
+                case "--sorted":
+                    o.sorted = true;
+                    continue;
+                case "--no-index":
+                    o.index = null;
+                    continue;
+                default:
+                    break;
+            }
+
+            if (value == null)
+            {
+                if (i + 1 >= args.length)
+                {
+                    throw (new IllegalArgumentException("missing value for " + name));
+                }
+                value = args[++i];
+            }
+
+            switch (name)
+            {
+                case "-l":
+                case "--listings":
+                    o.listings = value;
+                    break;
+                case "-p":
+                case "--products":
+                    o.products = value;
+                    break;
+                case "-o":
+                case "--output":
+                    o.output = value;
+                    break;
+                case "--index":
+                    o.index = value;
+                    break;
+                case "--metrics":
+                    o.metrics = value;
+                    break;
+                case "--trace":
+                    o.trace = value;
+                    break;
+                case "--title-cache":
+                    o.titleCache = positive(name, value);
+                    break;
+                case "--title-cache-file":
+                    o.titleCacheFile = value;
+                    break;
+                case "--trace-sample":
+                    o.traceSample = positive(name, value);
+                    break;
+                case "--trace-capacity":
+                    o.traceCapacity = positive(name, value);
+                    break;
+                case "-e":
+                case "--engine":
+                    o.engine = value;
+                    break;
+                case "-t":
+                case "--threads":
+                    o.threads = positive(name, value);
+                    break;
+                case "--batch-size":
+                    o.batchSize = positive(name, value);
+                    break;
+                default:
+                    throw (new IllegalArgumentException("unknown option " + name));
+            }
+        }
+
+        if (STANDARD_STREAM.equals(o.listings) && STANDARD_STREAM.equals(o.products))
+        {
+            throw (new IllegalArgumentException("the listings and products cannot both be read from standard input"));
+        }
+        //refuse an unknown engine before any data is read
+        if (!o.help && !SearchEngines.names().stream().anyMatch(o.engine::equalsIgnoreCase))
+        {
+            try
+            {
+                Class.forName(o.engine);
+            } catch (ClassNotFoundException ex)
+            {
+                throw (new IllegalArgumentException("no search engine named " + o.engine + ", known engines are " + SearchEngines.names()));
+            }
+        }
+        return o;
+    }
+
+    private static int positive(String name, String value) throws IllegalArgumentException
+    {
+        int n;
+        try
+        {
+            n = Integer.parseInt(value);
+        } catch (NumberFormatException ex)
+        {
+            throw (new IllegalArgumentException(name + " must be a number, not " + value));
+        }
+        if (n < 1)
+        {
+            throw (new IllegalArgumentException(name + " must be at least 1"));
+        }
+        return n;
+    }
+
+    /**
+     * @return the usage message
+     */
+    public static String usage()
+    {
+        return "usage: CodeChallenge [options]\n"
+                + "  -l, --listings <file>   listings as JSON lines, - for standard input, gzip allowed (default: bundled)\n"
+                + "  -p, --products <file>   products as JSON lines, - for standard input, gzip allowed (default: bundled)\n"
+                + "  -o, --output <file>     results file, - for standard output, .gz to compress (default: ./codeChallenge.txt)\n"
+                + "  -e, --engine <name>     search engine name or class name, one of " + SearchEngines.names() + " (default: " + SearchEngines.DEFAULT_ENGINE + ")\n"
+                + "  -t, --threads <n>       matching threads (default: number of processors)\n"
+                + "      --batch-size <n>    listings given to a thread at a time (default: " + AbstractSearchEngine.DEFAULT_BATCH_SIZE + ")\n"
+                + "      --index <file>      read the match index from and write it to a snapshot, e.g. " + CodeChallenge.INDEX_SNAPSHOT_FILE_NAME + " (default: off)\n"
+                + "      --no-index          neither read nor write a match index snapshot, the default\n"
+                + "      --metrics <file>    write a JSON summary of the phase timings and counts\n"
+                + "      --title-cache <n>   keep the model search results of n titles (default: off)\n"
+                + "      --title-cache-file <file> keep the title cache between runs (default size: " + TitleMatchCache.DEFAULT_CAPACITY + ")\n"
+                + "      --trace <file>      write match traces of a sample of the listings as JSON lines\n"
+                + "      --trace-sample <n>  trace one listing in n (default: 1)\n"
+                + "      --trace-capacity <n> the most recent traces kept (default: " + MatchTracer.DEFAULT_CAPACITY + ")\n"
+                + "      --sorted            write the products in product name order, engines with a result sink always do\n"
+                + "  -h, --help              print this message";
+    }
+
+    /**
+     * Opens an input, a gzip input is decompressed as it is read
+     *
+     * @param path - the file, - for standard input
+     * @param resource - the resource read when the path is null
+     * @return the input
+     * @throws FileNotFoundException - if the file cannot be opened
+     * @throws IOException - if the input cannot be read
+     */
+    static InputStream openInput(String path, String resource) throws FileNotFoundException, IOException
+    {
+        InputStream in;
+        if (path == null)
+        {
+            in = CodeChallenge.class.getResourceAsStream(resource);
+        } else if (STANDARD_STREAM.equals(path))
+        {
+            in = System.in;
+        } else
+        {
+            in = new FileInputStream(path);
+        }
+
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        buffered.reset();
+        if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xff) && b2 == (GZIPInputStream.GZIP_MAGIC >>> 8))
+        {
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        }
+        return buffered;
+    }
+
+    /**
+     * Tests whether an input can be split into chunks and read by several
+     * threads, which needs a regular uncompressed file
+     *
+     * @param path - the input path
+     * @return the file or null when the input must be read as a stream
+     * @throws IOException - if the file cannot be read
+     */
+    static File chunkedInput(String path) throws IOException
+    {
+        if (path == null || STANDARD_STREAM.equals(path))
+        {
+            return null;
+        }
+        File f = new File(path);
+        if (!f.isFile())
+        {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(f))
+        {
+            int b1 = in.read();
+            int b2 = in.read();
+            if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xff) && b2 == (GZIPInputStream.GZIP_MAGIC >>> 8))
+            {
+                return null;
+            }
+        }
+        return f;
+    }
+
+    /**
+     * Opens the output, closing it does not close standard output
+     *
+     * @return the output
+     * @throws FileNotFoundException - if the file cannot be created
+     * @throws IOException - if the output cannot be written
+     */
+    public OutputStream openOutput() throws FileNotFoundException, IOException
+    {
+        if (isStandardOutput())
+        {
+            return new FilterOutputStream(System.out)
+            {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException
+                {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException
+                {
+                    flush();
+                }
+            };
+        }
+        OutputStream out = new FileOutputStream(output);
+        if (output.endsWith(".gz"))
+        {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return out;
+    }
+
+    /**
+     * @return the listings
+     * @throws IOException - if the listings cannot be opened
+     */
+    public InputStream openListings() throws IOException
+    {
+        return openInput(listings, CodeChallenge.LISTINGS_RESOURCE_PATH);
+    }
+
+    /**
+     * @return the product definitions
+     * @throws IOException - if the products cannot be opened
+     */
+    public InputStream openProducts() throws IOException
+    {
+        return openInput(products, CodeChallenge.PRODUCTS_RESOURCE_PATH);
+    }
+
+    /**
+     * @return the listings file when it can be read in chunks, otherwise null
+     * @throws IOException - if the listings cannot be read
+     */
+    public File getChunkedListings() throws IOException
+    {
+        return chunkedInput(listings);
+    }
+
+    /**
+     * @return the products file when it can be read in chunks, otherwise null
+     * @throws IOException - if the products cannot be read
+     */
+    public File getChunkedProducts() throws IOException
+    {
+        return chunkedInput(products);
+    }
+
+    /**
+     * @return the listings file, null for the bundled listings
+     */
+    public String getListings()
+    {
+        return listings;
+    }
+
+    /**
+     * @return the products file, null for the bundled products
+     */
+    public String getProducts()
+    {
+        return products;
+    }
+
+    /**
+     * @return the results file
+     */
+    public String getOutput()
+    {
+        return output;
+    }
+
+    /**
+     * @return true when the results go to standard output
+     */
+    public boolean isStandardOutput()
+    {
+        return STANDARD_STREAM.equals(output);
+    }
+
+    /**
+     * @return the index snapshot file or null when snapshots are not used,
+     * they are only used when --index is given
+     */
+    public File getIndex()
+    {
+        return index == null ? null : new File(index);
+    }
+
+    /**
+     * @return the metrics summary file or null when none is written
+     */
+    public File getMetrics()
+    {
+        return metrics == null ? null : new File(metrics);
+    }
+
+    /**
+     * @return the number of titles the title cache holds, 0 when there is no
+     * title cache
+     */
+    public int getTitleCache()
+    {
+        if (titleCache == 0 && titleCacheFile != null)
+        {
+            return TitleMatchCache.DEFAULT_CAPACITY;
+        }
+        return titleCache;
+    }
+
+    /**
+     * @return the file the title cache is kept in between runs or null
+     */
+    public File getTitleCacheFile()
+    {
+        return titleCacheFile == null ? null : new File(titleCacheFile);
+    }
+
+    /**
+     * @return the trace file or null when listings are not traced
+     */
+    public File getTrace()
+    {
+        return trace == null ? null : new File(trace);
+    }
+
+    /**
+     * @return one listing in this many is traced
+     */
+    public int getTraceSample()
+    {
+        return traceSample;
+    }
+
+    /**
+     * @return the most traces kept
+     */
+    public int getTraceCapacity()
+    {
+        return traceCapacity;
+    }
+
+    /**
+     * @return the search engine name or class name
+     */
+    public String getEngine()
+    {
+        return engine;
+    }
+
+    /**
+     * @return the number of matching threads
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * @return the listings given to a thread at a time
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * @return true to write the products in product name order
+     */
+    public boolean isSorted()
+    {
+        return sorted;
+    }
+
+    /**
+     * @return true when only the usage was asked for
+     */
+    public boolean isHelp()
+    {
+        return help;
+    }
+}
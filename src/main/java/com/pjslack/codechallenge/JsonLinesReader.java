@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+
+/**
+ * Streams the records of a JSON line formatted input one JsonObject at a time.
+ *
+ * The input is read once through a single reader with an explicit character
+ * set (UTF-8 unless told otherwise) and a single JsonParser. The lines are
+ * presented to the parser as the elements of one JSON array, the framing is
+ * done on a character buffer so no per line String, byte array, stream or
+ * reader has to be made, and nothing is kept once a record has been handed
+ * out. A line holding more than one JSON value is an error.
+ *
+ * A line ends at a line feed, a carriage return or a carriage return and line
+ * feed, as BufferedReader.readLine ends it, and a line of nothing but spaces
+ * and tabs is blank and skipped. The ListingScanner frames lines by the same
+ * rule so a file is read as the same lines by both.
+ *
+ * @author Peter J Slack
+ */
+public final class JsonLinesReader implements Iterator<JsonObject>, Closeable
+{
+
+    /**
+     * the size of the character buffer used on the input
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * shared factories, these are thread safe and costly to look up
+     */
+    private static final JsonParserFactory PARSER_FACTORY = Json.createParserFactory(null);
+    private static final JsonBuilderFactory BUILDER_FACTORY = Json.createBuilderFactory(null);
+
+    /**
+     * the parser over the framed lines
+     */
+    private final JsonParser parser;
+
+    /**
+     * the event that starts the next record, null if not yet read
+     */
+    private JsonParser.Event lookAhead = null;
+
+    /**
+     * the number of records read so far
+     */
+    private long records = 0;
+
+    /**
+     * Creates a reader over UTF-8 encoded JSON lines
+     *
+     * @param jsonData - the JSON line formatted input
+     * @throws NullPointerException - if the input stream is null
+     */
+    public JsonLinesReader(InputStream jsonData)
+    {
+        this(jsonData, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a reader over JSON lines in the given character set
+     *
+     * @param jsonData - the JSON line formatted input
+     * @param charset - the character set of the input
+     * @throws NullPointerException - if the input stream is null
+     */
+    public JsonLinesReader(InputStream jsonData, Charset charset)
+    {
+        if (jsonData == null)
+        {
+            throw (new NullPointerException("Input Stream cannot be null cannot be empty"));
+        }
+
+        parser = PARSER_FACTORY.createParser(new LineFramingReader(new InputStreamReader(jsonData, charset)));
+        if (!parser.hasNext() || parser.next() != JsonParser.Event.START_ARRAY)
+        {
+            throw (new JsonException("Unable to read JSON lines"));
+        }
+    }
+
+    /**
+     * Tests whether there is another record
+     *
+     * @return true if there is another record
+     * @throws JsonException - if the input is not valid JSON
+     */
+    @Override
+    public boolean hasNext()
+    {
+        if (lookAhead == null)
+        {
+            lookAhead = parser.next();
+        }
+        return lookAhead != JsonParser.Event.END_ARRAY;
+    }
+
+    /**
+     * Reads the next record
+     *
+     * @return the next record
+     * @throws JsonException - if the input is not valid JSON or a line is not a
+     * JSON object
+     * @throws NoSuchElementException - if there are no more records
+     */
+    @Override
+    public JsonObject next()
+    {
+        if (!hasNext())
+        {
+            throw (new NoSuchElementException());
+        }
+
+        JsonParser.Event start = lookAhead;
+        lookAhead = null;
+        if (start != JsonParser.Event.START_OBJECT)
+        {
+            throw (new JsonException("JSON line " + (records + 1) + " is not a JSON object"));
+        }
+        records++;
+        return readObject();
+    }
+
+    /**
+     * @return the number of records read so far
+     */
+    public long getRecordCount()
+    {
+        return records;
+    }
+
+    /**
+     * builds an object from the parser events, the START_OBJECT event has been
+     * consumed
+     */
+    private JsonObject readObject()
+    {
+        JsonObjectBuilder builder = BUILDER_FACTORY.createObjectBuilder();
+        String key = null;
+        while (true)
+        {
+            JsonParser.Event e = parser.next();
+            switch (e)
+            {
+                case KEY_NAME:
+                    key = parser.getString();
+                    break;
+                case VALUE_STRING:
+                    builder.add(key, parser.getString());
+                    break;
+                case VALUE_NUMBER:
+                    builder.add(key, parser.getBigDecimal());
+                    break;
+                case VALUE_TRUE:
+                    builder.add(key, true);
+                    break;
+                case VALUE_FALSE:
+                    builder.add(key, false);
+                    break;
+                case VALUE_NULL:
+                    builder.addNull(key);
+                    break;
+                case START_OBJECT:
+                    builder.add(key, readObject());
+                    break;
+                case START_ARRAY:
+                    builder.add(key, readArray());
+                    break;
+                case END_OBJECT:
+                    return builder.build();
+                default:
+                    throw (new JsonException("Unexpected JSON event " + e));
+            }
+        }
+    }
+
+    /**
+     * builds an array from the parser events, the START_ARRAY event has been
+     * consumed
+     */
+    private JsonArray readArray()
+    {
+        JsonArrayBuilder builder = BUILDER_FACTORY.createArrayBuilder();
+        while (true)
+        {
+            JsonParser.Event e = parser.next();
+            switch (e)
+            {
+                case VALUE_STRING:
+                    builder.add(parser.getString());
+                    break;
+                case VALUE_NUMBER:
+                    builder.add(parser.getBigDecimal());
+                    break;
+                case VALUE_TRUE:
+                    builder.add(true);
+                    break;
+                case VALUE_FALSE:
+                    builder.add(false);
+                    break;
+                case VALUE_NULL:
+                    builder.addNull();
+                    break;
+                case START_OBJECT:
+                    builder.add(readObject());
+                    break;
+                case START_ARRAY:
+                    builder.add(readArray());
+                    break;
+                case END_ARRAY:
+                    return builder.build();
+                default:
+                    throw (new JsonException("Unexpected JSON event " + e));
+            }
+        }
+    }
+
+    /**
+     * @param c - a character
+     * @return true if the character ends a line
+     */
+    static boolean isLineEnd(int c)
+    {
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * @param c - a character
+     * @return true if the character is a space or tab, the JSON whitespace
+     * that does not end a line
+     */
+    static boolean isBlank(int c)
+    {
+        return c == ' ' || c == '\t';
+    }
+
+    /**
+     * Closes the parser and the underlying input
+     */
+    @Override
+    public void close()
+    {
+        parser.close();
+    }
+
+    /**
+     * Presents JSON lines as a JSON array, an opening bracket, the non blank
+     * lines separated by commas and a closing bracket. The characters are
+     * copied from a buffer and the nesting of each line is followed so a line
+     * that goes on after its value is closed is refused, the parser alone
+     * would take {...},{...} on one line as two records
+     */
+    private static final class LineFramingReader extends Reader
+    {
+
+        private final Reader in;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        /** position and end of the characters in the buffer */
+        private int pos = 0;
+        private int limit = 0;
+        /** a character to hand out before the next input one, -1 for none */
+        private int pending = '[';
+        /** true once the input is exhausted */
+        private boolean finished = false;
+        /** true once a record line has been handed out */
+        private boolean started = false;
+        /** true until the current line has a non blank character */
+        private boolean lineStart = true;
+        /** the nesting of the current line outside of strings */
+        private int depth = 0;
+        /** true once the value of the current line is closed */
+        private boolean closed = false;
+        private boolean inString = false;
+        private boolean escaped = false;
+        /** the line being read, from 1 */
+        private long line = 1;
+
+        LineFramingReader(Reader in)
+        {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException
+        {
+            int count = 0;
+            while (count < len)
+            {
+                if (pending >= 0)
+                {
+                    cbuf[off + count++] = (char) pending;
+                    pending = -1;
+                    continue;
+                }
+                if (pos >= limit)
+                {
+                    if (finished)
+                    {
+                        break;
+                    }
+                    limit = in.read(buffer, 0, buffer.length);
+                    pos = 0;
+                    if (limit < 0)
+                    {
+                        limit = 0;
+                        finished = true;
+                        pending = ']';
+                    }
+                    continue;
+                }
+
+                char c = buffer[pos++];
+                if (inString)
+                {
+                    if (escaped)
+                    {
+                        escaped = false;
+                    } else if (c == '\\')
+                    {
+                        escaped = true;
+                    } else if (c == '"')
+                    {
+                        inString = false;
+                    }
+                    cbuf[off + count++] = c;
+                    continue;
+                }
+                if (isLineEnd(c) || isBlank(c))
+                {
+                    //a line end is a space to the parser, any other control
+                    //character goes through for the parser to refuse
+                    if (isLineEnd(c))
+                    {
+                        lineStart = true;
+                        if (c == '\n')
+                        {
+                            line++;
+                        }
+                    }
+                    cbuf[off + count++] = ' ';
+                    continue;
+                }
+
+                if (lineStart)
+                {
+                    lineStart = false;
+                    depth = 0;
+                    closed = false;
+                    if (started)
+                    {
+                        //the separator goes out first and the character after
+                        cbuf[off + count++] = ',';
+                        pending = c;
+                    }
+                    started = true;
+                } else if (closed)
+                {
+                    throw (new JsonException("JSON line " + line + " holds more than one JSON value"));
+                }
+
+                switch (c)
+                {
+                    case '"':
+                        inString = true;
+                        break;
+                    case '{':
+                    case '[':
+                        depth++;
+                        break;
+                    case '}':
+                    case ']':
+                        closed = --depth <= 0;
+                        break;
+                    default:
+                        break;
+                }
+                if (pending < 0)
+                {
+                    cbuf[off + count++] = c;
+                }
+            }
+            return count == 0 && len > 0 ? -1 : count;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge;
+
+import com.pjslack.codechallenge.normalize.KeyNormalizer;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+/**
+ * A validated product listing.
+ *
+ * The title and manufacturer are read from the JSON once, together with the
+ * upper case title and conditioned manufacturer the search engines work on.
+ * The original JSON is kept only so that it can be written to the results as
+ * it was given. A listing read by the ListingScanner keeps the bytes of its
+ * line in the memory mapped listing file instead of a JsonObject, the bytes
+ * are copied to the results as they are and only parsed when getJson is
+ * called.
+ *
+ * @author Peter J Slack
+ */
+public final class Listing
+{
+
+    private final String title;
+    private final String manufacturer;
+    private final String upperTitle;
+    private final String conditionedManufacturer;
+    private final JsonObject json;
+    private final ByteBuffer raw;
+    private final int rawStart;
+    private final int rawLength;
+
+    /**
+     * Creates a listing
+     *
+     * @param title - the title
+     * @param manufacturer - the manufacturer
+     * @param json - the original listing written to the results
+     */
+    public Listing(String title, String manufacturer, JsonObject json)
+    {
+        this(title, manufacturer, json, null, 0, 0);
+    }
+
+    /**
+     * Creates a listing over the original bytes of its JSON line
+     *
+     * @param title - the title
+     * @param manufacturer - the manufacturer
+     * @param raw - holds the UTF-8 JSON line, it is shared and never moved
+     * @param start - the index of the line in the buffer
+     * @param length - the length of the line in bytes
+     */
+    public Listing(String title, String manufacturer, ByteBuffer raw, int start, int length)
+    {
+        this(title, manufacturer, null, raw, start, length);
+    }
+
+    private Listing(String title, String manufacturer, JsonObject json, ByteBuffer raw, int start, int length)
+    {
+        this.title = title;
+        this.manufacturer = manufacturer;
+        this.json = json;
+        this.raw = raw;
+        this.rawStart = start;
+        this.rawLength = length;
+
+        upperTitle = title.toUpperCase();
+        //only a few hundred distinct manufacturers so this is mostly a cache hit
+        conditionedManufacturer = KeyNormalizer.conditionManufacturer(manufacturer);
+    }
+
+    /**
+     * Creates a listing from its JSON, CodeChallenge.checkListingEntryStructure
+     * calls this for the stream loader once the title and manufacturer are
+     * known to be strings
+     *
+     * @param j - the listing
+     * @return the listing
+     */
+    public static Listing fromJson(JsonObject j)
+    {
+        return new Listing(j.getString(CodeChallenge.PRODUCT_LISTING_TITLE_KEY),
+                j.getString(CodeChallenge.PRODUCT_MANUFACTURER_KEY), j);
+    }
+
+    /**
+     * @return the title as given
+     */
+    public String getTitle()
+    {
+        return title;
+    }
+
+    /**
+     * @return the manufacturer as given
+     */
+    public String getManufacturer()
+    {
+        return manufacturer;
+    }
+
+    /**
+     * @return the title in upper case
+     */
+    public String getUpperTitle()
+    {
+        return upperTitle;
+    }
+
+    /**
+     * @return the conditioned manufacturer
+     */
+    public String getConditionedManufacturer()
+    {
+        return conditionedManufacturer;
+    }
+
+    /**
+     * @return the original listing JSON, parsed again on every call when the
+     * listing was scanned from its bytes
+     */
+    public JsonObject getJson()
+    {
+        if (json != null || raw == null)
+        {
+            return json;
+        }
+        try (JsonReader reader = Json.createReader(new InputStreamReader(new ByteBufferInputStream(getRawJson()), StandardCharsets.UTF_8)))
+        {
+            return reader.readObject();
+        }
+    }
+
+    /**
+     * @return true when the listing was scanned from its bytes
+     */
+    public boolean hasRawJson()
+    {
+        return raw != null;
+    }
+
+    /**
+     * @return the original UTF-8 bytes of the listing from position to limit,
+     * null when the listing was made from a JsonObject
+     */
+    public ByteBuffer getRawJson()
+    {
+        if (raw == null)
+        {
+            return null;
+        }
+        ByteBuffer b = raw.duplicate();
+        b.limit(rawStart + rawLength);
+        b.position(rawStart);
+        return b.slice();
+    }
+
+    @Override
+    public String toString()
+    {
+        return title;
+    }
+}
@@ -0,0 +1,604 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import javax.json.JsonException;
+
+/**
+ * Scans JSON lines listings for the two fields the matching needs without
+ * parsing the rest of the line.
+ *
+ * Each line is walked byte by byte. Only the string values of the top level
+ * "title" and "manufacturer" keys are decoded, every other key and value is
+ * stepped over without making a char or String of it. The line itself is not
+ * copied, the Line keeps the buffer it was found in with its start and length
+ * so that the original JSON can be copied to the results as it was given.
+ *
+ * The values stepped over are still checked as a JSON parser would check
+ * them, the literals, the number syntax, the escapes and the nesting of
+ * objects and arrays, so a line is refused here exactly when the
+ * JsonLinesReader refuses it and whether a file is accepted does not depend on
+ * the reader used. As with JsonObject.getString a field that is not a string
+ * is treated as missing, and the last of a repeated key is kept. A key written
+ * with escapes is not recognised. Lines are framed, and spaces and tabs
+ * skipped, by the rule of the JsonLinesReader so both read a file as the same
+ * lines.
+ *
+ * A scanner keeps scratch buffers so it must only be used by one thread at a
+ * time, READER makes a new one for each chunk.
+ *
+ * @author Peter J Slack
+ */
+public final class ListingScanner
+{
+
+    /**
+     * scans each chunk of a listing file with a new scanner
+     */
+    public static final ChunkedJsonLinesLoader.ChunkReader<Line> READER = (chunk, offset, lines) ->
+            new ListingScanner().scan(chunk, offset, lines);
+
+    private static final byte[] TITLE_KEY = CodeChallenge.PRODUCT_LISTING_TITLE_KEY.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MANUFACTURER_KEY = CodeChallenge.PRODUCT_MANUFACTURER_KEY.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * One scanned listing line
+     */
+    public static final class Line
+    {
+
+        private final String title;
+        private final String manufacturer;
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int length;
+        private final long offset;
+
+        Line(String title, String manufacturer, ByteBuffer buffer, int start, int length, long offset)
+        {
+            this.title = title;
+            this.manufacturer = manufacturer;
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+            this.offset = offset;
+        }
+
+        /**
+         * @return the title or null if the line has no string title
+         */
+        public String getTitle()
+        {
+            return title;
+        }
+
+        /**
+         * @return the manufacturer or null if the line has no string
+         * manufacturer
+         */
+        public String getManufacturer()
+        {
+            return manufacturer;
+        }
+
+        /**
+         * @return the offset of the line in the file
+         */
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        /**
+         * The line must have a title and a manufacturer
+         *
+         * @return a listing over the bytes of the line
+         */
+        public Listing toListing()
+        {
+            return new Listing(title, manufacturer, buffer, start, length);
+        }
+
+        /**
+         * @return the line as it was given
+         */
+        @Override
+        public String toString()
+        {
+            byte[] b = new byte[length];
+            ByteBuffer d = buffer.duplicate();
+            d.position(start);
+            d.get(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    private ByteBuffer buffer;
+    private int end;
+    private long base;
+
+    /**
+     * true when the last string found holds an escape
+     */
+    private boolean escaped;
+
+    private byte[] scratch = new byte[256];
+
+    /**
+     * the closing bracket of every object and array skipValue is inside of
+     */
+    private byte[] closers = new byte[16];
+    private final StringBuilder unescaped = new StringBuilder();
+
+    /**
+     * Scans every line of a chunk, blank lines are skipped
+     *
+     * @param chunk - the lines from position to limit, it is kept by the lines
+     * found and must not be changed while they are in use
+     * @param offset - the offset of the chunk in its file, used in messages
+     * @param lines - given each line found in order
+     * @return the number of lines found
+     * @throws JsonException - if a line is not a JSON object
+     */
+    public long scan(ByteBuffer chunk, long offset, Consumer<Line> lines) throws JsonException
+    {
+        buffer = chunk;
+        base = offset - chunk.position();
+        int limit = chunk.limit();
+        long count = 0;
+
+        int pos = chunk.position();
+        while (pos < limit)
+        {
+            int eol = pos;
+            while (eol < limit && !JsonLinesReader.isLineEnd(buffer.get(eol)))
+            {
+                eol++;
+            }
+
+            int s = pos;
+            int e = eol;
+            while (s < e && isWhitespace(buffer.get(s)))
+            {
+                s++;
+            }
+            while (e > s && isWhitespace(buffer.get(e - 1)))
+            {
+                e--;
+            }
+            if (s < e)
+            {
+                end = e;
+                lines.accept(scanLine(s));
+                count++;
+            }
+            pos = eol + 1;
+        }
+        return count;
+    }
+
+    private static boolean isWhitespace(byte b)
+    {
+        return JsonLinesReader.isBlank(b);
+    }
+
+    private JsonException error(int i, String message)
+    {
+        return new JsonException("listing at byte " + (base + i) + " " + message);
+    }
+
+    private byte at(int i)
+    {
+        if (i >= end)
+        {
+            throw (error(i, "ends early"));
+        }
+        return buffer.get(i);
+    }
+
+    private int skipWhitespace(int i)
+    {
+        while (i < end && isWhitespace(buffer.get(i)))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private Line scanLine(int start)
+    {
+        String title = null;
+        String manufacturer = null;
+
+        if (buffer.get(start) != '{')
+        {
+            throw (error(start, "is not a JSON object"));
+        }
+        int i = skipWhitespace(start + 1);
+        if (at(i) == '}')
+        {
+            i++;
+        } else
+        {
+            while (true)
+            {
+                if (at(i) != '"')
+                {
+                    throw (error(i, "has no key"));
+                }
+                int keyEnd = endOfString(i);
+                byte[] key = !escaped && matches(i + 1, keyEnd, TITLE_KEY) ? TITLE_KEY
+                        : !escaped && matches(i + 1, keyEnd, MANUFACTURER_KEY) ? MANUFACTURER_KEY : null;
+
+                i = skipWhitespace(keyEnd + 1);
+                if (at(i) != ':')
+                {
+                    throw (error(i, "has no ':' after a key"));
+                }
+                i = skipWhitespace(i + 1);
+
+                String value = null;
+                if (at(i) == '"')
+                {
+                    int valueEnd = endOfString(i);
+                    if (key != null)
+                    {
+                        value = decode(i + 1, valueEnd);
+                    }
+                    i = valueEnd + 1;
+                } else
+                {
+                    i = skipValue(i);
+                }
+                if (key == TITLE_KEY)
+                {
+                    title = value;
+                } else if (key == MANUFACTURER_KEY)
+                {
+                    manufacturer = value;
+                }
+
+                i = skipWhitespace(i);
+                byte c = at(i++);
+                if (c == '}')
+                {
+                    break;
+                }
+                if (c != ',')
+                {
+                    throw (error(i - 1, "has no ',' or '}' after a value"));
+                }
+                i = skipWhitespace(i);
+            }
+        }
+        if (i != end)
+        {
+            throw (error(i, "has more after the object"));
+        }
+
+        return new Line(title, manufacturer, buffer, start, end - start, base + start);
+    }
+
+    /**
+     * @param i - the index of the opening quote
+     * @return the index of the closing quote
+     */
+    private int endOfString(int i)
+    {
+        escaped = false;
+        int j = i + 1;
+        while (j < end)
+        {
+            byte c = buffer.get(j);
+            if (c == '"')
+            {
+                return j;
+            }
+            if (c == '\\')
+            {
+                escaped = true;
+                j = endOfEscape(j);
+            } else if ((c & 0xff) < 0x20)
+            {
+                throw (error(j, "has a control character in a string"));
+            } else
+            {
+                j++;
+            }
+        }
+        throw (error(i, "has an unterminated string"));
+    }
+
+    /**
+     * @param j - the index of a backslash in a string
+     * @return the index after the escape
+     */
+    private int endOfEscape(int j)
+    {
+        switch (at(j + 1))
+        {
+            case '"':
+            case '\\':
+            case '/':
+            case 'b':
+            case 'f':
+            case 'n':
+            case 'r':
+            case 't':
+                return j + 2;
+            case 'u':
+                for (int k = j + 2; k < j + 6; k++)
+                {
+                    if (Character.digit(at(k), 16) < 0)
+                    {
+                        throw (error(j, "has a bad unicode escape"));
+                    }
+                }
+                return j + 6;
+            default:
+                throw (error(j, "has a bad escape"));
+        }
+    }
+
+    /**
+     * Steps over a value, checking it as a parser would. Objects and arrays
+     * are followed with a stack of their closing brackets rather than by
+     * recursion so deep nesting cannot exhaust the thread stack
+     *
+     * @param i - the first byte of a value that is not a string
+     * @return the index after the value
+     */
+    private int skipValue(int i)
+    {
+        int depth = 0;
+        while (true)
+        {
+            //a value starts at i
+            byte c = at(i);
+            if (c == '"')
+            {
+                i = endOfString(i) + 1;
+            } else if (c == '{' || c == '[')
+            {
+                byte closer = c == '{' ? (byte) '}' : (byte) ']';
+                i = skipWhitespace(i + 1);
+                if (at(i) != closer)
+                {
+                    push(depth++, closer);
+                    i = closer == '}' ? skipKey(i) : i;
+                    continue;
+                }
+                i++;
+            } else
+            {
+                i = skipLiteral(i);
+            }
+
+            //close the objects and arrays the value ends
+            while (true)
+            {
+                if (depth == 0)
+                {
+                    return i;
+                }
+                byte closer = closers[depth - 1];
+                i = skipWhitespace(i);
+                c = at(i);
+                if (c == closer)
+                {
+                    depth--;
+                    i++;
+                } else if (c == ',')
+                {
+                    i = skipWhitespace(i + 1);
+                    i = closer == '}' ? skipKey(i) : i;
+                    break;
+                } else
+                {
+                    throw (error(i, "has no ',' or '" + (char) closer + "' after a value"));
+                }
+            }
+        }
+    }
+
+    private void push(int depth, byte closer)
+    {
+        if (depth == closers.length)
+        {
+            closers = Arrays.copyOf(closers, depth * 2);
+        }
+        closers[depth] = closer;
+    }
+
+    /**
+     * @param i - the opening quote of a key in an object being skipped
+     * @return the index of its value
+     */
+    private int skipKey(int i)
+    {
+        if (at(i) != '"')
+        {
+            throw (error(i, "has no key"));
+        }
+        i = skipWhitespace(endOfString(i) + 1);
+        if (at(i) != ':')
+        {
+            throw (error(i, "has no ':' after a key"));
+        }
+        return skipWhitespace(i + 1);
+    }
+
+    /**
+     * @param i - the first byte of true, false, null or a number
+     * @return the index after it
+     */
+    private int skipLiteral(int i)
+    {
+        byte c = at(i);
+        byte[] literal = c == 't' ? TRUE : c == 'f' ? FALSE : c == 'n' ? NULL : null;
+        if (literal != null)
+        {
+            if (i + literal.length > end || !matches(i, i + literal.length, literal))
+            {
+                throw (error(i, "has a bad value"));
+            }
+            return i + literal.length;
+        }
+
+        //-? (0 | [1-9][0-9]*) (. [0-9]+)? ([eE] [+-]? [0-9]+)?
+        int j = c == '-' ? i + 1 : i;
+        if (j < end && buffer.get(j) == '0')
+        {
+            j++;
+        } else
+        {
+            j = digits(i, j);
+        }
+        if (j < end && buffer.get(j) == '.')
+        {
+            j = digits(i, j + 1);
+        }
+        if (j < end && (buffer.get(j) == 'e' || buffer.get(j) == 'E'))
+        {
+            j++;
+            if (j < end && (buffer.get(j) == '+' || buffer.get(j) == '-'))
+            {
+                j++;
+            }
+            j = digits(i, j);
+        }
+        return j;
+    }
+
+    /**
+     * @param value - the start of the value, for the message
+     * @param j - where one or more digits must be
+     * @return the index after the digits
+     */
+    private int digits(int value, int j)
+    {
+        int k = j;
+        while (k < end && buffer.get(k) >= '0' && buffer.get(k) <= '9')
+        {
+            k++;
+        }
+        if (k == j)
+        {
+            throw (error(value, "has a bad value"));
+        }
+        return k;
+    }
+
+    private boolean matches(int from, int to, byte[] key)
+    {
+        if (to - from != key.length)
+        {
+            return false;
+        }
+        for (int k = 0; k < key.length; k++)
+        {
+            if (buffer.get(from + k) != key[k])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the string between two quotes, endOfString must have just found
+     * its end
+     */
+    private String decode(int from, int to)
+    {
+        int length = to - from;
+        if (scratch.length < length)
+        {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int k = 0; k < length; k++)
+        {
+            scratch[k] = buffer.get(from + k);
+        }
+        String s = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        return escaped ? unescape(s, from) : s;
+    }
+
+    private String unescape(String s, int from)
+    {
+        unescaped.setLength(0);
+        int n = s.length();
+        for (int k = 0; k < n; k++)
+        {
+            char c = s.charAt(k);
+            if (c != '\\')
+            {
+                unescaped.append(c);
+                continue;
+            }
+            char e = ++k < n ? s.charAt(k) : 0;
+            switch (e)
+            {
+                case '"':
+                case '\\':
+                case '/':
+                    unescaped.append(e);
+                    break;
+                case 'b':
+                    unescaped.append('\b');
+                    break;
+                case 'f':
+                    unescaped.append('\f');
+                    break;
+                case 'n':
+                    unescaped.append('\n');
+                    break;
+                case 'r':
+                    unescaped.append('\r');
+                    break;
+                case 't':
+                    unescaped.append('\t');
+                    break;
+                case 'u':
+                    if (k + 4 >= n)
+                    {
+                        throw (error(from, "has a short unicode escape"));
+                    }
+                    try
+                    {
+                        unescaped.append((char) Integer.parseInt(s.substring(k + 1, k + 5), 16));
+                    } catch (NumberFormatException ex)
+                    {
+                        throw (error(from, "has a bad unicode escape"));
+                    }
+                    k += 4;
+                    break;
+                default:
+                    throw (error(from, "has a bad escape"));
+            }
+        }
+        return unescaped.toString();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge;
+
+import com.pjslack.codechallenge.normalize.KeyNormalizer;
+import javax.json.JsonObject;
+
+/**
+ * A validated product definition.
+ *
+ * The fields are read from the JSON once and the conditioned forms used by the
+ * search engines (upper case, only letters, digits and periods) are computed
+ * when the product is made, so the match phase never looks up a JSON key or
+ * conditions a product string again.
+ *
+ * @author Peter J Slack
+ */
+public final class Product
+{
+
+    private final String name;
+    private final String manufacturer;
+    private final String model;
+    private final String family;
+
+    private final String conditionedManufacturer;
+    private final String conditionedModel;
+    private final String conditionedFamily;
+    private final String upperModel;
+
+    /**
+     * Creates a product
+     *
+     * @param name - the unique product_name
+     * @param manufacturer - the manufacturer
+     * @param model - the model
+     * @param family - the family or null if the product has none
+     */
+    public Product(String name, String manufacturer, String model, String family)
+    {
+        this.name = name;
+        this.manufacturer = manufacturer;
+        this.model = model;
+        this.family = family;
+
+        conditionedManufacturer = KeyNormalizer.conditionManufacturer(manufacturer);
+        conditionedModel = KeyNormalizer.condition(model);
+        conditionedFamily = KeyNormalizer.conditionFamily(family);
+        upperModel = model.toUpperCase();
+    }
+
+    /**
+     * Creates a product from its JSON definition, CodeChallenge.checkProductEntryStructure
+     * calls this once the name, manufacturer and model are known to be strings
+     *
+     * @param j - the product definition
+     * @return the product
+     */
+    public static Product fromJson(JsonObject j)
+    {
+        return new Product(j.getString(CodeChallenge.PRODUCT_NAME_KEY),
+                j.getString(CodeChallenge.PRODUCT_MANUFACTURER_KEY),
+                j.getString(CodeChallenge.PRODUCT_MODEL_KEY),
+                j.getString(CodeChallenge.PRODUCT_FAMILY_KEY, null));
+    }
+
+    /**
+     * @return the unique product_name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the manufacturer as given
+     */
+    public String getManufacturer()
+    {
+        return manufacturer;
+    }
+
+    /**
+     * @return the model as given
+     */
+    public String getModel()
+    {
+        return model;
+    }
+
+    /**
+     * @return the family as given or null if the product has none
+     */
+    public String getFamily()
+    {
+        return family;
+    }
+
+    /**
+     * @return the conditioned manufacturer
+     */
+    public String getConditionedManufacturer()
+    {
+        return conditionedManufacturer;
+    }
+
+    /**
+     * @return the conditioned model
+     */
+    public String getConditionedModel()
+    {
+        return conditionedModel;
+    }
+
+    /**
+     * @return the conditioned family or null if the product has none
+     */
+    public String getConditionedFamily()
+    {
+        return conditionedFamily;
+    }
+
+    /**
+     * @return the model in upper case with nothing removed
+     */
+    public String getUpperModel()
+    {
+        return upperModel;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge;
+
+import com.pjslack.codechallenge.searchengine.ResultSink;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+/**
+ * Streams match results as JSON lines, one line per product:
+ * {"product_name":"...","listings":[...]}
+ *
+ * Each line is generated straight from the product name and its listings with
+ * a JsonGenerator, no JsonArray, JsonObject or String is built for it. All lines
+ * go through one large buffered writer with an explicit UTF-8 encoding.
+ *
+ * A JsonGenerator can only generate one JSON text so a new one is made for each
+ * line over a writer that ignores close, the buffered writer is only flushed
+ * and closed when this writer is.
+ *
+ * A generator cannot copy JSON it is given as text, so a line holding a
+ * listing scanned from its bytes is written without one: the bytes of each
+ * such listing are decoded into a reused character buffer and written as
+ * they are.
+ *
+ * @author Peter J Slack
+ */
+public final class ResultWriter implements Closeable
+{
+
+    /**
+     * the size of the character buffer on the output
+     */
+    private static final int BUFFER_SIZE = 1 << 18;
+
+    /**
+     * shared factory, it is thread safe and costly to look up
+     */
+    private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(null);
+
+    /**
+     * the result line key of the product name
+     */
+    public static final String PRODUCT_NAME_KEY = "product_name";
+
+    /**
+     * the result line key of the matched listings
+     */
+    public static final String LISTINGS_KEY = "listings";
+
+    private final Writer out;
+
+    /**
+     * what the generators write to, closing it leaves out open
+     */
+    private final Writer line;
+
+    /**
+     * the number of lines written so far
+     */
+    private long lines = 0;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+
+    /**
+     * Creates a writer over a stream, the stream is closed with the writer
+     *
+     * @param outputStream - receives the UTF-8 encoded JSON lines
+     * @throws NullPointerException - if the stream is null
+     */
+    public ResultWriter(OutputStream outputStream) throws NullPointerException
+    {
+        if (outputStream == null)
+        {
+            throw (new NullPointerException("Output Stream cannot be null"));
+        }
+
+        out = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        line = new FilterWriter(out)
+        {
+            @Override
+            public void flush()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+
+    /**
+     * Creates a writer to a file, the file is created or truncated
+     *
+     * @param file - the file to write
+     * @throws FileNotFoundException - if the file cannot be opened for writing
+     */
+    public ResultWriter(File file) throws FileNotFoundException
+    {
+        this(new FileOutputStream(file));
+    }
+
+    /**
+     * Writes one product line
+     *
+     * @param productName - the product name
+     * @param listings - the listings matched to the product in the order they
+     * are to be written
+     * @throws IOException - if the line cannot be written
+     */
+    public void write(String productName, List<Listing> listings) throws IOException
+    {
+        for (Listing l : listings)
+        {
+            if (l.hasRawJson())
+            {
+                writeRaw(productName, listings);
+                return;
+            }
+        }
+
+        try (JsonGenerator g = GENERATOR_FACTORY.createGenerator(line))
+        {
+            g.writeStartObject();
+            g.write(PRODUCT_NAME_KEY, productName);
+            g.writeStartArray(LISTINGS_KEY);
+            for (Listing l : listings)
+            {
+                g.write(l.getJson());
+            }
+            g.writeEnd();
+            g.writeEnd();
+        }
+        out.write('\n');
+        lines++;
+    }
+
+    private void writeRaw(String productName, List<Listing> listings) throws IOException
+    {
+        out.write("{\"" + PRODUCT_NAME_KEY + "\":");
+        writeString(productName);
+        out.write(",\"" + LISTINGS_KEY + "\":[");
+        boolean first = true;
+        for (Listing l : listings)
+        {
+            if (!first)
+            {
+                out.write(',');
+            }
+            first = false;
+
+            ByteBuffer raw = l.getRawJson();
+            if (raw == null)
+            {
+                out.write(l.getJson().toString());
+                continue;
+            }
+            decoder.reset();
+            boolean done = false;
+            while (!done)
+            {
+                chars.clear();
+                done = !decoder.decode(raw, chars, true).isOverflow();
+                if (done)
+                {
+                    decoder.flush(chars);
+                }
+                out.write(chars.array(), 0, chars.position());
+            }
+        }
+        out.write("]}\n");
+        lines++;
+    }
+
+    private void writeString(String s) throws IOException
+    {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20)
+            {
+                out.write(String.format("\\u%04x", (int) c));
+            } else
+            {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Writes every product of a result set
+     *
+     * @param results - the listings matched to each product name
+     * @param sorted - true to write the products in product name order, false
+     * to write them in the iteration order of the map
+     * @throws IOException - if a line cannot be written
+     */
+    public void writeAll(Map<String, ? extends List<Listing>> results, boolean sorted) throws IOException
+    {
+        if (sorted)
+        {
+            String[] names = results.keySet().toArray(new String[results.size()]);
+            Arrays.sort(names);
+            for (String productName : names)
+            {
+                write(productName, results.get(productName));
+            }
+        } else
+        {
+            for (Map.Entry<String, ? extends List<Listing>> e : results.entrySet())
+            {
+                write(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Writes every product of a result sink in product name order
+     *
+     * @param results - the listings matched to each product
+     * @throws IOException - if a line cannot be written
+     */
+    public void writeAll(ResultSink results) throws IOException
+    {
+        try
+        {
+            results.forEach((productName, listings) ->
+            {
+                try
+                {
+                    write(productName, listings);
+                } catch (IOException ex)
+                {
+                    throw (new UncheckedIOException(ex));
+                }
+            });
+        } catch (UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * @return the number of product lines written so far
+     */
+    public long getLinesWritten()
+    {
+        return lines;
+    }
+
+    /**
+     * Flushes the buffered lines to the output
+     *
+     * @throws IOException - if the output cannot be written
+     */
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        out.close();
+    }
+}
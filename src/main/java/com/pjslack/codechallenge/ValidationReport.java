@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Counts the problems found in the product definitions and listings by
+ * category and keeps the first few offending records of each.
+ *
+ * A dirty feed can hold hundreds of thousands of bad records so nothing is
+ * logged per record above FINE, and the FINE message is only formatted when
+ * FINE is enabled. The record itself is kept as given, it is only turned into
+ * text when the summary is made. The summary reports every category once at
+ * the end of a run.
+ *
+ * The report is safe to use from many threads.
+ *
+ * @author Peter J Slack
+ */
+public final class ValidationReport
+{
+
+    /**
+     * The kinds of problem counted
+     */
+    public enum Issue
+    {
+        /**
+         * a product without a manufacturer, the product is ignored
+         */
+        PRODUCT_MISSING_MANUFACTURER("product without a manufacturer"),
+        /**
+         * a product without a model, the product is ignored
+         */
+        PRODUCT_MISSING_MODEL("product without a model"),
+        /**
+         * a product without a product_name, the product is ignored
+         */
+        PRODUCT_MISSING_NAME("product without a product_name"),
+        /**
+         * a product_name given before, the product is ignored
+         */
+        PRODUCT_DUPLICATE_NAME("product_name not unique"),
+        /**
+         * a listing without a manufacturer, the listing is ignored
+         */
+        LISTING_MISSING_MANUFACTURER("listing without a manufacturer"),
+        /**
+         * a listing without a title, the listing is ignored
+         */
+        LISTING_MISSING_TITLE("listing without a title"),
+        /**
+         * a title given before, the listing is matched with the first
+         */
+        LISTING_DUPLICATE_TITLE("duplicate listing title"),
+        /**
+         * two products of a manufacturer with the same conditioned model, the
+         * families are used to tell them apart
+         */
+        MODEL_DUPLICATE_IN_MANUFACTURER("model given twice for a manufacturer"),
+        /**
+         * two products with the same manufacturer, family and model
+         */
+        MODEL_DUPLICATE_IN_FAMILY("model given twice for a manufacturer and family"),
+        /**
+         * a duplicate model without a family to tell it apart, the product is
+         * ignored
+         */
+        MODEL_UNRECONCILABLE("duplicate model without a family");
+
+        private final String description;
+
+        Issue(String description)
+        {
+            this.description = description;
+        }
+
+        /**
+         * @return what the issue is
+         */
+        public String getDescription()
+        {
+            return description;
+        }
+    }
+
+    /**
+     * the number of records kept for each issue unless told otherwise
+     */
+    public static final int DEFAULT_SAMPLES = 5;
+
+    private static final Logger LOGGER = Logger.getLogger(ValidationReport.class.getName());
+
+    private final int maxSamples;
+    private final AtomicLongArray counts = new AtomicLongArray(Issue.values().length);
+    private final List<List<Object>> samples = new ArrayList<>();
+
+    /**
+     * Creates a report keeping DEFAULT_SAMPLES records of each issue
+     */
+    public ValidationReport()
+    {
+        this(DEFAULT_SAMPLES);
+    }
+
+    /**
+     * Creates a report
+     *
+     * @param maxSamples - the number of records kept for each issue
+     */
+    public ValidationReport(int maxSamples)
+    {
+        this.maxSamples = maxSamples;
+        for (Issue issue : Issue.values())
+        {
+            samples.add(Collections.synchronizedList(new ArrayList<>(Math.min(maxSamples, 16))));
+        }
+    }
+
+    /**
+     * Counts an issue
+     *
+     * @param issue - the issue
+     * @param record - the offending record or its key, kept as a sample while
+     * there is room, null to only count
+     */
+    public void report(Issue issue, Object record)
+    {
+        long n = counts.incrementAndGet(issue.ordinal());
+        if (record != null && n <= maxSamples)
+        {
+            samples.get(issue.ordinal()).add(record);
+        }
+        if (LOGGER.isLoggable(Level.FINE))
+        {
+            LOGGER.log(Level.FINE, "{0} : {1}", new Object[]
+            {
+                issue.getDescription(), record
+            });
+        }
+    }
+
+    /**
+     * @param issue - the issue
+     * @return the number of times it was reported
+     */
+    public long getCount(Issue issue)
+    {
+        return counts.get(issue.ordinal());
+    }
+
+    /**
+     * @return the number of issues reported in every category
+     */
+    public long getTotal()
+    {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++)
+        {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @param issue - the issue
+     * @return the first records reported with the issue as text
+     */
+    public List<String> getSamples(Issue issue)
+    {
+        List<Object> kept = samples.get(issue.ordinal());
+        List<String> text = new ArrayList<>();
+        synchronized (kept)
+        {
+            kept.forEach((r) -> text.add(String.valueOf(r)));
+        }
+        return text;
+    }
+
+    /**
+     * @return one line for each issue reported with its count and samples,
+     * empty when nothing was reported
+     */
+    public List<String> getSummary()
+    {
+        List<String> lines = new ArrayList<>();
+        for (Issue issue : Issue.values())
+        {
+            long n = getCount(issue);
+            if (n > 0)
+            {
+                lines.add(issue.getDescription() + " : " + n + " e.g. " + getSamples(issue));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return the counts and samples of the issues reported as JSON
+     */
+    public JsonObject toJson()
+    {
+        JsonObjectBuilder j = Json.createObjectBuilder();
+        for (Issue issue : Issue.values())
+        {
+            long n = getCount(issue);
+            if (n > 0)
+            {
+                JsonArrayBuilder s = Json.createArrayBuilder();
+                getSamples(issue).forEach(s::add);
+                j.add(issue.name(), Json.createObjectBuilder().add("count", n).add("samples", s));
+            }
+        }
+        return j.build();
+    }
+}
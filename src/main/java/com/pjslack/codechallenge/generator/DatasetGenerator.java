@@ -0,0 +1,591 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.generator;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.JsonLinesReader;
+import com.pjslack.codechallenge.normalize.KeyNormalizer;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/**
+ * Generates a product catalog and a listing feed many times the size of the
+ * bundled data, together with the product every listing was made from.
+ *
+ * The catalog is the bundled products followed by scale - 1 mutated copies of
+ * them. A copy gets a new product_name and a model number that no other
+ * product of the manufacturer has, and now and then loses its family or gets a
+ * new one. The listings are then made up one at a time from the catalog:
+ * <ul>
+ * <li>a product listing, the manufacturer, family and model of one product in
+ * one of several spellings with some camera descriptions around them</li>
+ * <li>an accessory listing, an accessory made for a product, which should not
+ * be matched to anything</li>
+ * <li>a duplicate, the title of a recent listing again at a different
+ * price</li>
+ * </ul>
+ *
+ * Everything comes from one java.util.Random so the same scale and seed always
+ * give the same bytes. Only the catalog is held in memory, the listings and the
+ * ground truth are written as they are made so a feed of any size can be
+ * generated.
+ *
+ * @author Peter J Slack
+ */
+public class DatasetGenerator
+{
+
+    /**
+     * the seed used when none is given
+     */
+    public static final long DEFAULT_SEED = 20160101L;
+
+    /**
+     * the number of listings generated for each copy of the catalog, the size
+     * of the bundled listing feed
+     */
+    public static final int DEFAULT_LISTINGS_PER_SCALE = 20196;
+
+    /**
+     * the generated product catalog file name
+     */
+    public static final String PRODUCTS_FILE = "products.txt";
+
+    /**
+     * the generated listing feed file name
+     */
+    public static final String LISTINGS_FILE = "listings.txt";
+
+    /**
+     * the ground truth file name, one line per listing in listing order
+     */
+    public static final String TRUTH_FILE = "truth.txt";
+
+    /**
+     * the ground truth key of the kind of listing
+     */
+    public static final String TRUTH_KIND_KEY = "kind";
+
+    /**
+     * kind of a listing made from a product
+     */
+    public static final String KIND_PRODUCT = "product";
+
+    /**
+     * kind of an accessory listing that matches no product
+     */
+    public static final String KIND_ACCESSORY = "accessory";
+
+    /**
+     * kind of a listing repeating an earlier title at another price
+     */
+    public static final String KIND_DUPLICATE = "duplicate";
+
+    private static final int PRODUCT_PERCENT = 65;
+    private static final int ACCESSORY_PERCENT = 20;
+
+    /**
+     * the number of recent listings a duplicate is picked from
+     */
+    private static final int RECENT_LISTINGS = 1024;
+
+    /**
+     * one factory for every record, Json.createObjectBuilder looks up the
+     * provider each time it is called
+     */
+    private static final JsonBuilderFactory BUILDER_FACTORY = Json.createBuilderFactory(null);
+
+    private static final String[] CURRENCIES =
+    {
+        "CAD", "USD", "EUR", "GBP"
+    };
+
+    private static final String[] DESCRIPTIONS =
+    {
+        "Digital Camera", "12.1 MP", "14.1MP", "with 4x Optical Zoom", "with 10x Wide Angle Zoom",
+        "and 2.7-inch LCD", "3.0 inch Touchscreen", "HD Video", "Image Stabilization", "(Black)",
+        "(Silver)", "(Red)", "Body Only", "Kit with Lens", "Waterproof", "Appareil photo numerique",
+        "Digitalkamera", "Refurbished", "Bundle"
+    };
+
+    private static final String[] ACCESSORIES =
+    {
+        "Battery for", "Charger for", "Camera Case for", "Lens Cap for", "Screen Protector for",
+        "Remote Control for", "Tripod Mount for", "Replacement Battery Pack compatible with"
+    };
+
+    private static final String[] ACCESSORY_MAKERS =
+    {
+        "Generic", "Lowepro", "Duracell", "DigitalPower", "Neewer Electronics Accessories"
+    };
+
+    private static final String[] MANUFACTURER_SUFFIXES =
+    {
+        " Canada", " Inc.", " Corporation", " Electronics", " USA"
+    };
+
+    private final int scale;
+    private final long seed;
+    private int listingsPerScale = DEFAULT_LISTINGS_PER_SCALE;
+
+    private final ArrayList<GeneratedProduct> catalog = new ArrayList<>();
+    private long listingCount = 0;
+
+    /**
+     * A product of the catalog, the JSON is kept to write the catalog
+     */
+    private static final class GeneratedProduct
+    {
+
+        final String name;
+        final String manufacturer;
+        final String model;
+        final String family;
+        final JsonObject json;
+
+        GeneratedProduct(String name, String manufacturer, String model, String family, JsonObject json)
+        {
+            this.name = name;
+            this.manufacturer = manufacturer;
+            this.model = model;
+            this.family = family;
+            this.json = json;
+        }
+    }
+
+    /**
+     * A listing remembered for duplicates
+     */
+    private static final class RecentListing
+    {
+
+        final String title;
+        final String manufacturer;
+        final String productName;
+        final String kind;
+
+        RecentListing(String title, String manufacturer, String productName, String kind)
+        {
+            this.title = title;
+            this.manufacturer = manufacturer;
+            this.productName = productName;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Creates a generator
+     *
+     * @param scale - the number of copies of the bundled catalog, at least 1
+     * @param seed - the random seed
+     * @throws IllegalArgumentException - if the scale is less than 1
+     */
+    public DatasetGenerator(int scale, long seed) throws IllegalArgumentException
+    {
+        if (scale < 1)
+        {
+            throw (new IllegalArgumentException("scale must be at least 1 : " + scale));
+        }
+        this.scale = scale;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of listings made for each copy of the catalog
+     *
+     * @param listingsPerScale - the number of listings, zero or more
+     */
+    public void setListingsPerScale(int listingsPerScale)
+    {
+        this.listingsPerScale = Math.max(0, listingsPerScale);
+    }
+
+    /**
+     * @return the number of products in the last generated catalog
+     */
+    public int getProductCount()
+    {
+        return catalog.size();
+    }
+
+    /**
+     * @return the number of listings in the last generated feed
+     */
+    public long getListingCount()
+    {
+        return listingCount;
+    }
+
+    /**
+     * Generates the catalog, the listings and the ground truth into a directory
+     * as UTF-8 JSON lines
+     *
+     * @param directory - the directory, created if it does not exist
+     * @throws IOException - if the files cannot be written
+     */
+    public void generate(File directory) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw (new IOException("cannot create directory " + directory));
+        }
+
+        try (Writer products = openWriter(new File(directory, PRODUCTS_FILE));
+                Writer listings = openWriter(new File(directory, LISTINGS_FILE));
+                Writer truth = openWriter(new File(directory, TRUTH_FILE)))
+        {
+            generate(products, listings, truth);
+        }
+    }
+
+    private static Writer openWriter(File file) throws IOException
+    {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * Generates the catalog, the listings and the ground truth as JSON lines,
+     * the writers are not closed
+     *
+     * @param products - receives the product catalog
+     * @param listings - receives the listings
+     * @param truth - receives the ground truth, one line per listing, or null
+     * @throws IOException - if the bundled products cannot be read or a writer
+     * fails
+     */
+    public void generate(Writer products, Writer listings, Writer truth) throws IOException
+    {
+        Random random = new Random(seed);
+
+        buildCatalog(random);
+        for (GeneratedProduct p : catalog)
+        {
+            products.write(p.json.toString());
+            products.write('\n');
+        }
+
+        RecentListing[] recent = new RecentListing[RECENT_LISTINGS];
+        long recentCount = 0;
+        listingCount = (long) listingsPerScale * scale;
+        for (long i = 0; i < listingCount; i++)
+        {
+            RecentListing l;
+            int roll = random.nextInt(100);
+            if (recentCount == 0 || roll < PRODUCT_PERCENT)
+            {
+                l = productListing(random, catalog.get(random.nextInt(catalog.size())));
+            } else if (roll < PRODUCT_PERCENT + ACCESSORY_PERCENT)
+            {
+                l = accessoryListing(random, catalog.get(random.nextInt(catalog.size())));
+            } else
+            {
+                RecentListing r = recent[random.nextInt((int) Math.min(recentCount, RECENT_LISTINGS))];
+                l = new RecentListing(r.title, r.manufacturer, r.productName, KIND_DUPLICATE);
+            }
+            if (!KIND_DUPLICATE.equals(l.kind))
+            {
+                recent[(int) (recentCount++ % RECENT_LISTINGS)] = l;
+            }
+
+            JsonObject listing = BUILDER_FACTORY.createObjectBuilder()
+                    .add(CodeChallenge.PRODUCT_LISTING_TITLE_KEY, l.title)
+                    .add(CodeChallenge.PRODUCT_MANUFACTURER_KEY, l.manufacturer)
+                    .add("currency", CURRENCIES[random.nextInt(CURRENCIES.length)])
+                    .add("price", price(500 + random.nextInt(200000)))
+                    .build();
+            listings.write(listing.toString());
+            listings.write('\n');
+
+            if (truth != null)
+            {
+                JsonObjectBuilder t = BUILDER_FACTORY.createObjectBuilder()
+                        .add(CodeChallenge.PRODUCT_LISTING_TITLE_KEY, l.title)
+                        .add(TRUTH_KIND_KEY, l.kind);
+                if (l.productName == null)
+                {
+                    t.addNull(CodeChallenge.PRODUCT_NAME_KEY);
+                } else
+                {
+                    t.add(CodeChallenge.PRODUCT_NAME_KEY, l.productName);
+                }
+                truth.write(t.build().toString());
+                truth.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Reads the bundled products and adds the mutated copies
+     */
+    private void buildCatalog(Random random) throws IOException
+    {
+        catalog.clear();
+
+        ArrayList<GeneratedProduct> base = new ArrayList<>();
+        //conditioned manufacturer@model of every product so copies never collide
+        HashSet<String> models = new HashSet<>();
+        try (InputStream in = DatasetGenerator.class.getResourceAsStream(CodeChallenge.PRODUCTS_RESOURCE_PATH);
+                JsonLinesReader reader = new JsonLinesReader(in))
+        {
+            while (reader.hasNext())
+            {
+                JsonObject j = reader.next();
+                String name = stringOf(j, CodeChallenge.PRODUCT_NAME_KEY);
+                String mfg = stringOf(j, CodeChallenge.PRODUCT_MANUFACTURER_KEY);
+                String model = stringOf(j, CodeChallenge.PRODUCT_MODEL_KEY);
+                if (name == null || mfg == null || model == null)
+                {
+                    Logger.getLogger(DatasetGenerator.class.getName()).log(Level.WARNING, "Skipping invalid product : " + j);
+                    continue;
+                }
+                GeneratedProduct p = new GeneratedProduct(name, mfg, model, stringOf(j, CodeChallenge.PRODUCT_FAMILY_KEY), j);
+                base.add(p);
+                models.add(modelKey(mfg, model));
+            }
+        }
+        catalog.addAll(base);
+
+        for (int copy = 1; copy < scale; copy++)
+        {
+            for (GeneratedProduct p : base)
+            {
+                String model = mutateModel(random, p.manufacturer, p.model, copy, models);
+
+                String family = p.family;
+                int roll = random.nextInt(10);
+                if (roll == 0)
+                {
+                    family = null;
+                } else if (roll == 1)
+                {
+                    family = (family == null ? p.manufacturer : family) + " " + (char) ('A' + random.nextInt(26)) + "Series";
+                }
+
+                String name = p.name + "_" + copy;
+                JsonObjectBuilder b = BUILDER_FACTORY.createObjectBuilder();
+                for (Map.Entry<String, JsonValue> e : p.json.entrySet())
+                {
+                    switch (e.getKey())
+                    {
+                        case CodeChallenge.PRODUCT_NAME_KEY:
+                            b.add(CodeChallenge.PRODUCT_NAME_KEY, name);
+                            break;
+                        case CodeChallenge.PRODUCT_MODEL_KEY:
+                            b.add(CodeChallenge.PRODUCT_MODEL_KEY, model);
+                            break;
+                        case CodeChallenge.PRODUCT_FAMILY_KEY:
+                            break;
+                        default:
+                            b.add(e.getKey(), e.getValue());
+                    }
+                }
+                if (family != null)
+                {
+                    b.add(CodeChallenge.PRODUCT_FAMILY_KEY, family);
+                }
+
+                catalog.add(new GeneratedProduct(name, p.manufacturer, model, family, b.build()));
+            }
+        }
+    }
+
+    private static String stringOf(JsonObject j, String key)
+    {
+        JsonValue v = j.get(key);
+        return v instanceof JsonString ? ((JsonString) v).getString() : null;
+    }
+
+    private static String modelKey(String mfg, String model)
+    {
+        return KeyNormalizer.condition(mfg) + "@" + KeyNormalizer.condition(model);
+    }
+
+    /**
+     * Changes the last run of digits in a model to a new number, or adds a
+     * suffix when that keeps colliding, so that no two products of a
+     * manufacturer share a model
+     */
+    private static String mutateModel(Random random, String mfg, String model, int copy, HashSet<String> models)
+    {
+        int end = model.length();
+        while (end > 0 && !Character.isDigit(model.charAt(end - 1)))
+        {
+            end--;
+        }
+        int start = end;
+        while (start > 0 && Character.isDigit(model.charAt(start - 1)))
+        {
+            start--;
+        }
+
+        if (start < end)
+        {
+            int digits = end - start;
+            int bound = digits >= 9 ? Integer.MAX_VALUE : (int) Math.pow(10, digits);
+            for (int attempt = 0; attempt < 8; attempt++)
+            {
+                String number = String.format(Locale.ROOT, "%0" + digits + "d", random.nextInt(bound));
+                String mutated = model.substring(0, start) + number + model.substring(end);
+                if (models.add(modelKey(mfg, mutated)))
+                {
+                    return mutated;
+                }
+            }
+        }
+
+        String mutated = model + "-" + Integer.toString(copy, 36).toUpperCase(Locale.ROOT);
+        for (int n = 0; !models.add(modelKey(mfg, mutated)); n++)
+        {
+            mutated = model + "-" + Integer.toString(copy, 36).toUpperCase(Locale.ROOT) + n;
+        }
+        return mutated;
+    }
+
+    private static String price(int cents)
+    {
+        int fraction = cents % 100;
+        return (cents / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    private static String spellManufacturer(Random random, String mfg)
+    {
+        switch (random.nextInt(6))
+        {
+            case 0:
+                return mfg.toUpperCase(Locale.ROOT);
+            case 1:
+                return mfg.toLowerCase(Locale.ROOT);
+            case 2:
+                return mfg + MANUFACTURER_SUFFIXES[random.nextInt(MANUFACTURER_SUFFIXES.length)];
+            default:
+                return mfg;
+        }
+    }
+
+    private static String spellModel(Random random, String model)
+    {
+        switch (random.nextInt(6))
+        {
+            case 0:
+                return model.replace('-', ' ');
+            case 1:
+                return model.replace("-", "");
+            case 2:
+                return model.toLowerCase(Locale.ROOT);
+            default:
+                return model;
+        }
+    }
+
+    private static void appendDescriptions(Random random, StringBuilder title)
+    {
+        int n = 1 + random.nextInt(3);
+        for (int i = 0; i < n; i++)
+        {
+            title.append(' ').append(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+        }
+    }
+
+    private static RecentListing productListing(Random random, GeneratedProduct p)
+    {
+        StringBuilder title = new StringBuilder();
+        if (random.nextInt(10) < 8)
+        {
+            title.append(p.manufacturer).append(' ');
+        }
+        if (p.family != null && random.nextInt(10) < 8)
+        {
+            title.append(p.family).append(' ');
+        }
+        title.append(spellModel(random, p.model));
+        appendDescriptions(random, title);
+
+        return new RecentListing(title.toString(), spellManufacturer(random, p.manufacturer), p.name, KIND_PRODUCT);
+    }
+
+    private static RecentListing accessoryListing(Random random, GeneratedProduct p)
+    {
+        StringBuilder title = new StringBuilder();
+        title.append(ACCESSORIES[random.nextInt(ACCESSORIES.length)]).append(' ').append(p.manufacturer).append(' ');
+        if (p.family != null && random.nextInt(2) == 0)
+        {
+            title.append(p.family).append(' ');
+        }
+        title.append(p.model);
+
+        String maker = random.nextInt(10) < 7
+                ? ACCESSORY_MAKERS[random.nextInt(ACCESSORY_MAKERS.length)]
+                : spellManufacturer(random, p.manufacturer);
+        return new RecentListing(title.toString(), maker, null, KIND_ACCESSORY);
+    }
+
+    /**
+     * Generates a data set to a directory
+     *
+     * @param args - output directory, scale, optional seed and optional
+     * listings per scale
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 2 || args.length > 4)
+        {
+            System.err.println("usage: DatasetGenerator <output directory> <scale> [seed] [listings per scale]");
+            System.exit(1);
+        }
+
+        try
+        {
+            DatasetGenerator g = new DatasetGenerator(Integer.parseInt(args[1]),
+                    args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED);
+            if (args.length > 3)
+            {
+                g.setListingsPerScale(Integer.parseInt(args[3]));
+            }
+
+            long startTime = System.currentTimeMillis();
+            g.generate(new File(args[0]));
+            long difference = System.currentTimeMillis() - startTime;
+
+            System.out.println("Products generated         : " + g.getProductCount());
+            System.out.println("Listings generated         : " + g.getListingCount());
+            System.out.println("Elapsed Time (s)           : " + difference / 1000);
+        } catch (IllegalArgumentException | IOException ex)
+        {
+            Logger.getLogger(DatasetGenerator.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(2);
+        }
+    }
+}
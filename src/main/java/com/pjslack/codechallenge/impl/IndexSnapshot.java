@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.ByteBufferInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A binary snapshot of the SlackerTestMethod match index, so that a run against
+ * a product catalog that has not changed can skip building it.
+ *
+ * The snapshot file is:
+ * <pre>
+ * int     magic
+ * int     snapshot version
+ * int     length, byte[] SHA-256 of the product data the index was built from
+ * int     length of the index
+ * long    CRC32 of the index
+ * byte[]  the index as written by SlackerTestMethod.writeIndex
+ * </pre>
+ * The file is memory mapped when it is loaded. The catalog hash, versions,
+ * length and checksum are all checked before the engine reads anything, so a
+ * stale or damaged snapshot is simply not used and the index is built.
+ *
+ * @author Peter J Slack
+ */
+public final class IndexSnapshot
+{
+
+    private static final int MAGIC = 0x43434958;
+
+    /**
+     * the version of the snapshot file layout
+     */
+    public static final int SNAPSHOT_VERSION = 1;
+
+    /**
+     * the size of the header before the catalog hash
+     */
+    private static final int HEADER_SIZE = 8;
+
+    private IndexSnapshot()
+    {
+    }
+
+    /**
+     * @return a new digest of the kind the catalog hash is made with
+     */
+    public static MessageDigest newCatalogDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex)
+        {
+            //every Java platform has SHA-256
+            throw (new IllegalStateException(ex));
+        }
+    }
+
+    /**
+     * Writes the snapshot of an engine that has built its index, the file is
+     * written to a temporary file and renamed over the old snapshot
+     *
+     * @param file - the snapshot file
+     * @param catalogHash - the hash of the product data the index was built
+     * from
+     * @param engine - the engine
+     * @throws IOException - if the snapshot cannot be written
+     */
+    public static void write(File file, byte[] catalogHash, SlackerTestMethod engine) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream index = new DataOutputStream(bytes))
+        {
+            engine.writeIndex(index);
+        }
+        byte[] index = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(index);
+
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16)))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(catalogHash.length);
+                out.write(catalogHash);
+                out.writeInt(index.length);
+                out.writeLong(crc.getValue());
+                out.write(index);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally
+        {
+            if (temp.exists() && !temp.delete())
+            {
+                Logger.getLogger(IndexSnapshot.class.getName()).log(Level.WARNING, "could not remove " + temp);
+            }
+        }
+    }
+
+    /**
+     * Loads a snapshot into an engine that has not built its index
+     *
+     * @param file - the snapshot file
+     * @param catalogHash - the hash of the current product data
+     * @param engine - the engine
+     * @return true if the index was loaded, false if there is no snapshot or
+     * it is of another catalog, another version or damaged
+     * @throws IOException - if the snapshot cannot be read
+     */
+    public static boolean load(File file, byte[] catalogHash, SlackerTestMethod engine) throws IOException
+    {
+        if (!file.isFile())
+        {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            String problem = check(buffer, catalogHash);
+            if (problem != null)
+            {
+                Logger.getLogger(IndexSnapshot.class.getName()).log(Level.INFO, "Index snapshot not used, " + problem + " : " + file);
+                return false;
+            }
+
+            engine.readIndex(new DataInputStream(new ByteBufferInputStream(buffer)));
+            return true;
+        }
+    }
+
+    /**
+     * Checks the header and the index checksum, on success the buffer is left
+     * at the start of the index
+     *
+     * @return null if the snapshot can be used or what is wrong with it
+     */
+    private static String check(ByteBuffer buffer, byte[] catalogHash)
+    {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+        {
+            return "not a snapshot file";
+        }
+        if (buffer.getInt() != SNAPSHOT_VERSION)
+        {
+            return "snapshot version differs";
+        }
+
+        if (buffer.remaining() < 4)
+        {
+            return "truncated";
+        }
+        int hashLength = buffer.getInt();
+        if (hashLength < 0 || buffer.remaining() < hashLength + 12)
+        {
+            return "truncated";
+        }
+        byte[] hash = new byte[hashLength];
+        buffer.get(hash);
+        if (!Arrays.equals(hash, catalogHash))
+        {
+            return "product catalog has changed";
+        }
+
+        int length = buffer.getInt();
+        long crcValue = buffer.getLong();
+        if (length < 0 || buffer.remaining() != length)
+        {
+            return "truncated";
+        }
+
+        CRC32 crc = new CRC32();
+        int start = buffer.position();
+        byte[] chunk = new byte[8192];
+        while (buffer.hasRemaining())
+        {
+            int n = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        buffer.position(start);
+        if (crc.getValue() != crcValue)
+        {
+            return "checksum differs";
+        }
+
+        //the engine checks the version of the index itself
+        return null;
+    }
+}
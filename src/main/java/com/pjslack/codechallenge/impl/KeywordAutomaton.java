@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A multi keyword search automaton taken from
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm" >Aho-Corasick algorithm</a>
+ *
+ * Keywords are added with an integer id chosen by the caller, the same keyword
+ * may be added under more than one id. Once built a single pass over a text
+ * reports every id whose keyword occurs in the text, so the cost of a search
+ * depends on the length of the text and not on the number of keywords.
+ *
+ * Transitions for ASCII characters are fully resolved into a table at build
+ * time, anything outside of ASCII falls back to following the failure links.
+ *
+ * The automaton is not modified by a search so a built instance can be shared
+ * between threads.
+ *
+ * @author Peter J Slack
+ */
+public class KeywordAutomaton
+{
+
+    /**
+     * Receives the keywords found during a search
+     */
+    public interface HitListener
+    {
+
+        /**
+         * Called for every occurrence of a keyword in the searched text
+         *
+         * @param keywordId - the id the keyword was added with
+         * @param start - the index in the text where the keyword begins
+         * @param length - the length of the keyword
+         */
+        void hit(int keywordId, int start, int length);
+    }
+
+    /**
+     * the size of the resolved transition table for each node
+     */
+    private static final int ASCII_SIZE = 128;
+
+    /**
+     * the empty id list used for nodes that do not end a keyword
+     */
+    private static final int[] NO_IDS = new int[0];
+
+    /**
+     * goto function of the keyword trie used while building
+     */
+    private final ArrayList<HashMap<Character, Integer>> children = new ArrayList<>();
+
+    /**
+     * the keyword ids ending at each node
+     */
+    private final ArrayList<int[]> nodeIds = new ArrayList<>();
+
+    /**
+     * the length of the keyword spelled by the path to each node
+     */
+    private final ArrayList<Integer> depth = new ArrayList<>();
+
+    /**
+     * failure link for each node
+     */
+    private int[] fail;
+
+    /**
+     * resolved transitions for ASCII characters, ASCII_SIZE entries per node
+     */
+    private int[] delta;
+
+    /**
+     * the keyword ids reported at each node including those reachable on the
+     * failure chain
+     */
+    private int[][] outputs;
+
+    /**
+     * the keyword lengths matching the entries of outputs
+     */
+    private int[][] outputLengths;
+
+    /**
+     * the number of keyword ids added
+     */
+    private int size = 0;
+
+    /**
+     * true once build() has been called
+     */
+    private boolean built = false;
+
+    /**
+     * Creates an empty automaton
+     */
+    public KeywordAutomaton()
+    {
+        newNode(0);
+    }
+
+    private int newNode(int nodeDepth)
+    {
+        children.add(new HashMap<>());
+        nodeIds.add(NO_IDS);
+        depth.add(nodeDepth);
+        return children.size() - 1;
+    }
+
+    /**
+     * Adds a keyword to the automaton
+     *
+     * @param keyword - the text to search for
+     * @param id - the id reported when the keyword is found
+     * @throws IllegalStateException - if the automaton is already built
+     */
+    public void addKeyword(String keyword, int id)
+    {
+        if (built)
+        {
+            throw (new IllegalStateException("Keywords cannot be added after the automaton is built"));
+        }
+
+        int node = 0;
+        for (int i = 0; i < keyword.length(); i++)
+        {
+            Character c = keyword.charAt(i);
+            Integer next = children.get(node).get(c);
+            if (next == null)
+            {
+                next = newNode(i + 1);
+                children.get(node).put(c, next);
+            }
+            node = next;
+        }
+
+        int[] ids = nodeIds.get(node);
+        int[] grown = Arrays.copyOf(ids, ids.length + 1);
+        grown[ids.length] = id;
+        nodeIds.set(node, grown);
+        size++;
+    }
+
+    /**
+     * Computes the failure links and transition tables, this must be called
+     * once all keywords are added and before searching
+     */
+    public void build()
+    {
+        int nodes = children.size();
+        fail = new int[nodes];
+        delta = new int[nodes * ASCII_SIZE];
+        outputs = new int[nodes][];
+        outputLengths = new int[nodes][];
+
+        //the root only reports empty keywords, this is handled by search so
+        //the root output is not inherited by the rest of the trie
+        outputs[0] = nodeIds.get(0);
+        outputLengths[0] = new int[outputs[0].length];
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ASCII_SIZE; c++)
+        {
+            Integer next = children.get(0).get((char) c);
+            delta[c] = next == null ? 0 : next;
+        }
+        children.get(0).values().stream().forEach((child) ->
+        {
+            fail[child] = 0;
+            queue.add(child);
+        });
+
+        //breadth first so the failure target of a node is always complete
+        while (!queue.isEmpty())
+        {
+            int node = queue.poll();
+            int failNode = fail[node];
+
+            int[] own = nodeIds.get(node);
+            int[] inherited = failNode == 0 ? NO_IDS : outputs[failNode];
+            int[] out = Arrays.copyOf(own, own.length + inherited.length);
+            System.arraycopy(inherited, 0, out, own.length, inherited.length);
+            int[] lengths = new int[out.length];
+            Arrays.fill(lengths, 0, own.length, depth.get(node));
+            if (inherited.length > 0)
+            {
+                System.arraycopy(outputLengths[failNode], 0, lengths, own.length, inherited.length);
+            }
+            outputs[node] = out;
+            outputLengths[node] = lengths;
+
+            for (int c = 0; c < ASCII_SIZE; c++)
+            {
+                Integer next = children.get(node).get((char) c);
+                delta[node * ASCII_SIZE + c] = next == null ? delta[failNode * ASCII_SIZE + c] : next;
+            }
+
+            for (Map.Entry<Character, Integer> e : children.get(node).entrySet())
+            {
+                int child = e.getValue();
+                fail[child] = step(failNode, e.getKey());
+                queue.add(child);
+            }
+        }
+
+        built = true;
+    }
+
+    /**
+     * follows the goto and failure functions for one character
+     */
+    private int step(int node, char c)
+    {
+        if (c < ASCII_SIZE)
+        {
+            return delta[node * ASCII_SIZE + c];
+        }
+
+        int state = node;
+        while (true)
+        {
+            Integer next = children.get(state).get(c);
+            if (next != null)
+            {
+                return next;
+            }
+            if (state == 0)
+            {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    /**
+     * Reports every keyword occurrence in the text to the listener
+     *
+     * @param text - the text to scan
+     * @param listener - receives the keyword ids found
+     * @throws IllegalStateException - if the automaton has not been built
+     */
+    public void search(CharSequence text, HitListener listener)
+    {
+        if (!built)
+        {
+            throw (new IllegalStateException("The automaton must be built before searching"));
+        }
+
+        //an empty keyword is contained in any text
+        for (int id : outputs[0])
+        {
+            listener.hit(id, 0, 0);
+        }
+
+        int state = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            state = step(state, text.charAt(i));
+            int[] out = outputs[state];
+            if (out.length > 0)
+            {
+                int[] lengths = outputLengths[state];
+                for (int k = 0; k < out.length; k++)
+                {
+                    listener.hit(out[k], i + 1 - lengths[k], lengths[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keyword ids added
+     *
+     * @return the number of keyword ids in this automaton
+     */
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
+import com.pjslack.codechallenge.searchengine.MatchResult;
+import java.util.ArrayList;
+import java.util.List;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * What the SlackerTestMethod did to match one listing: the manufacturer and
+ * family it found, each candidate model it verified with the number of
+ * patterns run, each choice between two matching models and the result.
+ *
+ * A trace is filled in by the one thread matching the listing and is only
+ * read once it has been handed to the MatchTracer.
+ *
+ * @author Peter J Slack
+ */
+public final class MatchTrace
+{
+
+    /**
+     * one candidate model verified against the title
+     */
+    private static final class Probe
+    {
+
+        final String model;
+        final int patterns;
+        final boolean matched;
+
+        Probe(String model, int patterns, boolean matched)
+        {
+            this.model = model;
+            this.patterns = patterns;
+            this.matched = matched;
+        }
+    }
+
+    private final String title;
+    private final String manufacturerField;
+    private String manufacturer = null;
+    private String manufacturerRule = null;
+    private String family = null;
+    private int candidates = 0;
+    private final List<Probe> probes = new ArrayList<>();
+    private int patternsTried = 0;
+    private final List<String> decisions = new ArrayList<>();
+    private MatchResult result = null;
+    private long nanos = 0;
+
+    MatchTrace(Listing listing)
+    {
+        title = listing.getTitle();
+        manufacturerField = listing.getManufacturer();
+    }
+
+    void manufacturer(String conditionedManufacturer, String rule)
+    {
+        manufacturer = conditionedManufacturer;
+        manufacturerRule = rule;
+    }
+
+    void family(String conditionedFamily)
+    {
+        family = conditionedFamily;
+    }
+
+    void candidates(int models)
+    {
+        candidates = models;
+    }
+
+    void probe(String model, int patterns, boolean matched)
+    {
+        probes.add(new Probe(model, patterns, matched));
+        patternsTried += patterns;
+    }
+
+    void decision(String firstMatch, String nextMatch, String kept)
+    {
+        decisions.add(firstMatch + " vs " + nextMatch + " -> " + (kept == null ? "ambiguous" : kept));
+    }
+
+    void finish(MatchResult matchResult, long elapsedNanos)
+    {
+        result = matchResult;
+        nanos = elapsedNanos;
+    }
+
+    /**
+     * @return the listing title
+     */
+    public String getTitle()
+    {
+        return title;
+    }
+
+    /**
+     * @return the result of the match
+     */
+    public MatchResult getResult()
+    {
+        return result;
+    }
+
+    /**
+     * @return the number of candidate models verified
+     */
+    public int getModelsProbed()
+    {
+        return probes.size();
+    }
+
+    /**
+     * @return the number of model patterns run against the title
+     */
+    public int getPatternsTried()
+    {
+        return patternsTried;
+    }
+
+    /**
+     * @return the choices made between two matching models
+     */
+    public List<String> getDecisions()
+    {
+        return decisions;
+    }
+
+    /**
+     * @return the nanoseconds taken to match the listing
+     */
+    public long getNanos()
+    {
+        return nanos;
+    }
+
+    /**
+     * @return the trace as a JSON object
+     */
+    public JsonObject toJson()
+    {
+        JsonObjectBuilder j = Json.createObjectBuilder()
+                .add("title", title)
+                .add("manufacturerField", manufacturerField);
+        if (manufacturer != null)
+        {
+            j.add("manufacturer", manufacturer).add("manufacturerRule", manufacturerRule);
+        }
+        if (family != null)
+        {
+            j.add("family", family);
+        }
+        JsonArrayBuilder p = Json.createArrayBuilder();
+        probes.forEach((probe) -> p.add(Json.createObjectBuilder()
+                .add("model", probe.model)
+                .add("patterns", probe.patterns)
+                .add("matched", probe.matched)));
+        JsonArrayBuilder d = Json.createArrayBuilder();
+        decisions.forEach(d::add);
+        j.add("candidates", candidates)
+                .add("probes", p)
+                .add("patternsTried", patternsTried)
+                .add("decisions", d)
+                .add("reason", result == null ? "" : result.getReason().name());
+        if (result != null && result.isMatched())
+        {
+            j.add(CodeChallenge.PRODUCT_NAME_KEY, result.getProductName().get());
+        }
+        return j.add("nanos", nanos).build();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the traces of a sample of the listings matched by a SlackerTestMethod.
+ *
+ * One listing in every sampleEvery is traced and the traces go into a ring
+ * buffer of fixed capacity, so a long run keeps its most recent traces and the
+ * memory held does not grow. Tracing is off unless a tracer is given to the
+ * engine with setTracer, and the listings that are not sampled are matched on
+ * the untraced path.
+ *
+ * The tracer is safe to use from many threads.
+ *
+ * @author Peter J Slack
+ */
+public final class MatchTracer
+{
+
+    /**
+     * the number of traces kept unless told otherwise
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int sampleEvery;
+    private final AtomicReferenceArray<MatchTrace> ring;
+    private final AtomicLong seen = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+
+    /**
+     * Creates a tracer
+     *
+     * @param capacity - the most traces kept, the oldest are dropped first
+     * @param sampleEvery - trace one listing in this many, 1 to trace all
+     * @throws IllegalArgumentException - if either is less than 1
+     */
+    public MatchTracer(int capacity, int sampleEvery) throws IllegalArgumentException
+    {
+        if (capacity < 1 || sampleEvery < 1)
+        {
+            throw (new IllegalArgumentException("the capacity and sample rate must be at least 1"));
+        }
+        this.sampleEvery = sampleEvery;
+        ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @return true when the next listing is to be traced
+     */
+    boolean sample()
+    {
+        return seen.getAndIncrement() % sampleEvery == 0;
+    }
+
+    /**
+     * Keeps a trace, dropping the oldest when the buffer is full
+     *
+     * @param trace - the finished trace
+     */
+    void record(MatchTrace trace)
+    {
+        long n = recorded.getAndIncrement();
+        ring.set((int) (n % ring.length()), trace);
+    }
+
+    /**
+     * @return the number of listings seen, traced or not
+     */
+    public long getListingsSeen()
+    {
+        return seen.get();
+    }
+
+    /**
+     * @return the number of traces recorded including those since dropped
+     */
+    public long getTracesRecorded()
+    {
+        return recorded.get();
+    }
+
+    /**
+     * @return the traces held, oldest first
+     */
+    public List<MatchTrace> getTraces()
+    {
+        long end = recorded.get();
+        long begin = Math.max(0, end - ring.length());
+        List<MatchTrace> traces = new ArrayList<>((int) (end - begin));
+        for (long n = begin; n < end; n++)
+        {
+            MatchTrace t = ring.get((int) (n % ring.length()));
+            if (t != null)
+            {
+                traces.add(t);
+            }
+        }
+        return traces;
+    }
+
+    /**
+     * Writes the traces held as JSON lines, oldest first
+     *
+     * @param out - receives the traces, it is flushed but not closed
+     * @return the number of traces written
+     * @throws IOException - if the traces cannot be written
+     */
+    public int write(Writer out) throws IOException
+    {
+        List<MatchTrace> traces = getTraces();
+        for (MatchTrace t : traces)
+        {
+            out.write(t.toJson().toString());
+            out.write('\n');
+        }
+        out.flush();
+        return traces.size();
+    }
+
+    /**
+     * Writes the traces held to a UTF-8 JSON lines file
+     *
+     * @param file - the trace file, replaced if it exists
+     * @return the number of traces written
+     * @throws IOException - if the file cannot be written
+     */
+    public int write(File file) throws IOException
+    {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))
+        {
+            return write(out);
+        }
+    }
+}
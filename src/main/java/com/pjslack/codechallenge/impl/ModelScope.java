@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.searchengine.MatchResult;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * The models searched when a listing is known to belong to one manufacturer or
+ * one family.
+ *
+ * Models are identified by their rank, the position they have in the iteration
+ * order of the model map, so that candidates are verified in the same order the
+ * model map is walked. Everything the match needs for a model is kept in
+ * arrays by rank when the index is built, the compiled search expressions and
+ * the result of the product, so verifying a candidate needs no map lookup and
+ * no key to be made.
+ *
+ * @author Peter J Slack
+ */
+class ModelScope
+{
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /**
+     * tells the scopes apart in the postings of the token index
+     */
+    private final int id = NEXT_ID.getAndIncrement();
+
+    /**
+     * the models in rank order
+     */
+    private final String[] models;
+
+    /**
+     * the search expressions of each model in rank order, null for a model
+     * with none
+     */
+    private final Pattern[][] patterns;
+
+    /**
+     * the result of the product of each model in rank order
+     */
+    private final MatchResult[] results;
+
+    /**
+     * models that have a search expression the token index cannot represent,
+     * these are verified for every listing in the scope
+     */
+    private final BitSet alwaysCandidates = new BitSet();
+
+    /**
+     * Creates a scope
+     *
+     * @param models - the conditioned model names in rank order
+     */
+    ModelScope(String[] models)
+    {
+        this.models = models;
+        patterns = new Pattern[models.length][];
+        results = new MatchResult[models.length];
+    }
+
+    /**
+     * @return the number of this scope, unique in the process
+     */
+    int id()
+    {
+        return id;
+    }
+
+    /**
+     * Sets what a match of a model gives
+     *
+     * @param rank - the rank of the model
+     * @param searches - the search expressions in the order they are tried,
+     * null if the model has none
+     * @param result - the result of the product of the model
+     */
+    void setModel(int rank, Pattern[] searches, MatchResult result)
+    {
+        patterns[rank] = searches;
+        results[rank] = result;
+    }
+
+    /**
+     * @param rank - the rank of a model
+     * @return the search expressions of the model, null if it has none
+     */
+    Pattern[] patterns(int rank)
+    {
+        return patterns[rank];
+    }
+
+    /**
+     * @param rank - the rank of a model
+     * @return the result of the product of the model
+     */
+    MatchResult result(int rank)
+    {
+        return results[rank];
+    }
+
+    /**
+     * Marks a model as a candidate for every listing
+     *
+     * @param rank - the rank of the model
+     */
+    void addAlwaysCandidate(int rank)
+    {
+        alwaysCandidates.set(rank);
+    }
+
+    /**
+     * @return a new candidate set holding the models that are always candidates
+     */
+    BitSet newCandidates()
+    {
+        return (BitSet) alwaysCandidates.clone();
+    }
+
+    /**
+     * @param rank - the rank of a model
+     * @return the conditioned model name
+     */
+    String model(int rank)
+    {
+        return models[rank];
+    }
+
+    /**
+     * @return the number of models in this scope
+     */
+    int size()
+    {
+        return models.length;
+    }
+}
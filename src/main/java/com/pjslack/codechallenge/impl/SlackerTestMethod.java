@@ -17,14 +17,31 @@
 package com.pjslack.codechallenge.impl;
 
 import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
+import com.pjslack.codechallenge.Product;
+import com.pjslack.codechallenge.ValidationReport;
+import com.pjslack.codechallenge.metrics.Histogram;
+import com.pjslack.codechallenge.metrics.Metrics;
+import com.pjslack.codechallenge.normalize.KeyNormalizer;
 import com.pjslack.codechallenge.searchengine.AbstractSearchEngine;
+import com.pjslack.codechallenge.searchengine.MatchResult;
+import com.pjslack.codechallenge.searchengine.ResultSink;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.ListIterator;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import javax.json.JsonObject;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
 
 /**
  * This is an implementation of search engine that first orchestrates the search
@@ -68,10 +85,16 @@ public class SlackerTestMethod extends AbstractSearchEngine
     private final HashMap<String, HashMap<String, String>> modelByMfgMap = new HashMap<>();
 
     /**
-     * for each regex pointer ( manufacturer @ family @ model ) a hashset of regular
-     * search expressions to use to match model identifiers in a text string
+     * for each regex pointer ( manufacturer @ family @ model ) the compiled regular
+     * search expressions used to find model identifiers in a text string, keyed by
+     * the expression source so that each variant is only compiled once
      */
-    private final HashMap<String,HashSet<String>> modelSearchRegex = new HashMap<>();
+    private final HashMap<String,HashMap<String,Pattern>> modelSearchRegex = new HashMap<>();
+
+    /**
+     * pattern used to detect keys that do not begin with a digit
+     */
+    private static final Pattern NON_DIGIT_PREFIX = Pattern.compile("\\D.*$");
     
 
     /**
@@ -99,27 +122,127 @@ public class SlackerTestMethod extends AbstractSearchEngine
     private final HashMap<String, String> mfgByProductFamily = new HashMap<>();
 
     /**
-     * Unmatched listings
+     * How the manufacturer, alias or family is chosen when a listing contains
+     * more than one of them
+     */
+    public enum HitSelection
+    {
+        /**
+         * the first key in map iteration order wins, this is the original
+         * behaviour of the contains loops
+         */
+        KEY_ORDER,
+        /**
+         * hits in the manufacturer field win over the title, then the leftmost
+         * and longest hit in the text
+         */
+        LEFTMOST
+    }
+
+    /**
+     * the selection rule applied to vocabulary hits
+     */
+    private HitSelection hitSelection = HitSelection.KEY_ORDER;
+
+    /**
+     * one automaton over the manufacturer, alias and family keys so that a
+     * listing is scanned once for all of them. Ids are ranks in the key arrays
+     * below offset by the start of each category
+     */
+    private KeywordAutomaton vocabulary;
+
+    /**
+     * manufacturer keys in modelByMfgMap iteration order
+     */
+    private String[] mfgKeys;
+
+    /**
+     * alias keys in aliasMfgMap iteration order
+     */
+    private String[] aliasKeys;
+
+    /**
+     * family keys in modelByProductFamily iteration order
+     */
+    private String[] familyKeys;
+
+    /**
+     * the models searched for each manufacturer by manufacturer id, the rank of
+     * the manufacturer in mfgKeys
+     */
+    private ModelScope[] mfgScopes;
+
+    /**
+     * the models searched for each family by family id, the rank of the family
+     * in familyKeys
+     */
+    private ModelScope[] familyScopes;
+
+    /**
+     * the manufacturer id of each family, -1 if the manufacturer of the family
+     * has no models of its own
      */
-    HashMap<String, JsonObject> unMatched = new HashMap<>();
+    private int[] familyMfg;
 
     /**
-     * Matched listings
+     * the manufacturer id of each alias key by alias rank, -1 if the alias is
+     * not itself a manufacturer key
      */
-    HashMap<String, ArrayList<JsonObject>> matchedList = new HashMap<>();
+    private int[] aliasMfg;
+
+    /**
+     * model tokens to the candidate products that need them
+     */
+    private final TokenIndex tokenIndex = new TokenIndex();
+
+    /**
+     * Matched listings, written by the matching threads as they go
+     */
+    private final ResultSink resultSink;
+
+    /**
+     * the matched listings as a map, made from the sink when first asked for
+     */
+    private HashMap<String, ArrayList<Listing>> matchedList;
 
-    /** this umber of unmatched listings */
-    private int numUnmatched=0;
-    /** the number of matched listings*/
-    private int numMatched=0;
     /** the number of matched from duplicate listings*/
     private int numDuplicateMatches=0;
     
+    /**
+     * the products reported while the maps were built by issue in the order
+     * they were reported, kept in the index so a read index reports them again
+     */
+    private final EnumMap<ValidationReport.Issue, ArrayList<String>> modelIssues = new EnumMap<>(ValidationReport.Issue.class);
+
+    /**
+     * the match result of each product that can be matched
+     */
+    private final HashMap<String, MatchResult> matchedResults = new HashMap<>();
+
+    /**
+     * true once the object relation maps have been built or read
+     */
+    private boolean indexBuilt = false;
+
+    /**
+     * the version of the index written by writeIndex
+     */
+    public static final int INDEX_FORMAT_VERSION = 3;
+
     /**
      * the member variable pointer to our main code challenge core
      */
     private final CodeChallenge myCodeChallenge;
 
+    /**
+     * the metrics of the code challenge and what is recorded for each listing
+     */
+    private final Metrics metrics;
+    private final Histogram matchLatency;
+    private final Histogram candidateModels;
+    private final LongAdder listingsMatched;
+    private final LongAdder regexProbes;
+
     /**
      * Constructor for the Super Slacker matching method
      *
@@ -129,6 +252,13 @@ public class SlackerTestMethod extends AbstractSearchEngine
     {
         super(c);
         myCodeChallenge = c;
+        resultSink = new ResultSink(c.getProductKeys().keySet());
+
+        metrics = c.getMetrics();
+        matchLatency = metrics.histogram(Metrics.HISTOGRAM_MATCH_LATENCY);
+        candidateModels = metrics.histogram(Metrics.HISTOGRAM_CANDIDATES);
+        listingsMatched = metrics.counter(Metrics.COUNTER_LISTINGS_MATCHED);
+        regexProbes = metrics.counter(Metrics.COUNTER_REGEX_PROBES);
 
         //assemble the know list of manufacturer aliases to aid in the search
         //Hewlett packard is sometimes used instead of HP
@@ -144,23 +274,34 @@ public class SlackerTestMethod extends AbstractSearchEngine
     public void process()
     {
         //build the object relational structure
-        //and the regex search strings for models
-        buildObjectRelationMaps();
+        //and the regex search strings for models, unless they were read in
+        buildIndex();
         //do the big match
         match();
         
         //match up duplicate listings
+        long start = metrics.start();
         matchDuplicateListings();
+        metrics.stop(Metrics.PHASE_MATCH_DUPLICATES, start);
         
         
  
     }
 
+    @Override
+    public void buildIndex()
+    {
+        if (!indexBuilt)
+        {
+            buildObjectRelationMaps();
+        }
+    }
+
     @Override
     public int getNumberOfMatches()
     {
         //provide accounting for direct matches and duplicate matches
-        return numMatched + numDuplicateMatches;
+        return (int) resultSink.getMatched();
 
     }
 
@@ -168,7 +309,7 @@ public class SlackerTestMethod extends AbstractSearchEngine
     public int getNumberOfMisses()
     {
         //the number of misses will also include the balance total duplicated listing matches
-        return numUnmatched + myCodeChallenge.getNumberOfDuplicateListings() - numDuplicateMatches;
+        return (int) resultSink.getMissed() + myCodeChallenge.getNumberOfDuplicateListings() - numDuplicateMatches;
     }
 
     /**
@@ -193,15 +334,17 @@ public class SlackerTestMethod extends AbstractSearchEngine
      * Challenge object
      *
      */
-    private void buildObjectRelationMaps()
+    void buildObjectRelationMaps()
     {
+        long buildStart = metrics.start();
         myCodeChallenge.getProductKeys().keySet().stream().forEach((key) ->
         {
-            JsonObject j = myCodeChallenge.getProductKeys().get(key);
-            //the first conditioning is to convert to uppser case
-            String conditionedMfg = conditionMfgString(j.getString(CodeChallenge.PRODUCT_MANUFACTURER_KEY));
-            String conditionedModel = conditionModelString(j.getString(CodeChallenge.PRODUCT_MODEL_KEY));
-            String family = conditionFamilyString(j.getString(CodeChallenge.PRODUCT_FAMILY_KEY, null));
+            Product j = myCodeChallenge.getProductKeys().get(key);
+            //the first conditioning is to convert to uppser case, the product
+            //has done this once when it was loaded
+            String conditionedMfg = j.getConditionedManufacturer();
+            String conditionedModel = j.getConditionedModel();
+            String family = j.getConditionedFamily();
             //build the model regex map
             String regexfam="";
             if(family!=null)
@@ -210,17 +353,16 @@ public class SlackerTestMethod extends AbstractSearchEngine
             String regexKey=conditionedMfg+"@"+regexfam+"@"+conditionedModel;
             if (modelSearchRegex.containsKey(regexKey))
             {
-                Logger.getLogger(SlackerTestMethod.class.getName()).log(Level.WARNING, "Duplicate Model key found inregex map:");
+                reportModelIssue(ValidationReport.Issue.MODEL_DUPLICATE_IN_FAMILY, key);
             }
             else
             {
 
                 //every model include a basic match case as given in the table
-                String basicSearch = "(?s).*\\b"+j.getString(CodeChallenge.PRODUCT_MODEL_KEY).toUpperCase()+"\\b.*";
-                HashSet<String> al = new HashSet<>();
-                al.add(basicSearch);
+                HashMap<String,Pattern> al = new HashMap<>();
+                addModelRegex(al, j.getUpperModel());
                 //add a search based on our conditioned model string
-                al.add("(?s).*\\b"+conditionedModel +"\\b.*");
+                addModelRegex(al, conditionedModel);
                 modelSearchRegex.put(regexKey, al);
             }
             if (modelByMfgMap.containsKey(conditionedMfg))
@@ -231,10 +373,7 @@ public class SlackerTestMethod extends AbstractSearchEngine
                     //this can either be a problem in input data 
                     //or we have a model number that is in a different family of products
                     //
-                    Logger.getLogger(SlackerTestMethod.class.getName()).log(Level.WARNING, "Duplicate Model key found in MFG map:"
-                            + key + " " + conditionedModel + " This may indicate an error in the product data used to search the listings");
-                    //retrieve the duplicate model entry
-                    JsonObject dup = myCodeChallenge.getProductKeys().get(models.get(conditionedModel));
+                    reportModelIssue(ValidationReport.Issue.MODEL_DUPLICATE_IN_MANUFACTURER, key);
                     duplicateModelList.put(conditionedModel, key);
                 } else
                 {
@@ -269,18 +408,16 @@ public class SlackerTestMethod extends AbstractSearchEngine
         //the same value in 2 families, if not we log the error
         duplicateModelList.keySet().stream().forEach((dup) ->
         {
-            JsonObject j = myCodeChallenge.getProductKeys().get(duplicateModelList.get(dup));
-            String fam = conditionFamilyString(j.getString(CodeChallenge.PRODUCT_FAMILY_KEY, null));
-            String Mfg = conditionMfgString(j.getString(CodeChallenge.PRODUCT_MANUFACTURER_KEY));
-            String pkey = j.getString(CodeChallenge.PRODUCT_NAME_KEY);
+            Product j = myCodeChallenge.getProductKeys().get(duplicateModelList.get(dup));
+            String fam = j.getConditionedFamily();
+            String Mfg = j.getConditionedManufacturer();
+            String pkey = j.getName();
             //in this case we have an error becasue our duplicate Product code has no family
             //therefor it is most likeley a data error we put up an error 
             if (fam == null)
             {
-                Logger.getLogger(SlackerTestMethod.class.getName()).log(Level.SEVERE, "Duplicate model key unreconcilable, ignoring this record :" + j.toString());
-                //tell code challenge we found an error
-                myCodeChallenge.reportInvalidProductDefinition();
-                
+                reportModelIssue(ValidationReport.Issue.MODEL_UNRECONCILABLE, pkey);
+
             } else if (modelByProductFamily.containsKey(fam))
             {
                 modelByProductFamily.get(fam).put(dup, pkey);
@@ -293,8 +430,409 @@ public class SlackerTestMethod extends AbstractSearchEngine
             }
         });
         //set up the generic model search regexs
+        long start = metrics.start();
         buildGenericModelModifierMap();
+        metrics.stop(Metrics.PHASE_BUILD_MODEL_REGEX, start);
+
+        //one pass search for manufacturers, aliases and families
+        start = metrics.start();
+        buildVocabularyAutomaton();
+        metrics.stop(Metrics.PHASE_BUILD_VOCABULARY, start);
+
+        //index the model tokens of each manufacturer and family, the scopes
+        //keep the result of each product
+        buildMatchResults();
+        start = metrics.start();
+        buildTokenIndex();
+        metrics.stop(Metrics.PHASE_BUILD_TOKEN_INDEX, start);
+
+        indexBuilt = true;
+        metrics.stop(Metrics.PHASE_BUILD_INDEX, buildStart);
+    }
+
+    /**
+     * Reports a product found wrong while the maps are built and keeps it for
+     * the index, an unreconcilable product is also counted as invalid by the
+     * code challenge
+     *
+     * @param issue - the issue
+     * @param productName - the product
+     */
+    private void reportModelIssue(ValidationReport.Issue issue, String productName)
+    {
+        modelIssues.computeIfAbsent(issue, (i) -> new ArrayList<>()).add(productName);
+        myCodeChallenge.getValidationReport().report(issue, productName);
+        if (issue == ValidationReport.Issue.MODEL_UNRECONCILABLE)
+        {
+            //tell code challenge we found an error
+            myCodeChallenge.reportInvalidProductDefinition();
+        }
+    }
+
+    /**
+     * Writes the object relation maps, the alias table and the model search
+     * expressions so that a later run can read them instead of building them.
+     * Every distinct string is written once in a string table and referred to
+     * by its position, the maps are written in iteration order. The products
+     * reported while the maps were built are written by issue name
+     *
+     * @param out - receives the index
+     * @throws IOException - if the index cannot be written
+     * @throws IllegalStateException - if the index has not been built
+     */
+    public void writeIndex(DataOutput out) throws IOException, IllegalStateException
+    {
+        if (!indexBuilt)
+        {
+            throw (new IllegalStateException("the object relation maps have not been built"));
+        }
+
+        //the body is written first so the string table is complete
+        HashMap<String, Integer> strings = new HashMap<>();
+        ArrayList<String> table = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bytes);
+
+        body.writeInt(modelIssues.size());
+        for (ValidationReport.Issue issue : modelIssues.keySet())
+        {
+            ArrayList<String> productNames = modelIssues.get(issue);
+            body.writeInt(stringId(strings, table, issue.name()));
+            body.writeInt(productNames.size());
+            for (String productName : productNames)
+            {
+                body.writeInt(stringId(strings, table, productName));
+            }
+        }
+        writeMap(body, strings, table, aliasMfgMap);
+        writeNestedMap(body, strings, table, modelByMfgMap);
+        writeNestedMap(body, strings, table, modelByProductFamily);
+        writeMap(body, strings, table, mfgByProductFamily);
+        body.writeInt(modelSearchRegex.size());
+        for (String regexPointer : modelSearchRegex.keySet())
+        {
+            HashMap<String, Pattern> regexes = modelSearchRegex.get(regexPointer);
+            body.writeInt(stringId(strings, table, regexPointer));
+            body.writeInt(regexes.size());
+            for (String source : regexes.keySet())
+            {
+                body.writeInt(stringId(strings, table, source));
+            }
+        }
+        body.flush();
 
+        out.writeInt(INDEX_FORMAT_VERSION);
+        out.writeInt(table.size());
+        for (String string : table)
+        {
+            out.writeUTF(string);
+        }
+        out.write(bytes.toByteArray());
+    }
+
+    /**
+     * Reads the object relation maps written by writeIndex in place of building
+     * them, the search structures derived from them are rebuilt. The maps are
+     * filled in the order they were written so they iterate, and match, as
+     * the maps that were written did
+     *
+     * @param in - the index
+     * @throws IOException - if the index cannot be read or is of another
+     * version
+     * @throws IllegalStateException - if the index has already been built
+     */
+    public void readIndex(DataInput in) throws IOException, IllegalStateException
+    {
+        if (indexBuilt)
+        {
+            throw (new IllegalStateException("the object relation maps have already been built"));
+        }
+
+        int version = in.readInt();
+        if (version != INDEX_FORMAT_VERSION)
+        {
+            throw (new IOException("unsupported index version " + version));
+        }
+        String[] table = new String[in.readInt()];
+        for (int i = 0; i < table.length; i++)
+        {
+            table[i] = in.readUTF();
+        }
+
+        //the products the build reported are reported again in the same order
+        int issues = in.readInt();
+        for (int i = 0; i < issues; i++)
+        {
+            ValidationReport.Issue issue;
+            try
+            {
+                issue = ValidationReport.Issue.valueOf(table[in.readInt()]);
+            } catch (IllegalArgumentException ex)
+            {
+                throw (new IOException("unknown validation issue in the index", ex));
+            }
+            int m = in.readInt();
+            for (int j = 0; j < m; j++)
+            {
+                reportModelIssue(issue, table[in.readInt()]);
+            }
+        }
+        aliasMfgMap.clear();
+        readMap(in, table, aliasMfgMap);
+        readNestedMap(in, table, modelByMfgMap);
+        readNestedMap(in, table, modelByProductFamily);
+        readMap(in, table, mfgByProductFamily);
+        int n = in.readInt();
+        for (int i = 0; i < n; i++)
+        {
+            String regexPointer = table[in.readInt()];
+            HashMap<String, Pattern> regexes = new HashMap<>();
+            int m = in.readInt();
+            for (int j = 0; j < m; j++)
+            {
+                String source = table[in.readInt()];
+                regexes.put(source, Pattern.compile(source, Pattern.DOTALL));
+            }
+            modelSearchRegex.put(regexPointer, regexes);
+        }
+
+        buildVocabularyAutomaton();
+        buildMatchResults();
+        buildTokenIndex();
+
+        indexBuilt = true;
+    }
+
+    private static int stringId(HashMap<String, Integer> strings, ArrayList<String> table, String string)
+    {
+        Integer id = strings.get(string);
+        if (id == null)
+        {
+            id = table.size();
+            strings.put(string, id);
+            table.add(string);
+        }
+        return id;
+    }
+
+    private static void writeMap(DataOutput out, HashMap<String, Integer> strings, ArrayList<String> table,
+            HashMap<String, String> map) throws IOException
+    {
+        out.writeInt(map.size());
+        for (String key : map.keySet())
+        {
+            out.writeInt(stringId(strings, table, key));
+            out.writeInt(stringId(strings, table, map.get(key)));
+        }
+    }
+
+    private static void readMap(DataInput in, String[] table, HashMap<String, String> map) throws IOException
+    {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++)
+        {
+            String key = table[in.readInt()];
+            map.put(key, table[in.readInt()]);
+        }
+    }
+
+    private static void writeNestedMap(DataOutput out, HashMap<String, Integer> strings, ArrayList<String> table,
+            HashMap<String, HashMap<String, String>> map) throws IOException
+    {
+        out.writeInt(map.size());
+        for (String key : map.keySet())
+        {
+            out.writeInt(stringId(strings, table, key));
+            writeMap(out, strings, table, map.get(key));
+        }
+    }
+
+    private static void readNestedMap(DataInput in, String[] table, HashMap<String, HashMap<String, String>> map) throws IOException
+    {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++)
+        {
+            String key = table[in.readInt()];
+            HashMap<String, String> inner = new HashMap<>();
+            readMap(in, table, inner);
+            map.put(key, inner);
+        }
+    }
+
+    /**
+     * Builds the model scope of every manufacturer and every family and indexes
+     * the tokens of their model search expressions, this must run after the
+     * generic model modifiers have added their variants, the vocabulary has
+     * ranked the keys and the match results are made.
+     *
+     * The manufacturers, aliases and families are known by their rank in the
+     * vocabulary from here on, the scopes and the links between them are
+     * arrays by rank so the match looks nothing up by name
+     */
+    private void buildTokenIndex()
+    {
+        HashMap<String, Integer> mfgIds = new HashMap<>();
+        mfgScopes = new ModelScope[mfgKeys.length];
+        for (int id = 0; id < mfgKeys.length; id++)
+        {
+            mfgIds.put(mfgKeys[id], id);
+            mfgScopes[id] = buildModelScope(mfgKeys[id], "", modelByMfgMap.get(mfgKeys[id]));
+        }
+
+        familyScopes = new ModelScope[familyKeys.length];
+        familyMfg = new int[familyKeys.length];
+        for (int id = 0; id < familyKeys.length; id++)
+        {
+            //a family match always searches with the family's manufacturer
+            String mfgKey = mfgByProductFamily.get(familyKeys[id]);
+            familyMfg[id] = mfgIds.getOrDefault(mfgKey, -1);
+            familyScopes[id] = buildModelScope(mfgKey, familyKeys[id], modelByProductFamily.get(familyKeys[id]));
+        }
+
+        aliasMfg = new int[aliasKeys.length];
+        for (int id = 0; id < aliasKeys.length; id++)
+        {
+            aliasMfg[id] = mfgIds.getOrDefault(aliasKeys[id], -1);
+        }
+        tokenIndex.finish();
+    }
+
+    /**
+     * Builds the scope for one manufacturer or family and adds the anchor token
+     * of each model search expression to the token index. Models are ranked in
+     * the iteration order of the model map
+     *
+     * @param mfgC - the conditioned manufacturer
+     * @param familyC - the conditioned family or "" for none
+     * @param models - the map of conditioned model to product name
+     * @return the model scope
+     */
+    private ModelScope buildModelScope(String mfgC, String familyC, HashMap<String, String> models)
+    {
+        String[] ranked = models.keySet().toArray(new String[models.size()]);
+        ModelScope scope = new ModelScope(ranked);
+        for (int rank = 0; rank < ranked.length; rank++)
+        {
+            HashMap<String, Pattern> regexes = modelSearchRegex.get(mfgC + "@" + familyC + "@" + ranked[rank]);
+            if (regexes == null)
+            {
+                //nothing to verify against so the model can never match
+                scope.setModel(rank, null, matchedResult(models.get(ranked[rank])));
+                continue;
+            }
+            //the expressions are tried in the order the map gives them
+            scope.setModel(rank, regexes.values().toArray(new Pattern[regexes.size()]), matchedResult(models.get(ranked[rank])));
+            for (String source : regexes.keySet())
+            {
+                String token = TokenIndex.anchorToken(source);
+                if (token == null)
+                {
+                    scope.addAlwaysCandidate(rank);
+                } else
+                {
+                    tokenIndex.add(token, scope, rank);
+                }
+            }
+        }
+        return scope;
+    }
+
+    /**
+     * Builds the keyword automaton used by match() to find manufacturers,
+     * aliases and families in a listing. The keys are ranked in the same order
+     * the maps are iterated so that KEY_ORDER selection gives the same first hit
+     * as looping over the maps with contains
+     */
+    private void buildVocabularyAutomaton()
+    {
+        mfgKeys = modelByMfgMap.keySet().toArray(new String[modelByMfgMap.size()]);
+        aliasKeys = aliasMfgMap.keySet().toArray(new String[aliasMfgMap.size()]);
+        familyKeys = modelByProductFamily.keySet().toArray(new String[modelByProductFamily.size()]);
+
+        KeywordAutomaton automaton = new KeywordAutomaton();
+        int id = 0;
+        for (String key : mfgKeys)
+        {
+            automaton.addKeyword(key, id++);
+        }
+        for (String key : aliasKeys)
+        {
+            automaton.addKeyword(key, id++);
+        }
+        for (String key : familyKeys)
+        {
+            automaton.addKeyword(key, id++);
+        }
+        automaton.build();
+        vocabulary = automaton;
+    }
+
+    /**
+     * Sets the rule used to choose between several manufacturer, alias or
+     * family hits in one listing
+     *
+     * @param selection - the hit selection rule, KEY_ORDER by default
+     */
+    public void setHitSelection(HitSelection selection)
+    {
+        hitSelection = selection;
+    }
+
+    /**
+     * Collects the best manufacturer, alias and family hit while the
+     * vocabulary automaton scans the manufacturer field and the title
+     */
+    private final class VocabularyHits implements KeywordAutomaton.HitListener
+    {
+
+        static final int MFG = 0;
+        static final int ALIAS = 1;
+        static final int FAMILY = 2;
+
+        /** the winning rank in each category or -1 */
+        final int[] rank = {-1, -1, -1};
+        /** the ordering score of the winning hit in each category */
+        final long[] score = new long[3];
+        /** true while the title is scanned, false for the manufacturer field */
+        boolean inTitle;
+
+        @Override
+        public void hit(int keywordId, int start, int length)
+        {
+            int category;
+            int r = keywordId;
+            if (r < mfgKeys.length)
+            {
+                category = MFG;
+            } else if ((r -= mfgKeys.length) < aliasKeys.length)
+            {
+                category = ALIAS;
+            } else
+            {
+                r -= aliasKeys.length;
+                category = FAMILY;
+                //families are only searched for in the title
+                if (!inTitle)
+                {
+                    return;
+                }
+            }
+
+            long s;
+            if (hitSelection == HitSelection.KEY_ORDER)
+            {
+                s = r;
+            } else
+            {
+                s = ((inTitle ? 1L : 0L) << 62) | ((long) start << 31) | (Integer.MAX_VALUE - length);
+            }
+
+            if (rank[category] < 0 || s < score[category] || (s == score[category] && r < rank[category]))
+            {
+                rank[category] = r;
+                score[category] = s;
+            }
+        }
     }
 
     
@@ -329,9 +867,9 @@ public class SlackerTestMethod extends AbstractSearchEngine
             modelMap.keySet().stream().forEach((modelKey) ->
             {
                 //let's first detect any prefix separatos (space and - )'
-                JsonObject prod = myCodeChallenge.getProductKeys().get(modelMap.get(modelKey));
-                String rawProduct = prod.getString(CodeChallenge.PRODUCT_MODEL_KEY);
-                String family = conditionFamilyString(prod.getString(CodeChallenge.PRODUCT_FAMILY_KEY,""));
+                Product prod = myCodeChallenge.getProductKeys().get(modelMap.get(modelKey));
+                String rawProduct = prod.getModel();
+                String family = prod.getConditionedFamily() == null ? "" : prod.getConditionedFamily();
                 String regexPointer = mfgKey+"@"+family+"@"+modelKey;
                 //we only care about spaces and dashes as separators
                 String[] split = rawProduct.split("[-_ ]");
@@ -426,8 +964,9 @@ public class SlackerTestMethod extends AbstractSearchEngine
                 //remove all alpha
                 String number = test2.replaceAll("[^0-9]","");
                 String regexPointer = list0.get(test2);
-                boolean beginsAlpha = test2.matches("^" + alpha + ".*$");
-                boolean endsAlpha = test2.matches("^.*" + alpha + "$");
+                //alpha only holds letters so a plain prefix / suffix test is enough
+                boolean beginsAlpha = test2.startsWith(alpha);
+                boolean endsAlpha = test2.endsWith(alpha);
                 if (beginsAlpha && !endsAlpha)
                 {
                     if (beginningSet.containsKey(alpha))
@@ -459,44 +998,34 @@ public class SlackerTestMethod extends AbstractSearchEngine
                 }
             });
 
-            prefixModifiers.keySet().stream().filter((keys) -> (keys.matches("\\D.*$"))).forEach((keys) ->
+            prefixModifiers.keySet().stream().filter((keys) -> (NON_DIGIT_PREFIX.matcher(keys).matches())).forEach((keys) ->
             {
                 HashSet<String> RegexPointers = prefixModifiers.get(keys);
                 //add new search regexs for each prefix
                 RegexPointers.stream().forEach((regexPointer) ->
                 {
-                    HashSet<String> regexes = modelSearchRegex.get(regexPointer);
+                    HashMap<String,Pattern> regexes = modelSearchRegex.get(regexPointer);
                     
                     String model =  getModelFromRegexPointer( regexPointer);
                     String post = model.replaceAll("^" + keys, "");
                     
-                    String basicHyphenSearch = "(?s).*\\b"+keys+"-"+post+"\\b.*";
-                    String basicWhiteSpaceSearch = "(?s).*\\b"+keys+"\\s+"+post+"\\b.*";
-                    
-                    regexes.add(basicHyphenSearch);
-                    regexes.add(basicWhiteSpaceSearch);
-                    
-                    modelSearchRegex.put(regexPointer, regexes);
+                    addModelRegex(regexes, keys+"-"+post);
+                    addModelRegex(regexes, keys+"\\s+"+post);
                 });
             }); //only alpha
-            suffixModifiers.keySet().stream().filter((keys) -> (keys.matches("\\D.*$"))).forEach((keys) ->
+            suffixModifiers.keySet().stream().filter((keys) -> (NON_DIGIT_PREFIX.matcher(keys).matches())).forEach((keys) ->
             {
                 HashSet<String> RegexPointers = suffixModifiers.get(keys);
                 //add new search reges for each suffix discovered
                 RegexPointers.stream().forEach((regexPointer) ->
                 {
-                    HashSet<String> regexes = modelSearchRegex.get(regexPointer);
+                    HashMap<String,Pattern> regexes = modelSearchRegex.get(regexPointer);
                     
                     String model =  getModelFromRegexPointer( regexPointer);
                     String pre = model.replaceAll(keys+"$","");
                     
-                    String basicHyphenSearch = "(?s).*\\b"+pre+"-"+keys+"\\b.*";
-                    String basicWhiteSpaceSearch = "(?s).*\\b"+pre+"\\s+"+keys+"\\b.*";
-                    
-                    regexes.add(basicHyphenSearch);
-                    regexes.add(basicWhiteSpaceSearch);
-                    
-                    modelSearchRegex.put(regexPointer, regexes);
+                    addModelRegex(regexes, pre+"-"+keys);
+                    addModelRegex(regexes, pre+"\\s+"+keys);
                 });
             }); //only alpha prefixes allowed
         });
@@ -505,6 +1034,24 @@ public class SlackerTestMethod extends AbstractSearchEngine
 
     }
     
+    /**
+     * Compiles a whole word search expression for a model variant and adds it to
+     * the given set of model regexs. The expression is compiled once here (DOTALL
+     * as the original "(?s)" wrapped form) and
+     * searched with find() at match time so a probe is a scan rather than a compile
+     *
+     * @param regexes - the compiled expressions for a model keyed by source
+     * @param modelExpression - the model variant expression to bound by word breaks
+     */
+    private void addModelRegex(HashMap<String,Pattern> regexes, String modelExpression)
+    {
+        String source = "\\b" + modelExpression + "\\b";
+        if (!regexes.containsKey(source))
+        {
+            regexes.put(source, Pattern.compile(source, Pattern.DOTALL));
+        }
+    }
+    
     String getModelFromRegexPointer(String regexPointer)
     {
         return(regexPointer.split("@")[2]);
@@ -522,92 +1069,304 @@ public class SlackerTestMethod extends AbstractSearchEngine
      * 
      * Once these are satisfied we then will do a deep search for specific model numbers
      *
-     * this builds the output arrays as well as a no match array
+     * each match is added to the result sink with the place of the listing as
+     * its ordinal. When the parallelism is more than one the listings are
+     * matched on a fork join pool, the sink puts the matches back in listing
+     * order
      */
-    private void match()
+    void match()
     {
+        long start = metrics.start();
+
+        //take a snapshot of the listings in iteration order, the place of a
+        //listing in it is its ordinal in the sink
+        Listing[] listingObjects = myCodeChallenge.getListingKeys().values().toArray(new Listing[0]);
+        int n = listingObjects.length;
+        matchedList = null;
 
-        for (String listing : myCodeChallenge.getListingKeys().keySet())
+        if (parallelism > 1 && n > batchSize)
+        {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try
+            {
+                pool.invoke(new MatchTask(listingObjects, 0, n));
+            } finally
+            {
+                pool.shutdown();
+            }
+        } else
         {
-            JsonObject myobj = myCodeChallenge.getListingKeys().get(listing);
-            String mfg = conditionMfgString(myobj.getString(CodeChallenge.PRODUCT_MANUFACTURER_KEY));
-            String title = conditionListingString(myobj.getString(CodeChallenge.PRODUCT_LISTING_TITLE_KEY));
-            String utitle = myobj.getString(CodeChallenge.PRODUCT_LISTING_TITLE_KEY);
-            String productName = null;
-            boolean matched = false;
-            boolean mfgMatched = false;
-            boolean familyMatched = false;
+            for (int i = 0; i < n; i++)
+            {
+                matchListing(i, listingObjects[i]);
+            }
+        }
 
-            String manufacturer = null;
+        metrics.stop(Metrics.PHASE_MATCH, start);
+    }
 
-            for (String mfgneedle : modelByMfgMap.keySet())
-            {
-                //we look for a mfg match in either manufacturer or the title
-                if (mfg.contains(mfgneedle) || title.contains(mfgneedle))
-                {
-                    mfgMatched = true;
-                    manufacturer = mfgneedle;
-                    break;
-                }
+    /**
+     * Matches a range of listings, the range is split in half until it is no
+     * bigger than the batch size and then matched on one thread
+     */
+    private final class MatchTask extends RecursiveAction
+    {
 
-            }
+        private static final long serialVersionUID = 1L;
 
-            //check the alias map if we don't have a match yet
-            if (!mfgMatched)
+        private final Listing[] listingObjects;
+        private final int from;
+        private final int to;
+
+        MatchTask(Listing[] listingObjects, int from, int to)
+        {
+            this.listingObjects = listingObjects;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= batchSize)
             {
-                //first check the list of known aliases for a manufacturer match
-                for (String aliasMfgNeedle : aliasMfgMap.keySet())
+                for (int i = from; i < to; i++)
                 {
-                    if (mfg.contains(aliasMfgNeedle) || title.contains(aliasMfgNeedle))
-                    {
-                        mfgMatched = true;
-                        manufacturer = aliasMfgNeedle;
-                        break;
-                    }
+                    matchListing(i, listingObjects[i]);
                 }
+            } else
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MatchTask(listingObjects, from, mid),
+                        new MatchTask(listingObjects, mid, to));
             }
+        }
+    }
+
+    /**
+     * Finds the product for one listing in the batch and adds it to the sink
+     *
+     * @param ordinal - the place of the listing
+     * @param myobj - the listing
+     */
+    private void matchListing(int ordinal, Listing myobj)
+    {
+        MatchResult result = match(myobj);
+        if (result.getProductId() >= 0)
+        {
+            //the id was given by the sink when the index was built
+            resultSink.add(result.getProductId(), ordinal, myobj);
+        } else if (result.isMatched())
+        {
+            resultSink.add(result.getProductName().get(), ordinal, myobj);
+        } else
+        {
+            resultSink.miss();
+        }
+    }
+
+    /**
+     * Finds the product for one listing. This only reads the object relation
+     * maps so it can be called from many threads once they are built. The
+     * result of a match is the one kept for its product so only the search
+     * itself allocates
+     *
+     * @param myobj - the listing
+     * @return the product matched and the reason
+     * @throws IllegalStateException - if the object relation maps have not
+     * been built or read
+     */
+    @Override
+    public MatchResult match(Listing myobj) throws IllegalStateException
+    {
+        if (!indexBuilt)
+        {
+            throw (new IllegalStateException("the object relation maps have not been built"));
+        }
+
+        //a trace is only made for the listings the tracer samples
+        MatchTracer t = tracer;
+        MatchTrace trace = t != null && t.sample() ? new MatchTrace(myobj) : null;
+
+        long start = System.nanoTime();
+        MatchResult result = search(myobj, trace);
+        long nanos = System.nanoTime() - start;
+        matchLatency.record(nanos);
+        listingsMatched.increment();
+
+        if (trace != null)
+        {
+            trace.finish(result, nanos);
+            t.record(trace);
+        }
+        return result;
+    }
+
+    /**
+     * Traces a sample of the listings matched from now on
+     *
+     * @param matchTracer - receives the traces, null to stop tracing
+     */
+    public void setTracer(MatchTracer matchTracer)
+    {
+        tracer = matchTracer;
+    }
+
+    /**
+     * @return the tracer or null when tracing is off
+     */
+    public MatchTracer getTracer()
+    {
+        return tracer;
+    }
 
-            String family = null;
-            //attempt to find a family 
-            for (String familyMfgNeedle : modelByProductFamily.keySet())
+    /**
+     * Finds the product for one listing once the maps are built
+     *
+     * @param myobj - the listing
+     * @param trace - records the search or null when it is not traced
+     * @return the product matched and the reason
+     */
+    private MatchResult search(Listing myobj, MatchTrace trace)
+    {
+        String mfg = myobj.getConditionedManufacturer();
+        String title = myobj.getUpperTitle();
+        boolean mfgMatched = false;
+
+        String manufacturer = null;
+
+        //we look for a mfg, alias or family in the manufacturer field and
+        //the title with one pass of the automaton over each
+        VocabularyHits hits = new VocabularyHits();
+        hits.inTitle = false;
+        vocabulary.search(mfg, hits);
+        hits.inTitle = true;
+        vocabulary.search(title, hits);
+
+        //the scope searched is found by id, the names are kept for the trace
+        //and the title cache
+        int mfgId = -1;
+        if (hits.rank[VocabularyHits.MFG] >= 0)
+        {
+            mfgMatched = true;
+            mfgId = hits.rank[VocabularyHits.MFG];
+            manufacturer = mfgKeys[mfgId];
+            if (trace != null)
             {
-                if (title.contains(familyMfgNeedle))
-                {
-                    familyMatched = true;
-                    mfgMatched = true;   // by virtue of the family we know the MFG as well
-                    family = familyMfgNeedle;
-                    manufacturer = mfgByProductFamily.get(family);
-                    break;
-                }
+                trace.manufacturer(manufacturer, "manufacturer");
             }
-
-            //we do not bother to go further if we don't have a MFG match
-            if (mfgMatched)
+        } else if (hits.rank[VocabularyHits.ALIAS] >= 0)
+        {
+            //check the alias map if we don't have a match yet
+            mfgMatched = true;
+            mfgId = aliasMfg[hits.rank[VocabularyHits.ALIAS]];
+            manufacturer = aliasKeys[hits.rank[VocabularyHits.ALIAS]];
+            if (trace != null)
             {
-                productName = matchModel(manufacturer, family, title);
+                trace.manufacturer(manufacturer, "alias");
             }
+        }
 
-            if (productName != null)
-            {
-                if (matchedList.containsKey(productName))
-                {
-                    matchedList.get(productName).add(myobj);
-                    numMatched++;
-                } else
-                {
-                    ArrayList<JsonObject> no = new ArrayList<>();
-                    no.add(myobj);
-                    matchedList.put(productName, no);
-                    numMatched++;
-                }
-            } else
+        String family = null;
+        int familyId = -1;
+        //attempt to find a family 
+        if (hits.rank[VocabularyHits.FAMILY] >= 0)
+        {
+            mfgMatched = true;   // by virtue of the family we know the MFG as well
+            familyId = hits.rank[VocabularyHits.FAMILY];
+            family = familyKeys[familyId];
+            mfgId = familyMfg[familyId];
+            //every family's manufacturer has models of its own so it has an id
+            manufacturer = mfgId >= 0 ? mfgKeys[mfgId] : null;
+            if (trace != null)
             {
-                unMatched.put(listing, myobj);
-                numUnmatched++;
+                trace.manufacturer(manufacturer, "family");
+                trace.family(family);
             }
+        }
+
+        //we do not bother to go further if we don't have a MFG match
+        if (!mfgMatched)
+        {
+            return MatchResult.NO_MANUFACTURER;
+        }
+
+        //we know the family we use that to guide our model search, otherwise
+        //the models of the MFG
+        ModelScope scope = familyId >= 0 ? familyScopes[familyId] : (mfgId >= 0 ? mfgScopes[mfgId] : null);
+
+        TitleMatchCache cache = titleCache;
+        if (cache == null || trace != null)
+        {
+            return matchModel(scope, title, trace);
+        }
 
+        String fingerprint = TitleMatchCache.fingerprint(manufacturer, family, title);
+        //the cache counts its own hits and misses
+        MatchResult result = cache.get(fingerprint);
+        if (result != null)
+        {
+            return result;
         }
+        result = matchModel(scope, title, null);
+        cache.put(fingerprint, result);
+        return result;
+    }
+
+    /**
+     * Puts a title cache in front of the model search, traced listings are
+     * always searched
+     *
+     * @param cache - the cache, it may be shared with other engines over the
+     * same product data, null to search every listing
+     */
+    public void setTitleCache(TitleMatchCache cache)
+    {
+        titleCache = cache;
+    }
+
+    /**
+     * @return the title cache or null when there is none
+     */
+    public TitleMatchCache getTitleCache()
+    {
+        return titleCache;
+    }
+
+    /**
+     * @param productName - a product name
+     * @return the result kept for the product or null if the index does not
+     * hold it
+     */
+    MatchResult resultForProduct(String productName)
+    {
+        return matchedResults.get(productName);
+    }
+
+    /**
+     * @param productName - a product name of the index
+     * @return the result kept for the product
+     */
+    private MatchResult matchedResult(String productName)
+    {
+        MatchResult result = matchedResults.get(productName);
+        return result != null ? result : MatchResult.matched(productName);
+    }
 
+    /**
+     * Makes the result kept for every product that can be matched, this runs
+     * once the maps are built or read and the map is only read after that
+     */
+    private void buildMatchResults()
+    {
+        modelByMfgMap.values().stream().forEach((models) ->
+        {
+            models.values().stream().forEach((productName) -> matchedResults.put(productName, MatchResult.matched(productName, resultSink.getProductId(productName))));
+        });
+        modelByProductFamily.values().stream().forEach((models) ->
+        {
+            models.values().stream().forEach((productName) -> matchedResults.putIfAbsent(productName, MatchResult.matched(productName, resultSink.getProductId(productName))));
+        });
     }
 
     /**
@@ -659,163 +1418,164 @@ public class SlackerTestMethod extends AbstractSearchEngine
 
     
     /**
-     * This function searches all regexes that are in the modelSearchRegex private HashMap
-     * TODO: precompile the regexes and use Pattern and Matcher for speed
+     * This function searches the precompiled regexes of one model of a scope,
+     * they are the ones in the modelSearchRegex private HashMap for the model
      * 
-     * @param mfgC - String the conditioned manufacturing code
-     * @param familyC - String the conditioned family code (or "" for blank this is options
-     * @param modelC - String - the conditioned model code to be searched
+     * @param scope - the models of the conditioned manufacturer or family
+     * @param rank - the rank of the model in the scope
      * @param titleC - the conditioned listing string to search
+     * @param trace - records the patterns tried or null
      * @return boolean ture if a match is found 
      */
-    private boolean regexMatchModel(String mfgC, String familyC, String modelC,String titleC)
+    private boolean regexMatchModel(ModelScope scope, int rank, String titleC, MatchTrace trace)
     {
-        String searchKey = mfgC +"@" + familyC + "@" + modelC;
-        HashSet<String> modelRegex = modelSearchRegex.get(searchKey);
+        Pattern[] modelRegex = scope.patterns(rank);
         if(modelRegex == null)
+        {
+            if (trace != null)
+            {
+                trace.probe(scope.model(rank), 0, false);
+            }
             return false;
+        }
         
-        if (modelRegex.stream().anyMatch((reg) -> (titleC.matches(reg))))
+        int tried = 0;
+        for (Pattern reg : modelRegex)
         {
-            return true;
+            regexProbes.increment();
+            tried++;
+            if (reg.matcher(titleC).find())
+            {
+                if (trace != null)
+                {
+                    trace.probe(scope.model(rank), tried, true);
+                }
+                return true;
+            }
         }
         
+        if (trace != null)
+        {
+            trace.probe(scope.model(rank), tried, false);
+        }
         return false;
     }
     
-    /** This is a debugging set to look at what we didn't match when 
-     we were clearly given the manufacturer and the Family code */
-    HashSet<String> whyNoMatch = new HashSet<>();
+    /**
+     * receives the traces of a sample of the listings, null when tracing is off
+     */
+    private volatile MatchTracer tracer = null;
 
     /**
-     * This function matches all models for given manufacturer and or family type
-     * 
+     * the model search results of the titles seen before, null when not used
+     */
+    private volatile TitleMatchCache titleCache = null;
+
+    /**
+     * Finds the models searched for a conditioned manufacturer and family the
+     * way search() does once the vocabulary has found them
+     *
      * @param mfgC - String the conditioned MAnufacturing code
-     * @param familyC - String the conditioned Family code
+     * @param familyC - String the conditioned Family code or null
+     * @return the scope of the family if given, otherwise of the MFG, null if
+     * neither has models
+     */
+    ModelScope modelScope(String mfgC, String familyC)
+    {
+        if (familyC != null)
+        {
+            int familyId = Arrays.asList(familyKeys).indexOf(familyC);
+            return familyId >= 0 ? familyScopes[familyId] : null;
+        }
+        int mfgId = Arrays.asList(mfgKeys).indexOf(mfgC);
+        return mfgId >= 0 ? mfgScopes[mfgId] : null;
+    }
+
+    /**
+     * Matches the models of a scope found by modelScope against a title
+     *
+     * @param scope - the scope or null
      * @param titleC - String the conditioned title
-     * @return - String the conditioned model code if found or null if no code is found
+     * @return - the product matched, or NO_MODEL or AMBIGUOUS_MODEL
      */
-    String matchModel(String mfgC, String familyC, String titleC)
+    MatchResult matchModel(ModelScope scope, String titleC)
     {
-        String match = null;
-        String rval = null;
+        return matchModel(scope, titleC, null);
+    }
 
-        if (familyC != null)
+    /**
+     * This function matches all models for given manufacturer and or family type.
+     * The title tokens are looked up in the token index to find the candidate
+     * models and only those are verified with their regexs. The models are
+     * known by their rank in the scope and the scope keeps the result of each
+     * so nothing is looked up by name
+     * 
+     * @param scope - the models of the family, or of the MFG when no family is
+     * known, null when the MFG has no models
+     * @param titleC - String the conditioned title
+     * @param trace - records the search or null when it is not traced
+     * @return - the product matched, or NO_MODEL or AMBIGUOUS_MODEL
+     */
+    private MatchResult matchModel(ModelScope scope, String titleC, MatchTrace trace)
+    {
+        if (scope == null)
         {
+            return MatchResult.NO_MODEL;
+        }
 
-            //we know the family we use that to guide our model search
-            HashMap<String, String> modelsToSearch = modelByProductFamily.get(familyC);
-            for (String model : modelsToSearch.keySet())
+        String match = null;
+        int matchRank = -1;
+
+        //the title tokens give the models worth verifying
+        BitSet candidates = scope.newCandidates();
+        tokenIndex.lookup(TokenIndex.tokenize(titleC), scope, candidates);
+        candidateModels.record(candidates.cardinality());
+        if (trace != null)
+        {
+            trace.candidates(candidates.cardinality());
+        }
+        for (int rank = candidates.nextSetBit(0); rank >= 0; rank = candidates.nextSetBit(rank + 1))
+        {
+            if (regexMatchModel(scope, rank, titleC, trace))
             {
-                if (regexMatchModel(mfgC,familyC,model,titleC))
+                String model = scope.model(rank);
+                //we can't match multiple models
+                if (match != null)
                 {
-                    //we can't match multiple models
-                    if (match != null)
+                    String first = match;
+                    match = resolveDuplicateMatch(match, model);
+                    if (trace != null)
                     {
-                        match = resolveDuplicateMatch(match, model);
-                        if (match == null)
-                        {
-                            return null;
-                        }
-                    } else
+                        trace.decision(first, model, match);
+                    }
+                    if (match == null)
                     {
-
-                        match = model;
+                        return MatchResult.AMBIGUOUS_MODEL;
                     }
-                }
-            }
-            if (match != null)
-            {
-                rval = modelsToSearch.get(match);
-            }
-        } else
-        {
-            //we only know the MFG we use that to guid our model search
-            HashMap<String, String> modelsToSearch = modelByMfgMap.get(mfgC);
-            if (modelsToSearch != null)
-            {
-
-                for (String model : modelsToSearch.keySet())
-                {
-                    if (regexMatchModel(mfgC,"",model,titleC))
+                    if (match == model)
                     {
-                        //we can't match multiple models
-                        if (match != null)
-                        {
-                            match = resolveDuplicateMatch(match, model);
-                            if (match == null)
-                            {
-                                return null;
-                            }
-                        } else
-                        {
-                            match = model;
-                        }
+                        matchRank = rank;
                     }
-                }
-                if (match != null)
+                } else
                 {
-                    rval = modelsToSearch.get(match);
+                    match = model;
+                    matchRank = rank;
                 }
-
             }
         }
 
-        if (rval != null)
-        {
-            return rval;
-        }
-
- 
-        if (rval == null && familyC != null)
-        {
-            whyNoMatch.add(titleC);
-        }
-
-        return rval;
-
-    }
-
-    private String conditionListingString(String listingString)
-    {
-        if (listingString == null)
+        if (matchRank >= 0)
         {
-            return null;
+            return scope.result(matchRank);
         }
-        
-        String rval = listingString.toUpperCase();
 
-        return rval;
-    }
-
-    
-    private String conditionMfgString(String preMfg)
-    {
-        if (preMfg == null)
-        {
-            return null;
-        }
+        return MatchResult.NO_MODEL;
 
-        return preMfg.toUpperCase().replaceAll("[^A-Za-z0-9\\.]", "");
-    }
-    private String conditionFamilyString(String preFamily)
-    {
-        if (preFamily == null)
-        {
-            return null;
-        }
-        
-        return preFamily.toUpperCase().replaceAll("[^A-Za-z0-9\\.]", "");
     }
 
     private String conditionModelString(String preModel)
     {
-        if (preModel == null)
-        {
-            return null;
-        }
-
-        return preModel.toUpperCase().replaceAll("[^A-Za-z0-9\\.]", "");
+        return KeyNormalizer.condition(preModel);
     }
 
     /**
@@ -825,37 +1585,53 @@ public class SlackerTestMethod extends AbstractSearchEngine
     private void matchDuplicateListings()
     {
  
-        HashMap<String,ArrayList<JsonObject>> duplicates = myCodeChallenge.getDuplicateListings();
-        
-        matchedList.keySet().stream().map((matchKey) -> matchedList.get(matchKey)).map((matches) -> matches.listIterator()).forEach((iterator) ->
+        HashMap<String,ArrayList<Listing>> duplicates = myCodeChallenge.getDuplicateListings();
+
+        //a duplicate takes the ordinal of the listing it copies so it is
+        //written straight after it
+        resultSink.forEachMatch((productName, ordinal, listingMatch) ->
         {
-            while(iterator.hasNext())
+            ArrayList<Listing> othermatches = duplicates.get(listingMatch.getTitle());
+            if (othermatches != null)
             {
-                JsonObject listingMatch = iterator.next();
-                String searchKey = listingMatch.getString(CodeChallenge.PRODUCT_LISTING_TITLE_KEY);
-                if(duplicates.containsKey(searchKey))
+                for (Listing othermatch : othermatches)
                 {
-                    ArrayList<JsonObject> othermatches = duplicates.get(searchKey);
-                    othermatches.stream().map((othermatch) ->
-                    {
-                        iterator.add(othermatch);
-                        return othermatch;
-                    }).forEach((_item) ->
-                    {
-                        numDuplicateMatches++;
-                    });
+                    resultSink.add(productName, ordinal, othermatch);
+                    numDuplicateMatches++;
                 }
             }
         });
+        matchedList = null;
  
     }
 
+    /**
+     * Drops the results of a previous match so that match() can be run again
+     * against the same object relation maps
+     */
+    void clearResults()
+    {
+        resultSink.clear();
+        matchedList = null;
+        numDuplicateMatches = 0;
+    }
+
     @Override
-    public HashMap<String, ArrayList<JsonObject>> getResults()
+    public HashMap<String, ArrayList<Listing>> getResults()
     {
+        if (matchedList == null)
+        {
+            matchedList = resultSink.toResults();
+        }
         return matchedList;
     }
 
+    @Override
+    public ResultSink getResultSink()
+    {
+        return resultSink;
+    }
+
     @Override
     public String getImplementationName()
     {
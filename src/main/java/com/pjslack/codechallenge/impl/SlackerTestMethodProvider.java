@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.searchengine.AbstractSearchEngine;
+import com.pjslack.codechallenge.searchengine.SearchEngineProvider;
+
+/**
+ * Provides the SlackerTestMethod as the "slacker" engine, and as the
+ * "slacker-leftmost" engine which chooses between several manufacturer, alias
+ * or family vocabulary hits by position instead of key order, the model search
+ * is the same in both
+ *
+ * @author Peter J Slack
+ */
+public class SlackerTestMethodProvider implements SearchEngineProvider
+{
+
+    @Override
+    public String getName()
+    {
+        return "slacker";
+    }
+
+    @Override
+    public AbstractSearchEngine create(CodeChallenge c)
+    {
+        return new SlackerTestMethod(c);
+    }
+
+    /**
+     * The SlackerTestMethod with LEFTMOST hit selection of the manufacturer,
+     * alias and family, models are chosen as in the "slacker" engine
+     */
+    public static class Leftmost implements SearchEngineProvider
+    {
+
+        @Override
+        public String getName()
+        {
+            return "slacker-leftmost";
+        }
+
+        @Override
+        public AbstractSearchEngine create(CodeChallenge c)
+        {
+            SlackerTestMethod engine = new SlackerTestMethod(c);
+            engine.setHitSelection(SlackerTestMethod.HitSelection.LEFTMOST);
+            return engine;
+        }
+    }
+}
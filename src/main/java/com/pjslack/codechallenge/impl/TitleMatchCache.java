@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.metrics.Metrics;
+import com.pjslack.codechallenge.searchengine.MatchResult;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded cache of model search results keyed on a title fingerprint, so a
+ * title seen before, in this run, an earlier request to the server or an
+ * earlier run, does not pay for the model search again.
+ *
+ * The fingerprint is the conditioned manufacturer and family the vocabulary
+ * search found together with the upper case title as it is. The title is not
+ * normalized, the model expressions are matched with literal spaces and word
+ * boundaries so even a doubled space can change the result, and the engine
+ * always searches the listing's own title so the cache never changes a match.
+ *
+ * The cache is split into stripes by the hash of the fingerprint, each stripe
+ * is a least recently used map with its share of the capacity and its own
+ * lock, so threads matching in parallel rarely wait on each other.
+ *
+ * The cache alone counts its hits and misses, in the title cache counters of
+ * the metrics it is given, so the metrics and the cache never disagree.
+ *
+ * The file written by write is:
+ * <pre>
+ * int     magic
+ * int     cache file version
+ * int     length, byte[] SHA-256 of the product data the results came from
+ * int     number of entries, least recently used first
+ * entries UTF fingerprint, byte reason ordinal, UTF product name if matched
+ * </pre>
+ *
+ * An entry whose fingerprint or product name is too long for writeUTF is left
+ * out of the file, it is simply searched again by the next run.
+ *
+ * @author Peter J Slack
+ */
+public final class TitleMatchCache
+{
+
+    /**
+     * the number of fingerprints held unless told otherwise
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int MAGIC = 0x43435443;
+
+    /**
+     * the version of the cache file layout
+     */
+    public static final int CACHE_VERSION = 1;
+
+    private static final int STRIPES = 16;
+
+    private final List<Map<String, MatchResult>> stripes = new ArrayList<>(STRIPES);
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * Creates a cache counting its hits and misses on its own
+     *
+     * @param capacity - the most fingerprints held, the least recently used
+     * are dropped first
+     * @throws IllegalArgumentException - if the capacity is less than 1
+     */
+    public TitleMatchCache(int capacity) throws IllegalArgumentException
+    {
+        this(capacity, new Metrics());
+    }
+
+    /**
+     * Creates a cache counting its hits and misses in the
+     * COUNTER_TITLE_CACHE_HITS and COUNTER_TITLE_CACHE_MISSES counters of a
+     * run's metrics
+     *
+     * @param capacity - the most fingerprints held, the least recently used
+     * are dropped first
+     * @param metrics - the metrics of the run
+     * @throws IllegalArgumentException - if the capacity is less than 1
+     */
+    public TitleMatchCache(int capacity, Metrics metrics) throws IllegalArgumentException
+    {
+        hits = metrics.counter(Metrics.COUNTER_TITLE_CACHE_HITS);
+        misses = metrics.counter(Metrics.COUNTER_TITLE_CACHE_MISSES);
+        if (capacity < 1)
+        {
+            throw (new IllegalArgumentException("the capacity must be at least 1"));
+        }
+        int stripeCapacity = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++)
+        {
+            stripes.add(new LinkedHashMap<String, MatchResult>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MatchResult> eldest)
+                {
+                    return size() > stripeCapacity;
+                }
+            });
+        }
+    }
+
+    /**
+     * @param conditionedManufacturer - the manufacturer found
+     * @param conditionedFamily - the family found or null
+     * @param upperTitle - the upper case title
+     * @return the fingerprint
+     */
+    static String fingerprint(String conditionedManufacturer, String conditionedFamily, String upperTitle)
+    {
+        //the conditioned keys only hold letters, digits and periods so the
+        //separator cannot be part of them
+        return conditionedManufacturer + '\u0001' + (conditionedFamily == null ? "" : conditionedFamily)
+                + '\u0001' + upperTitle;
+    }
+
+    /**
+     * @param s - a string to write with writeUTF
+     * @return true when its modified UTF-8 form is no longer than writeUTF takes
+     */
+    static boolean fitsUTF(String s)
+    {
+        int length = s.length();
+        if (length > 0xFFFF)
+        {
+            return false;
+        }
+        long bytes = 0;
+        for (int i = 0; i < length; i++)
+        {
+            char c = s.charAt(i);
+            bytes += (c >= 0x0001 && c <= 0x007F) ? 1 : (c <= 0x07FF ? 2 : 3);
+        }
+        return bytes <= 0xFFFF;
+    }
+
+    private Map<String, MatchResult> stripe(String fingerprint)
+    {
+        int h = fingerprint.hashCode();
+        return stripes.get((h ^ (h >>> 16)) & (STRIPES - 1));
+    }
+
+    /**
+     * @param fingerprint - the fingerprint
+     * @return the result held for it or null
+     */
+    MatchResult get(String fingerprint)
+    {
+        Map<String, MatchResult> stripe = stripe(fingerprint);
+        MatchResult result;
+        synchronized (stripe)
+        {
+            result = stripe.get(fingerprint);
+        }
+        if (result == null)
+        {
+            misses.increment();
+        } else
+        {
+            hits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * @param fingerprint - the fingerprint
+     * @param result - the result of its model search
+     */
+    void put(String fingerprint, MatchResult result)
+    {
+        Map<String, MatchResult> stripe = stripe(fingerprint);
+        synchronized (stripe)
+        {
+            stripe.put(fingerprint, result);
+        }
+    }
+
+    /**
+     * @return the number of fingerprints held
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Map<String, MatchResult> stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to search the models
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return the share of lookups answered from the cache, 0 before any
+     */
+    public double getHitRate()
+    {
+        long h = getHits();
+        long n = h + getMisses();
+        return n == 0 ? 0 : (double) h / n;
+    }
+
+    /**
+     * Drops every fingerprint
+     */
+    public void clear()
+    {
+        for (Map<String, MatchResult> stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the cache to a temporary file renamed over the old one
+     *
+     * @param file - the cache file
+     * @param catalogHash - the hash of the product data the results came from
+     * @throws IOException - if the file cannot be written
+     */
+    public void write(File file, byte[] catalogHash) throws IOException
+    {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16)))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeInt(catalogHash.length);
+                out.write(catalogHash);
+
+                List<Map.Entry<String, MatchResult>> entries = new ArrayList<>();
+                for (Map<String, MatchResult> stripe : stripes)
+                {
+                    synchronized (stripe)
+                    {
+                        for (Map.Entry<String, MatchResult> e : stripe.entrySet())
+                        {
+                            if (fitsUTF(e.getKey()) && (!e.getValue().isMatched() || fitsUTF(e.getValue().getProductName().get())))
+                            {
+                                entries.add(e);
+                            }
+                        }
+                    }
+                }
+                out.writeInt(entries.size());
+                for (Map.Entry<String, MatchResult> e : entries)
+                {
+                    out.writeUTF(e.getKey());
+                    out.writeByte(e.getValue().getReason().ordinal());
+                    if (e.getValue().isMatched())
+                    {
+                        out.writeUTF(e.getValue().getProductName().get());
+                    }
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally
+        {
+            if (temp.exists() && !temp.delete())
+            {
+                Logger.getLogger(TitleMatchCache.class.getName()).log(Level.WARNING, "could not remove " + temp);
+            }
+        }
+    }
+
+    /**
+     * Adds the results of a cache file written for the same product data,
+     * results for products the engine does not know are skipped
+     *
+     * @param file - the cache file
+     * @param catalogHash - the hash of the current product data
+     * @param engine - the engine the results are for, its index must be built
+     * @return the number of fingerprints read, 0 when there is no file or it
+     * is of another catalog or version
+     * @throws IOException - if the file cannot be read or is damaged
+     */
+    public int load(File file, byte[] catalogHash, SlackerTestMethod engine) throws IOException
+    {
+        if (!file.isFile())
+        {
+            return 0;
+        }
+
+        MatchResult.Reason[] reasons = MatchResult.Reason.values();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != CACHE_VERSION)
+            {
+                Logger.getLogger(TitleMatchCache.class.getName()).log(Level.INFO, "Title cache not used, not a cache file of this version : {0}", file);
+                return 0;
+            }
+            byte[] hash = new byte[in.readInt()];
+            in.readFully(hash);
+            if (!Arrays.equals(hash, catalogHash))
+            {
+                Logger.getLogger(TitleMatchCache.class.getName()).log(Level.INFO, "Title cache not used, product catalog has changed : {0}", file);
+                return 0;
+            }
+
+            int n = in.readInt();
+            int read = 0;
+            for (int i = 0; i < n; i++)
+            {
+                String fingerprint = in.readUTF();
+                int reason = in.readUnsignedByte();
+                if (reason >= reasons.length)
+                {
+                    throw (new EOFException("bad reason in title cache " + file));
+                }
+                MatchResult result;
+                switch (reasons[reason])
+                {
+                    case MATCHED:
+                        result = engine.resultForProduct(in.readUTF());
+                        break;
+                    case NO_MANUFACTURER:
+                        result = MatchResult.NO_MANUFACTURER;
+                        break;
+                    case NO_MODEL:
+                        result = MatchResult.NO_MODEL;
+                        break;
+                    default:
+                        result = MatchResult.AMBIGUOUS_MODEL;
+                        break;
+                }
+                if (result != null)
+                {
+                    put(fingerprint, result);
+                    read++;
+                }
+            }
+            return read;
+        }
+    }
+}
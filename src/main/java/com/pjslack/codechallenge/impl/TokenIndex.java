@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An inverted index from model tokens to the products whose model search
+ * expressions need that token.
+ *
+ * A token is a run of ASCII letters and digits. Every model search expression
+ * is a word bounded model string with hyphen and whitespace variants, so a
+ * title matching an expression must contain, as a whole token, any run of the
+ * expression that sits between word breaks, whitespace or separator characters.
+ * The longest such run of each expression is indexed. A title is tokenized once
+ * and each token is looked up by hash, giving the candidates that are then
+ * verified with the full expressions. The cost of a lookup depends on the
+ * length of the title and not on the size of the catalog.
+ *
+ * The postings of a token are kept as pairs of ints, the scope id and the rank
+ * of the model in the scope, so a lookup walks a primitive array. The arrays
+ * double as they fill while the index is built and are trimmed by finish().
+ *
+ * The index is not modified by a lookup so a built instance can be shared
+ * between threads.
+ *
+ * @author Peter J Slack
+ */
+class TokenIndex
+{
+
+    /**
+     * The scope id and rank pairs of the models needing one token
+     */
+    private static final class Postings
+    {
+
+        /** the pairs, the first size ints are used */
+        int[] pairs = new int[4];
+        int size = 0;
+    }
+
+    /**
+     * token to the models needing that token
+     */
+    private final HashMap<String, Postings> postings = new HashMap<>();
+
+    /**
+     * Adds a product model to the index
+     *
+     * @param token - the token required by one of the model search expressions
+     * @param scope - the scope the model is searched in
+     * @param rank - the rank of the model in the scope
+     */
+    void add(String token, ModelScope scope, int rank)
+    {
+        Postings list = postings.computeIfAbsent(token, (t) -> new Postings());
+        int id = scope.id();
+        //the expressions of a model are added together so a repeated model is
+        //the last one, a repeat elsewhere would only set its candidate twice
+        if (list.size > 0 && list.pairs[list.size - 2] == id && list.pairs[list.size - 1] == rank)
+        {
+            return;
+        }
+        if (list.size == list.pairs.length)
+        {
+            list.pairs = Arrays.copyOf(list.pairs, list.size * 2);
+        }
+        list.pairs[list.size++] = id;
+        list.pairs[list.size++] = rank;
+    }
+
+    /**
+     * Trims the postings to their size once every model has been added
+     */
+    void finish()
+    {
+        postings.values().forEach((list) -> list.pairs = Arrays.copyOf(list.pairs, list.size));
+    }
+
+    /**
+     * Sets the rank of every model of the scope that has a posting for one of
+     * the tokens
+     *
+     * @param tokens - the tokens of a title
+     * @param scope - the scope being searched
+     * @param candidates - receives the candidate ranks
+     */
+    void lookup(List<String> tokens, ModelScope scope, BitSet candidates)
+    {
+        int id = scope.id();
+        for (String token : tokens)
+        {
+            Postings list = postings.get(token);
+            if (list != null)
+            {
+                int[] pairs = list.pairs;
+                for (int i = 0; i < list.size; i += 2)
+                {
+                    if (pairs[i] == id)
+                    {
+                        candidates.set(pairs[i + 1]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct tokens in the index
+     */
+    int size()
+    {
+        return postings.size();
+    }
+
+    private static boolean isTokenChar(char c)
+    {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Splits a text into its tokens
+     *
+     * @param text - the conditioned title
+     * @return the runs of ASCII letters and digits in the text
+     */
+    static List<String> tokenize(String text)
+    {
+        ArrayList<String> rval = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < text.length(); i++)
+        {
+            if (isTokenChar(text.charAt(i)))
+            {
+                if (start < 0)
+                {
+                    start = i;
+                }
+            } else if (start >= 0)
+            {
+                rval.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0)
+        {
+            rval.add(text.substring(start));
+        }
+        return rval;
+    }
+
+    /**
+     * Finds the longest token every match of the given expression must contain
+     * as a whole token of the title. A run of letters and digits counts only
+     * when both of its ends are a word break, a whitespace class or a plain
+     * separator character, wildcards and quantifiers spoil the runs next to
+     * them and any grouping or alternation gives up on the expression.
+     *
+     * @param source - the search expression source
+     * @return the anchor token or null if there is none
+     */
+    static String anchorToken(String source)
+    {
+        String best = null;
+        StringBuilder run = new StringBuilder();
+        //is the left end of the current run a separator
+        boolean leftBounded = false;
+        //is the current run still usable
+        boolean clean = true;
+
+        for (int i = 0; i < source.length(); i++)
+        {
+            char c = source.charAt(i);
+            boolean separator;
+            if (isTokenChar(c))
+            {
+                if (i + 1 < source.length() && "?*+{".indexOf(source.charAt(i + 1)) >= 0)
+                {
+                    //a repeated or optional character, the run is not exact
+                    clean = false;
+                }
+                run.append(c);
+                continue;
+            }
+            switch (c)
+            {
+                case '\\':
+                    if (i + 1 >= source.length())
+                    {
+                        return null;
+                    }
+                    char e = source.charAt(i + 1);
+                    if (e == 'b')
+                    {
+                        separator = true;
+                        i++;
+                    } else if (e == 's' && i + 2 < source.length() && source.charAt(i + 2) == '+')
+                    {
+                        separator = true;
+                        i += 2;
+                    } else
+                    {
+                        separator = false;
+                        i++;
+                    }
+                    break;
+                case '.':
+                case '?':
+                case '*':
+                case '+':
+                case '{':
+                case '}':
+                case ',':
+                    separator = false;
+                    break;
+                case '(':
+                case ')':
+                case '[':
+                case ']':
+                case '|':
+                case '^':
+                case '$':
+                    return null;
+                default:
+                    //a plain character that cannot be part of a token, it must
+                    //not be made optional by a following quantifier
+                    separator = !(i + 1 < source.length() && "?*{".indexOf(source.charAt(i + 1)) >= 0);
+                    break;
+            }
+
+            if (run.length() > 0 && clean && leftBounded && separator)
+            {
+                if (best == null || run.length() > best.length())
+                {
+                    best = run.toString();
+                }
+            }
+            run.setLength(0);
+            clean = true;
+            leftBounded = separator;
+        }
+
+        //the end of the expression is not a word break on its own
+        return best;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.incremental;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
+import com.pjslack.codechallenge.ResultWriter;
+import com.pjslack.codechallenge.impl.SlackerTestMethod;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.JsonException;
+
+/**
+ * Matches only the listings that are new since the last run.
+ *
+ * The first run, with no state file, matches every listing and writes the
+ * results file. Each later run reads the state file, leaves out the listings
+ * whose title has been seen before, reads the match index instead of building
+ * it when the product catalog has not changed, matches what is left and
+ * appends the new product lines to the results file. A product matched in
+ * several runs therefore has one line for each of those runs.
+ *
+ * When the product catalog has changed every listing is matched again and the
+ * results file is written anew, so listings that matched nothing before are
+ * retried and no line of the old catalog is left behind.
+ *
+ * @author Peter J Slack
+ */
+public class IncrementalCodeChallenge
+{
+
+    /**
+     * the default state file name in the working directory
+     */
+    public static final String STATE_FILE_NAME = "codeChallenge.state";
+
+    private final File stateFile;
+    private final File outputFile;
+
+    private CodeChallenge codeChallenge;
+    private SlackerTestMethod engine;
+    private boolean indexRestored = false;
+    private int titlesSeen = 0;
+
+    /**
+     * Creates an incremental run
+     *
+     * @param stateFile - the state kept between runs
+     * @param outputFile - the results file appended to
+     */
+    public IncrementalCodeChallenge(File stateFile, File outputFile)
+    {
+        this.stateFile = stateFile;
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * Matches the new listings and appends their results, the streams are read
+     * to the end and closed
+     *
+     * @param listingData - the listings, old and new
+     * @param productData - the product definitions
+     * @throws IOException - if a file cannot be read or written
+     * @throws JsonException - if the listings or products cannot be parsed
+     */
+    public void run(InputStream listingData, InputStream productData) throws IOException, JsonException
+    {
+        IncrementalState state = stateFile.exists() ? IncrementalState.read(stateFile) : null;
+
+        //the catalog is read on its own first, the titles seen can only be
+        //left out when they were matched against the same catalog
+        byte[] products = readAll(productData);
+        byte[] digest = IncrementalState.digest(new CodeChallenge(new ByteArrayInputStream(new byte[0]),
+                new ByteArrayInputStream(products)).getProductKeys());
+        if (state == null)
+        {
+            state = new IncrementalState(digest);
+        } else if (!state.isSameCatalog(digest))
+        {
+            Logger.getLogger(IncrementalCodeChallenge.class.getName()).log(Level.WARNING,
+                    "The product catalog has changed since the last run, matching every listing again");
+            state.changeCatalog(digest);
+        }
+        titlesSeen = state.getNumberOfTitles();
+        boolean append = titlesSeen > 0;
+
+        IncrementalState seen = state;
+        codeChallenge = new CodeChallenge(listingData, new ByteArrayInputStream(products), (title) -> !seen.isSeen(title));
+
+        engine = new SlackerTestMethod(codeChallenge);
+        engine.setParallelism(Runtime.getRuntime().availableProcessors());
+        indexRestored = state.restoreIndex(engine);
+        engine.process();
+
+        HashMap<String, ArrayList<Listing>> results = engine.getResults();
+        try (ResultWriter writer = new ResultWriter(new FileOutputStream(outputFile, append)))
+        {
+            writer.writeAll(results, false);
+        }
+
+        //every title of this run is seen from now on, matched or not
+        for (String title : codeChallenge.getListingKeys().keySet())
+        {
+            state.addTitle(title);
+        }
+        if (!indexRestored)
+        {
+            state.keepIndex(engine);
+        }
+        state.write(stateFile);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream input = in)
+        {
+            byte[] buffer = new byte[1 << 16];
+            int n;
+            while ((n = input.read(buffer)) != -1)
+            {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the code challenge holding the new listings of the last run
+     */
+    public CodeChallenge getCodeChallenge()
+    {
+        return codeChallenge;
+    }
+
+    /**
+     * @return the engine of the last run
+     */
+    public SlackerTestMethod getEngine()
+    {
+        return engine;
+    }
+
+    /**
+     * @return true if the last run read the match index instead of building it
+     */
+    public boolean isIndexRestored()
+    {
+        return indexRestored;
+    }
+
+    /**
+     * @return the number of titles seen before the last run against the same
+     * catalog, 0 when the catalog has changed
+     */
+    public int getTitlesSeen()
+    {
+        return titlesSeen;
+    }
+
+    /**
+     * Runs an incremental match in the working directory
+     *
+     * @param args - the listings file and optionally the products file, the
+     * bundled products are used when it is not given
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 1 || args.length > 2)
+        {
+            System.err.println("usage: IncrementalCodeChallenge <listings file> [products file]");
+            System.exit(1);
+        }
+
+        String dir = System.getProperty("user.dir");
+        IncrementalCodeChallenge run = new IncrementalCodeChallenge(new File(dir, STATE_FILE_NAME),
+                new File(dir, "codeChallenge.txt"));
+
+        long startTime = System.currentTimeMillis();
+        try
+        {
+            InputStream products = args.length > 1 ? new FileInputStream(args[1])
+                    : CodeChallenge.class.getResourceAsStream(CodeChallenge.PRODUCTS_RESOURCE_PATH);
+            run.run(new FileInputStream(args[0]), products);
+        } catch (IOException | JsonException ex)
+        {
+            Logger.getLogger(IncrementalCodeChallenge.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(2);
+        }
+        long difference = System.currentTimeMillis() - startTime;
+
+        CodeChallenge c = run.getCodeChallenge();
+        System.out.println("*************INCREMENTAL RUN***********************");
+        System.out.println("Titles seen before         : " + run.getTitlesSeen());
+        System.out.println("Match index restored       : " + run.isIndexRestored());
+        System.out.println("Total Listings             : " + c.getTotalListings());
+        System.out.println("Listings already seen      : " + c.getNumberOfSkippedListings());
+        System.out.println("Total Hits                 : " + run.getEngine().getNumberOfMatches());
+        System.out.println("Total Misses               : " + run.getEngine().getNumberOfMisses());
+        System.out.println("Elapsed Time (s)           : " + difference / 1000);
+        System.out.println("Save file name             : " + run.outputFile);
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.incremental;
+
+import com.pjslack.codechallenge.Product;
+import com.pjslack.codechallenge.impl.SlackerTestMethod;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * What an incremental run keeps for the next one: a digest of the product
+ * catalog, the match index built from it and every listing title matched
+ * against that catalog so far.
+ *
+ * The state is one binary file:
+ * <pre>
+ * int     magic
+ * int     version
+ * int     length, byte[] catalog digest
+ * int     length, byte[] SlackerTestMethod index
+ * long    number of titles
+ *         per title: UTF title
+ * </pre>
+ * The index is length prefixed so that it can be skipped when the catalog has
+ * changed. The file is written to a temporary file and renamed over the old
+ * one so that a failed run leaves the previous state in place.
+ *
+ * @author Peter J Slack
+ */
+public final class IncrementalState
+{
+
+    private static final int MAGIC = 0x43435354;
+
+    /**
+     * the version of the state file
+     */
+    public static final int VERSION = 2;
+
+    private byte[] catalogDigest;
+
+    /**
+     * the index as written by SlackerTestMethod.writeIndex, null if it has
+     * not been kept
+     */
+    private byte[] index;
+
+    /**
+     * every title matched against the catalog
+     */
+    private final HashSet<String> titles;
+
+    /**
+     * Creates an empty state for a catalog
+     *
+     * @param catalogDigest - the digest of the product catalog
+     */
+    public IncrementalState(byte[] catalogDigest)
+    {
+        this(catalogDigest, null, new HashSet<>());
+    }
+
+    private IncrementalState(byte[] catalogDigest, byte[] index, HashSet<String> titles)
+    {
+        this.catalogDigest = catalogDigest;
+        this.index = index;
+        this.titles = titles;
+    }
+
+    /**
+     * Computes the digest of a product catalog, the products are taken in
+     * product name order so the digest does not depend on the order of the
+     * product file
+     *
+     * @param products - the products by product name
+     * @return the digest
+     */
+    public static byte[] digest(Map<String, Product> products)
+    {
+        MessageDigest md;
+        try
+        {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex)
+        {
+            //every Java platform has SHA-256
+            throw (new IllegalStateException(ex));
+        }
+
+        String[] names = products.keySet().toArray(new String[products.size()]);
+        Arrays.sort(names);
+        for (String name : names)
+        {
+            Product p = products.get(name);
+            String line = p.getName() + '\u0000' + p.getManufacturer() + '\u0000' + p.getModel() + '\u0000'
+                    + (p.getFamily() == null ? "" : p.getFamily()) + '\n';
+            md.update(line.getBytes(StandardCharsets.UTF_8));
+        }
+        return md.digest();
+    }
+
+    /**
+     * @param digest - the digest of the current catalog
+     * @return true if the state was made against the same catalog
+     */
+    public boolean isSameCatalog(byte[] digest)
+    {
+        return Arrays.equals(catalogDigest, digest);
+    }
+
+    /**
+     * Moves the state to another catalog, the kept index and the titles seen
+     * are dropped as the titles have to be matched against the new catalog
+     *
+     * @param digest - the digest of the new catalog
+     */
+    public void changeCatalog(byte[] digest)
+    {
+        catalogDigest = digest;
+        index = null;
+        titles.clear();
+    }
+
+    /**
+     * Reads the kept index into an engine that has not built its index
+     *
+     * @param engine - the engine
+     * @return true if the index was read, false if none is kept or it is of
+     * another index version
+     */
+    public boolean restoreIndex(SlackerTestMethod engine)
+    {
+        if (index == null)
+        {
+            return false;
+        }
+        try
+        {
+            engine.readIndex(new DataInputStream(new ByteArrayInputStream(index)));
+        } catch (IOException ex)
+        {
+            //the version is checked before anything is read into the engine
+            Logger.getLogger(IncrementalState.class.getName()).log(Level.WARNING, "Kept index not used, rebuilding the match index", ex);
+            index = null;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the index of an engine that has built or read its index
+     *
+     * @param engine - the engine
+     * @throws IOException - if the index cannot be written
+     */
+    public void keepIndex(SlackerTestMethod engine) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            engine.writeIndex(out);
+        }
+        index = bytes.toByteArray();
+    }
+
+    /**
+     * @param title - a listing title
+     * @return true if the title has been seen in an earlier run
+     */
+    public boolean isSeen(String title)
+    {
+        return titles.contains(title);
+    }
+
+    /**
+     * Records a title matched against the catalog, matched to a product or not
+     *
+     * @param title - the listing title
+     */
+    public void addTitle(String title)
+    {
+        titles.add(title);
+    }
+
+    /**
+     * @return the number of titles seen
+     */
+    public int getNumberOfTitles()
+    {
+        return titles.size();
+    }
+
+    /**
+     * Reads a state file
+     *
+     * @param file - the state file
+     * @return the state
+     * @throws IOException - if the file cannot be read or is not a state file
+     * of this version
+     */
+    public static IncrementalState read(File file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw (new IOException("not an incremental state file : " + file));
+            }
+            int version = in.readInt();
+            if (version != VERSION)
+            {
+                throw (new IOException("unsupported incremental state version " + version + " : " + file));
+            }
+
+            byte[] digest = new byte[in.readInt()];
+            in.readFully(digest);
+            byte[] index = new byte[in.readInt()];
+            in.readFully(index);
+
+            long n = in.readLong();
+            HashSet<String> titles = new HashSet<>();
+            for (long i = 0; i < n; i++)
+            {
+                titles.add(in.readUTF());
+            }
+
+            return new IncrementalState(digest, index.length == 0 ? null : index, titles);
+        }
+    }
+
+    /**
+     * Writes the state file, replacing the previous one only once the new
+     * state is completely written
+     *
+     * @param file - the state file
+     * @throws IOException - if the file cannot be written
+     */
+    public void write(File file) throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16)))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(catalogDigest.length);
+                out.write(catalogDigest);
+                if (index == null)
+                {
+                    out.writeInt(0);
+                } else
+                {
+                    out.writeInt(index.length);
+                    out.write(index);
+                }
+                out.writeLong(titles.size());
+                for (String title : titles)
+                {
+                    out.writeUTF(title);
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally
+        {
+            if (temp.exists() && !temp.delete())
+            {
+                Logger.getLogger(IncrementalState.class.getName()).log(Level.WARNING, "could not remove " + temp);
+            }
+        }
+    }
+}
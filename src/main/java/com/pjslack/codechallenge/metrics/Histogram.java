@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non negative values such as latencies in nanoseconds or
+ * candidate set sizes.
+ *
+ * Values are counted in power of two buckets, bucket 0 holds 0 and bucket i
+ * holds the values from 2^(i-1) to 2^i - 1, so recording a value is a leading
+ * zero count and an add. Percentiles are reported as the upper bound of their
+ * bucket, capped at the largest value seen, which is within a factor of two.
+ *
+ * The histogram is safe to record into from many threads.
+ *
+ * @author Peter J Slack
+ */
+public final class Histogram
+{
+
+    private static final int BUCKETS = 65;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates an empty histogram
+     */
+    public Histogram()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a value, negative values are recorded as 0
+     *
+     * @param value - the value
+     */
+    public void record(long value)
+    {
+        if (value < 0)
+        {
+            value = 0;
+        }
+        buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of the values recorded
+     */
+    public long getSum()
+    {
+        return sum.sum();
+    }
+
+    /**
+     * @return the largest value recorded, 0 when there are none
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the values recorded, 0 when there are none
+     */
+    public double getMean()
+    {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getSum() / n;
+    }
+
+    /**
+     * @param percentile - 0 to 100
+     * @return the value at the percentile, within a factor of two
+     */
+    public long getPercentile(double percentile)
+    {
+        long n = getCount();
+        if (n == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets[i].sum();
+            if (seen >= rank)
+            {
+                long upper = i == 0 ? 0 : i == 64 ? Long.MAX_VALUE : (1L << i) - 1;
+                return Math.min(upper, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Forgets every value recorded
+     */
+    public void reset()
+    {
+        for (LongAdder b : buckets)
+        {
+            b.reset();
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+}
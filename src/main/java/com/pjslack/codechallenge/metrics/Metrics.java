@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonWriter;
+import javax.json.JsonWriterFactory;
+import javax.json.stream.JsonGenerator;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of one run: nanoseconds spent in each phase, counters and
+ * histograms.
+ *
+ * Phases are timed with System.nanoTime and added up by name. Counters and
+ * histograms are looked up by name once and the returned LongAdder or
+ * Histogram is kept by whoever records into it, so the per listing cost is an
+ * add and no map lookup. Everything is safe to record into from many threads
+ * and is reported in the order it was first used.
+ *
+ * @author Peter J Slack
+ */
+public final class Metrics implements MetricsMXBean
+{
+
+    /**
+     * the name the metrics are registered under by register()
+     */
+    public static final String OBJECT_NAME = "com.pjslack.codechallenge:type=Metrics";
+
+    /**
+     * reading and checking the listings
+     */
+    public static final String PHASE_LOAD_LISTINGS = "loadListings";
+
+    /**
+     * reading and checking the product definitions
+     */
+    public static final String PHASE_LOAD_PRODUCTS = "loadProducts";
+
+    /**
+     * building the whole match index
+     */
+    public static final String PHASE_BUILD_INDEX = "buildObjectRelationMaps";
+
+    /**
+     * building the model regexs, part of PHASE_BUILD_INDEX
+     */
+    public static final String PHASE_BUILD_MODEL_REGEX = "buildGenericModelModifierMap";
+
+    /**
+     * building the model token index, part of PHASE_BUILD_INDEX
+     */
+    public static final String PHASE_BUILD_TOKEN_INDEX = "buildTokenIndex";
+
+    /**
+     * building the vocabulary automaton, part of PHASE_BUILD_INDEX
+     */
+    public static final String PHASE_BUILD_VOCABULARY = "buildVocabularyAutomaton";
+
+    /**
+     * reading the match index from a snapshot instead of building it
+     */
+    public static final String PHASE_READ_INDEX = "readIndex";
+
+    /**
+     * matching the unique listings
+     */
+    public static final String PHASE_MATCH = "match";
+
+    /**
+     * adding the duplicate listings to the matches
+     */
+    public static final String PHASE_MATCH_DUPLICATES = "matchDuplicateListings";
+
+    /**
+     * writing the results
+     */
+    public static final String PHASE_DUMP_RESULTS = "dumpResults";
+
+    /**
+     * the listings matched against the index
+     */
+    public static final String COUNTER_LISTINGS_MATCHED = "listingsMatched";
+
+    /**
+     * the model regexs run against listing titles
+     */
+    public static final String COUNTER_REGEX_PROBES = "regexProbes";
+
+    /**
+     * the model searches answered from the title cache
+     */
+    public static final String COUNTER_TITLE_CACHE_HITS = "titleCacheHits";
+
+    /**
+     * the model searches made because the title cache did not hold the title
+     */
+    public static final String COUNTER_TITLE_CACHE_MISSES = "titleCacheMisses";
+
+    /**
+     * the result lines written
+     */
+    public static final String COUNTER_RESULT_LINES = "resultLines";
+
+    /**
+     * nanoseconds to match one listing
+     */
+    public static final String HISTOGRAM_MATCH_LATENCY = "matchLatencyNanos";
+
+    /**
+     * models left to verify after the token index lookup of a listing
+     */
+    public static final String HISTOGRAM_CANDIDATES = "candidateModels";
+
+    private final Map<String, LongAdder> phases = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, LongAdder> counters = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, Histogram> histograms = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * @return the time to pass to stop()
+     */
+    public long start()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds the time since start to a phase
+     *
+     * @param phase - the phase name
+     * @param start - the time returned by start()
+     */
+    public void stop(String phase, long start)
+    {
+        long nanos = System.nanoTime() - start;
+        phases.computeIfAbsent(phase, (p) -> new LongAdder()).add(nanos);
+    }
+
+    /**
+     * @param name - the counter name
+     * @return the counter, made the first time it is asked for
+     */
+    public LongAdder counter(String name)
+    {
+        return counters.computeIfAbsent(name, (n) -> new LongAdder());
+    }
+
+    /**
+     * @param name - the histogram name
+     * @return the histogram, made the first time it is asked for
+     */
+    public Histogram histogram(String name)
+    {
+        return histograms.computeIfAbsent(name, (n) -> new Histogram());
+    }
+
+    /**
+     * @param phase - the phase name
+     * @return the nanoseconds spent in the phase, 0 if it has not run
+     */
+    public long getPhaseNanos(String phase)
+    {
+        LongAdder nanos = phases.get(phase);
+        return nanos == null ? 0 : nanos.sum();
+    }
+
+    @Override
+    public Map<String, Long> getPhaseNanos()
+    {
+        return sums(phases);
+    }
+
+    @Override
+    public Map<String, Long> getCounters()
+    {
+        return sums(counters);
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> adders)
+    {
+        Map<String, Long> values = new LinkedHashMap<>();
+        synchronized (adders)
+        {
+            adders.forEach((name, adder) -> values.put(name, adder.sum()));
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getHistograms()
+    {
+        Map<String, Double> values = new LinkedHashMap<>();
+        synchronized (histograms)
+        {
+            histograms.forEach((name, h) ->
+            {
+                values.put(name + ".count", (double) h.getCount());
+                values.put(name + ".mean", h.getMean());
+                values.put(name + ".p50", (double) h.getPercentile(50));
+                values.put(name + ".p90", (double) h.getPercentile(90));
+                values.put(name + ".p99", (double) h.getPercentile(99));
+                values.put(name + ".max", (double) h.getMax());
+            });
+        }
+        return values;
+    }
+
+    @Override
+    public double getListingsPerSecond()
+    {
+        long nanos = getPhaseNanos(PHASE_MATCH);
+        LongAdder listings = counters.get(COUNTER_LISTINGS_MATCHED);
+        if (nanos == 0 || listings == null)
+        {
+            return 0;
+        }
+        return listings.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public void reset()
+    {
+        synchronized (phases)
+        {
+            phases.values().forEach(LongAdder::reset);
+        }
+        synchronized (counters)
+        {
+            counters.values().forEach(LongAdder::reset);
+        }
+        synchronized (histograms)
+        {
+            histograms.values().forEach(Histogram::reset);
+        }
+    }
+
+    /**
+     * @return the metrics as a JSON object with the phases, counters,
+     * histograms and listings a second
+     */
+    public JsonObject toJson()
+    {
+        JsonObjectBuilder phaseJson = Json.createObjectBuilder();
+        getPhaseNanos().forEach(phaseJson::add);
+        JsonObjectBuilder counterJson = Json.createObjectBuilder();
+        getCounters().forEach(counterJson::add);
+
+        JsonObjectBuilder histogramJson = Json.createObjectBuilder();
+        synchronized (histograms)
+        {
+            histograms.forEach((name, h) -> histogramJson.add(name, Json.createObjectBuilder()
+                    .add("count", h.getCount())
+                    .add("mean", h.getMean())
+                    .add("p50", h.getPercentile(50))
+                    .add("p90", h.getPercentile(90))
+                    .add("p99", h.getPercentile(99))
+                    .add("max", h.getMax())));
+        }
+
+        return Json.createObjectBuilder()
+                .add("phaseNanos", phaseJson)
+                .add("counters", counterJson)
+                .add("histograms", histogramJson)
+                .add("listingsPerSecond", getListingsPerSecond())
+                .build();
+    }
+
+    /**
+     * Writes the JSON summary to a file
+     *
+     * @param file - the summary file, replaced if it exists
+     * @throws IOException - if the file cannot be written
+     */
+    public void writeSummary(File file) throws IOException
+    {
+        JsonWriterFactory factory = Json.createWriterFactory(
+                Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true));
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+                JsonWriter writer = factory.createWriter(out))
+        {
+            writer.writeObject(toJson());
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under OBJECT_NAME,
+     * replacing any metrics registered before
+     *
+     * @param metrics - the metrics
+     * @throws JMException - if the metrics cannot be registered
+     */
+    public static void register(Metrics metrics) throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+        {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(metrics, name);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of Metrics. The maps are keyed by phase, counter
+ * or histogram name, histogram entries are named
+ * &lt;histogram&gt;.&lt;statistic&gt; for count, mean, p50, p90, p99 and max
+ *
+ * @author Peter J Slack
+ */
+public interface MetricsMXBean
+{
+
+    /**
+     * @return the nanoseconds spent in each phase
+     */
+    Map<String, Long> getPhaseNanos();
+
+    /**
+     * @return the value of each counter
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return the statistics of each histogram
+     */
+    Map<String, Double> getHistograms();
+
+    /**
+     * @return the listings matched a second over the match phase
+     */
+    double getListingsPerSecond();
+
+    /**
+     * Forgets everything recorded
+     */
+    void reset();
+}
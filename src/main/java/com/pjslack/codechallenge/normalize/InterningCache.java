@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.normalize;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache from raw strings to their normalized form.
+ *
+ * Fields like the listing manufacturer only take a few hundred distinct values
+ * over tens of thousands of records, so normalizing each distinct value once
+ * and handing back the same String instance saves both the work and the
+ * duplicate Strings on the heap. Once the cache holds its capacity new values
+ * are normalized but no longer added, so a field that turns out not to repeat
+ * cannot grow the cache without bound.
+ *
+ * The cache is safe to use from many threads.
+ *
+ * @author Peter J Slack
+ */
+public final class InterningCache
+{
+
+    /**
+     * raw value to normalized value
+     */
+    private final ConcurrentHashMap<String, String> cache;
+
+    /**
+     * the most entries the cache will hold
+     */
+    private final int capacity;
+
+    /**
+     * the function applied to values not in the cache
+     */
+    private final Function<String, String> normalizer;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache
+     *
+     * @param capacity - the most entries the cache will hold
+     * @param normalizer - the function applied to values not in the cache
+     */
+    public InterningCache(int capacity, Function<String, String> normalizer)
+    {
+        this.capacity = capacity;
+        this.normalizer = normalizer;
+        cache = new ConcurrentHashMap<>(Math.min(capacity, 1024));
+    }
+
+    /**
+     * Returns the normalized form of a value
+     *
+     * @param raw - the raw value
+     * @return the normalized value or null if raw is null
+     */
+    public String get(String raw)
+    {
+        if (raw == null)
+        {
+            return null;
+        }
+
+        String rval = cache.get(raw);
+        if (rval != null)
+        {
+            hits.increment();
+            return rval;
+        }
+
+        misses.increment();
+        rval = normalizer.apply(raw);
+        if (cache.size() < capacity)
+        {
+            String previous = cache.putIfAbsent(raw, rval);
+            if (previous != null)
+            {
+                rval = previous;
+            }
+        }
+        return rval;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to normalize the value
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries in the cache
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+    /**
+     * @return the most entries the cache will hold
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Empties the cache and resets the counters
+     */
+    public void clear()
+    {
+        cache.clear();
+        hits.reset();
+        misses.reset();
+    }
+}
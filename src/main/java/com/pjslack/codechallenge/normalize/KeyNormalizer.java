@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.normalize;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Conditions manufacturer, family and model strings into the key form the
+ * search engines compare: upper case with anything other than letters, digits
+ * and periods removed.
+ *
+ * Plain ASCII input, which is nearly all of it, is conditioned in one loop over
+ * the characters. Anything else goes through String.toUpperCase and a
+ * precompiled pattern so that the result is always the same as
+ * toUpperCase().replaceAll("[^A-Za-z0-9\\.]", "").
+ *
+ * Manufacturers and families repeat across many records so they are conditioned
+ * through shared interning caches.
+ *
+ * @author Peter J Slack
+ */
+public final class KeyNormalizer
+{
+
+    /**
+     * the characters removed when conditioning a key string
+     */
+    private static final Pattern NON_KEY_CHARS = Pattern.compile("[^A-Za-z0-9\\.]");
+
+    /**
+     * the most distinct values held by each of the shared caches
+     */
+    public static final int CACHE_CAPACITY = 16384;
+
+    /**
+     * conditioned manufacturers of products and listings
+     */
+    public static final InterningCache MANUFACTURERS = new InterningCache(CACHE_CAPACITY, KeyNormalizer::condition);
+
+    /**
+     * conditioned product families
+     */
+    public static final InterningCache FAMILIES = new InterningCache(CACHE_CAPACITY, KeyNormalizer::condition);
+
+    private KeyNormalizer()
+    {
+    }
+
+    /**
+     * Conditions a key string, upper case with anything other than letters,
+     * digits and periods removed
+     *
+     * @param pre - the raw string
+     * @return the conditioned string or null if pre is null
+     */
+    public static String condition(String pre)
+    {
+        if (pre == null)
+        {
+            return null;
+        }
+
+        //these languages upper case some ASCII letters to non ASCII letters
+        String language = Locale.getDefault().getLanguage();
+        if ("tr".equals(language) || "az".equals(language) || "lt".equals(language))
+        {
+            return conditionSlow(pre);
+        }
+
+        int length = pre.length();
+        char[] out = null;
+        int n = 0;
+        for (int i = 0; i < length; i++)
+        {
+            char c = pre.charAt(i);
+            char u;
+            if (c >= 'a' && c <= 'z')
+            {
+                u = (char) (c - ('a' - 'A'));
+            } else if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.')
+            {
+                u = c;
+            } else if (c < 0x80)
+            {
+                //ASCII that is not part of a key
+                u = 0;
+            } else
+            {
+                return conditionSlow(pre);
+            }
+
+            if (out == null && u != c)
+            {
+                //first change, copy what has been kept so far
+                out = new char[length];
+                pre.getChars(0, i, out, 0);
+                n = i;
+            }
+            if (out != null && u != 0)
+            {
+                out[n++] = u;
+            }
+        }
+
+        return out == null ? pre : new String(out, 0, n);
+    }
+
+    private static String conditionSlow(String pre)
+    {
+        return NON_KEY_CHARS.matcher(pre.toUpperCase()).replaceAll("");
+    }
+
+    /**
+     * Conditions a manufacturer through the shared manufacturer cache
+     *
+     * @param manufacturer - the raw manufacturer
+     * @return the conditioned manufacturer or null
+     */
+    public static String conditionManufacturer(String manufacturer)
+    {
+        return MANUFACTURERS.get(manufacturer);
+    }
+
+    /**
+     * Conditions a family through the shared family cache
+     *
+     * @param family - the raw family
+     * @return the conditioned family or null
+     */
+    public static String conditionFamily(String family)
+    {
+        return FAMILIES.get(family);
+    }
+}
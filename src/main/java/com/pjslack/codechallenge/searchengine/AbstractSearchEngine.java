@@ -17,9 +17,9 @@
 package com.pjslack.codechallenge.searchengine;
 
 import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
 import java.util.ArrayList;
 import java.util.HashMap;
-import javax.json.JsonObject;
 
 /**
  * An Abstract class to use as a foundation to test various methods of search and match
@@ -28,12 +28,46 @@ import javax.json.JsonObject;
  */
 public abstract class AbstractSearchEngine
 {
+    /**
+     * the number of threads the implementation may use to process
+     */
+    protected int parallelism = 1;
+
+    /**
+     * the number of listings given to a thread at a time when processing in
+     * parallel unless told otherwise
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * the number of listings given to a thread at a time
+     */
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+
     /**
      * An abstract method for the implementing class process and return
      * matches
      * 
      */
     public abstract void process();
+    /**
+     * Builds the search index from the product definitions of the
+     * CodeChallenge, an index that is already built is kept. process() builds
+     * the index when it has not been built
+     */
+    public abstract void buildIndex();
+
+    /**
+     * Matches one listing against the index. This does not change the results
+     * of process() and can be called from many threads at once once the index
+     * is built
+     *
+     * @param listing the listing to match
+     * @return the product matched and the reason
+     * @throws IllegalStateException if the index has not been built
+     */
+    public abstract MatchResult match(Listing listing) throws IllegalStateException;
+
     /**
     * Return the number of matches by this processor
     * @return the number of matches processed by this implementation 
@@ -52,10 +86,20 @@ public abstract class AbstractSearchEngine
     
     /**
      * Return the matched listings
-     * @return results index by product name where the key is product_name and the arraylist of json objects
+     * @return results index by product name where the key is product_name and the arraylist of listings
      * are the original listings that were matched up
      */
-    public abstract HashMap<String, ArrayList<JsonObject>> getResults();
+    public abstract HashMap<String, ArrayList<Listing>> getResults();
+
+    /**
+     * Return the matched listings as the sink process() wrote them into, so
+     * they can be written out without making the map of getResults()
+     * @return the result sink, null when the implementation keeps no sink
+     */
+    public ResultSink getResultSink()
+    {
+        return null;
+    }
     
     /**
      * Returns the implementation name
@@ -69,6 +113,46 @@ public abstract class AbstractSearchEngine
      */
     public abstract String getImplementationDescription();
     
+    /**
+     * Sets the number of threads the implementation may use when processing.
+     * Implementations that only run on one thread ignore this, and results must
+     * be the same whatever the number of threads
+     * @param threads the number of threads, 1 to process on the calling thread
+     */
+    public void setParallelism(int threads)
+    {
+        parallelism = Math.max(1, threads);
+    }
+    
+    /**
+     * Returns the number of threads the implementation may use when processing
+     * @return the number of threads
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of listings given to a thread at a time when processing
+     * in parallel, larger batches mean less scheduling and coarser load
+     * balancing
+     * @param listings the number of listings in a batch, at least 1
+     */
+    public void setBatchSize(int listings)
+    {
+        batchSize = Math.max(1, listings);
+    }
+
+    /**
+     * Returns the number of listings given to a thread at a time
+     * @return the batch size
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+    
     public AbstractSearchEngine(CodeChallenge c)
     {
                 
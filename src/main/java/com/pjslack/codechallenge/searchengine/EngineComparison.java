@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.searchengine;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.JsonException;
+
+/**
+ * Runs several search engines over the same loaded data and reports how fast
+ * each one is and how its matches differ from the first engine's.
+ *
+ * The first engine is run once untimed to warm up. For each engine the index
+ * build and the batch process() are then timed, every
+ * listing is then matched on its own with match() to give latency percentiles,
+ * and the heap held by the built index is estimated from the used heap after a
+ * garbage collection before and after the build. The matches of each engine
+ * are compared listing by listing with the first engine, the baseline.
+ *
+ * @author Peter J Slack
+ */
+public class EngineComparison
+{
+
+    /**
+     * the most differing listings shown for each engine
+     */
+    private static final int DIFF_SAMPLES = 10;
+
+    private final CodeChallenge codeChallenge;
+    private int parallelism = 1;
+
+    /**
+     * What one engine did
+     */
+    public static final class Report
+    {
+
+        private final String name;
+        private long buildNanos;
+        private long processNanos;
+        private long heapBytes;
+        private int matches;
+        private int misses;
+        private long[] latencyNanos;
+        private final HashMap<String, String> productByTitle = new HashMap<>();
+
+        Report(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * @return the engine name
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the time to build the index in nanoseconds
+         */
+        public long getBuildNanos()
+        {
+            return buildNanos;
+        }
+
+        /**
+         * @return the time of process() in nanoseconds
+         */
+        public long getProcessNanos()
+        {
+            return processNanos;
+        }
+
+        /**
+         * @return the estimated heap held by the engine after building its
+         * index, in bytes
+         */
+        public long getHeapBytes()
+        {
+            return heapBytes;
+        }
+
+        /**
+         * @return the matches reported by the engine
+         */
+        public int getMatches()
+        {
+            return matches;
+        }
+
+        /**
+         * @return the misses reported by the engine
+         */
+        public int getMisses()
+        {
+            return misses;
+        }
+
+        /**
+         * @param percentile - 0 to 100
+         * @return the match() latency at the percentile in nanoseconds
+         */
+        public long getLatencyNanos(double percentile)
+        {
+            if (latencyNanos.length == 0)
+            {
+                return 0;
+            }
+            int i = (int) Math.ceil(percentile / 100.0 * latencyNanos.length) - 1;
+            return latencyNanos[Math.max(0, Math.min(latencyNanos.length - 1, i))];
+        }
+
+        /**
+         * @param title - a listing title
+         * @return the product the engine matched the title to or null
+         */
+        public String getProductName(String title)
+        {
+            return productByTitle.get(title);
+        }
+    }
+
+    /**
+     * How the matches of an engine differ from the baseline
+     */
+    public static final class Diff
+    {
+
+        private int same;
+        private int changed;
+        private int lost;
+        private int gained;
+        private final List<String> samples = new ArrayList<>();
+
+        /**
+         * @return listings with the same outcome, matched or not
+         */
+        public int getSame()
+        {
+            return same;
+        }
+
+        /**
+         * @return listings matched to another product
+         */
+        public int getChanged()
+        {
+            return changed;
+        }
+
+        /**
+         * @return listings the baseline matched and the engine did not
+         */
+        public int getLost()
+        {
+            return lost;
+        }
+
+        /**
+         * @return listings the engine matched and the baseline did not
+         */
+        public int getGained()
+        {
+            return gained;
+        }
+
+        /**
+         * @return a few of the differing listings
+         */
+        public List<String> getSamples()
+        {
+            return samples;
+        }
+    }
+
+    /**
+     * Creates a comparison over loaded data
+     *
+     * @param c - the code challenge holding the products and listings
+     */
+    public EngineComparison(CodeChallenge c)
+    {
+        codeChallenge = c;
+    }
+
+    /**
+     * @param threads - the threads each engine may use in process()
+     */
+    public void setParallelism(int threads)
+    {
+        parallelism = Math.max(1, threads);
+    }
+
+    /**
+     * Runs an engine once untimed so that class loading and the first
+     * compilations are not charged to the engine measured first
+     *
+     * @param name - the engine name or class name
+     * @throws IllegalArgumentException - if there is no such engine
+     */
+    public void warmUp(String name) throws IllegalArgumentException
+    {
+        AbstractSearchEngine engine = SearchEngines.create(name, codeChallenge);
+        engine.setParallelism(parallelism);
+        engine.process();
+    }
+
+    private static long usedHeap()
+    {
+        Runtime r = Runtime.getRuntime();
+        System.gc();
+        return r.totalMemory() - r.freeMemory();
+    }
+
+    /**
+     * Runs one engine
+     *
+     * @param name - the engine name or class name
+     * @return what the engine did
+     * @throws IllegalArgumentException - if there is no such engine
+     */
+    public Report run(String name) throws IllegalArgumentException
+    {
+        Report report = new Report(name);
+
+        long heapBefore = usedHeap();
+        AbstractSearchEngine engine = SearchEngines.create(name, codeChallenge);
+        engine.setParallelism(parallelism);
+
+        long start = System.nanoTime();
+        engine.buildIndex();
+        report.buildNanos = System.nanoTime() - start;
+        report.heapBytes = Math.max(0, usedHeap() - heapBefore);
+
+        start = System.nanoTime();
+        engine.process();
+        report.processNanos = System.nanoTime() - start;
+        report.matches = engine.getNumberOfMatches();
+        report.misses = engine.getNumberOfMisses();
+
+        engine.getResults().forEach((productName, listings) ->
+        {
+            listings.forEach((l) -> report.productByTitle.put(l.getTitle(), productName));
+        });
+
+        Listing[] listings = codeChallenge.getListingKeys().values().toArray(new Listing[0]);
+        long[] latency = new long[listings.length];
+        for (int i = 0; i < listings.length; i++)
+        {
+            long t = System.nanoTime();
+            engine.match(listings[i]);
+            latency[i] = System.nanoTime() - t;
+        }
+        Arrays.sort(latency);
+        report.latencyNanos = latency;
+
+        return report;
+    }
+
+    /**
+     * Compares the matches of an engine with the baseline listing by listing
+     *
+     * @param baseline - the baseline engine
+     * @param other - the engine compared
+     * @return the difference
+     */
+    public Diff diff(Report baseline, Report other)
+    {
+        Diff diff = new Diff();
+        for (String title : codeChallenge.getListingKeys().keySet())
+        {
+            String a = baseline.getProductName(title);
+            String b = other.getProductName(title);
+            if (a == null ? b == null : a.equals(b))
+            {
+                diff.same++;
+                continue;
+            }
+
+            if (a == null)
+            {
+                diff.gained++;
+            } else if (b == null)
+            {
+                diff.lost++;
+            } else
+            {
+                diff.changed++;
+            }
+            if (diff.samples.size() < DIFF_SAMPLES)
+            {
+                diff.samples.add(a + " -> " + b + " : " + title);
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Compares engines over the bundled data
+     *
+     * @param args - the engine names, the first is the baseline, every engine
+     * on the class path when none are given
+     */
+    public static void main(String[] args)
+    {
+        List<String> names = args.length > 0 ? Arrays.asList(args) : SearchEngines.names();
+
+        CodeChallenge c = null;
+        try
+        {
+            c = new CodeChallenge();
+        } catch (NullPointerException | IllegalStateException | JsonException | IOException ex)
+        {
+            Logger.getLogger(EngineComparison.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        if (c == null)
+        {
+            System.exit(2);
+        }
+
+        EngineComparison comparison = new EngineComparison(c);
+        comparison.setParallelism(Runtime.getRuntime().availableProcessors());
+
+        try
+        {
+            comparison.warmUp(names.get(0));
+        } catch (IllegalArgumentException ex)
+        {
+            Logger.getLogger(EngineComparison.class.getName()).log(Level.SEVERE, ex.getMessage());
+            System.exit(1);
+        }
+
+        Report baseline = null;
+        for (String name : names)
+        {
+            Report r;
+            try
+            {
+                r = comparison.run(name);
+            } catch (IllegalArgumentException ex)
+            {
+                Logger.getLogger(EngineComparison.class.getName()).log(Level.SEVERE, ex.getMessage());
+                continue;
+            }
+
+            System.out.println("***************ENGINE " + r.getName() + "***********************");
+            System.out.println("Index build (ms)           : " + r.getBuildNanos() / 1000000);
+            System.out.println("Index heap (KB, approx)    : " + r.getHeapBytes() / 1024);
+            System.out.println("Process (ms)               : " + r.getProcessNanos() / 1000000);
+            System.out.println("Throughput (listings/s)    : "
+                    + (long) (c.getTotalListings() / Math.max(1e-9, r.getProcessNanos() / 1e9)));
+            System.out.println("match() p50/p90/p99 (us)   : " + r.getLatencyNanos(50) / 1000
+                    + "/" + r.getLatencyNanos(90) / 1000 + "/" + r.getLatencyNanos(99) / 1000);
+            System.out.println("match() max (us)           : " + r.getLatencyNanos(100) / 1000);
+            System.out.println("Total Hits                 : " + r.getMatches());
+            System.out.println("Total Misses               : " + r.getMisses());
+
+            if (baseline == null)
+            {
+                baseline = r;
+            } else
+            {
+                Diff d = comparison.diff(baseline, r);
+                System.out.println("Versus " + baseline.getName());
+                System.out.println("  Same                     : " + d.getSame());
+                System.out.println("  Changed product          : " + d.getChanged());
+                System.out.println("  Lost matches             : " + d.getLost());
+                System.out.println("  Gained matches           : " + d.getGained());
+                d.getSamples().forEach((s) -> System.out.println("  " + s));
+            }
+            System.out.println();
+        }
+    }
+}
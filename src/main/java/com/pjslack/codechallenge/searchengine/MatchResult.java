@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.searchengine;
+
+import java.util.Optional;
+
+/**
+ * The outcome of matching one listing: the product name matched, if any, and
+ * the reason for the outcome.
+ *
+ * Results are immutable. The results for a miss are shared constants and an
+ * engine can keep one result per product, so matching a listing does not have
+ * to allocate a result.
+ *
+ * @author Peter J Slack
+ */
+public final class MatchResult
+{
+
+    /**
+     * Why a listing was or was not matched
+     */
+    public enum Reason
+    {
+        /**
+         * one product was found
+         */
+        MATCHED,
+        /**
+         * no manufacturer, manufacturer alias or product family was found in
+         * the listing
+         */
+        NO_MANUFACTURER,
+        /**
+         * the manufacturer or family was found but none of its models is in
+         * the title
+         */
+        NO_MODEL,
+        /**
+         * more than one model of the manufacturer or family is in the title
+         * and none of them can be chosen
+         */
+        AMBIGUOUS_MODEL
+    }
+
+    /**
+     * no manufacturer, alias or family in the listing
+     */
+    public static final MatchResult NO_MANUFACTURER = new MatchResult(null, -1, Reason.NO_MANUFACTURER);
+
+    /**
+     * no model in the title
+     */
+    public static final MatchResult NO_MODEL = new MatchResult(null, -1, Reason.NO_MODEL);
+
+    /**
+     * several models in the title
+     */
+    public static final MatchResult AMBIGUOUS_MODEL = new MatchResult(null, -1, Reason.AMBIGUOUS_MODEL);
+
+    private final Optional<String> productName;
+    private final int productId;
+    private final Reason reason;
+
+    private MatchResult(String productName, int productId, Reason reason)
+    {
+        this.productName = Optional.ofNullable(productName);
+        this.productId = productId;
+        this.reason = reason;
+    }
+
+    /**
+     * Creates the result of a match, engines should keep one for each product
+     * rather than create one per listing
+     *
+     * @param productName - the product name matched
+     * @return the result
+     * @throws NullPointerException - if the product name is null
+     */
+    public static MatchResult matched(String productName) throws NullPointerException
+    {
+        return matched(productName, -1);
+    }
+
+    /**
+     * Creates the result of a match that also carries the number of the
+     * product in the engine's ResultSink, so the match can be added to the
+     * sink without looking the product name up
+     *
+     * @param productName - the product name matched
+     * @param productId - the number of the product in the result sink, -1 for
+     * none
+     * @return the result
+     * @throws NullPointerException - if the product name is null
+     */
+    public static MatchResult matched(String productName, int productId) throws NullPointerException
+    {
+        if (productName == null)
+        {
+            throw (new NullPointerException("product name cannot be null"));
+        }
+        return new MatchResult(productName, productId, Reason.MATCHED);
+    }
+
+    /**
+     * @return the product name matched or empty if the listing was not matched
+     */
+    public Optional<String> getProductName()
+    {
+        return productName;
+    }
+
+    /**
+     * @return the number of the product in the result sink of the engine that
+     * made the result, -1 if the listing was not matched or there is none
+     */
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    /**
+     * @return the reason for the outcome
+     */
+    public Reason getReason()
+    {
+        return reason;
+    }
+
+    /**
+     * @return true if a product was matched
+     */
+    public boolean isMatched()
+    {
+        return reason == Reason.MATCHED;
+    }
+
+    @Override
+    public String toString()
+    {
+        return productName.orElse(reason.name());
+    }
+}
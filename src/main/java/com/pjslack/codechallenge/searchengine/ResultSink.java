@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.searchengine;
+
+import com.pjslack.codechallenge.Listing;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the listings matched to each product while many threads match.
+ *
+ * The products are numbered once, in product name order, when the sink is
+ * made, and each product has its own append buffer with its own lock so that
+ * threads matching different products never wait for each other. The match and
+ * miss counts are LongAdders.
+ *
+ * Each listing is added with an ordinal, its place in the listings being
+ * matched. The listings of a product are put in ordinal order when they are
+ * read, listings with the same ordinal keep the order they were added in, so
+ * the results are the same whatever the number of threads and the order the
+ * threads ran in.
+ *
+ * @author Peter J Slack
+ */
+public final class ResultSink
+{
+
+    /**
+     * Receives one matched listing
+     */
+    public interface MatchConsumer
+    {
+
+        /**
+         * @param productName - the product matched
+         * @param ordinal - the ordinal the listing was added with
+         * @param listing - the listing
+         */
+        void accept(String productName, long ordinal, Listing listing);
+    }
+
+    /**
+     * The listings matched to one product
+     */
+    private static final class Bucket
+    {
+
+        private long[] ordinals = new long[2];
+        private Listing[] listings = new Listing[2];
+        private int size;
+        private boolean sorted = true;
+
+        synchronized void add(long ordinal, Listing listing)
+        {
+            if (size == listings.length)
+            {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                listings = Arrays.copyOf(listings, size * 2);
+            }
+            if (size > 0 && ordinals[size - 1] > ordinal)
+            {
+                sorted = false;
+            }
+            ordinals[size] = ordinal;
+            listings[size] = listing;
+            size++;
+        }
+
+        synchronized List<Listing> sortedListings()
+        {
+            if (!sorted)
+            {
+                //a stable sort keeps the listings of one ordinal in the order they came
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++)
+                {
+                    order[i] = i;
+                }
+                long[] o = ordinals;
+                Arrays.sort(order, Comparator.comparingLong((i) -> o[i]));
+                long[] newOrdinals = new long[listings.length];
+                Listing[] newListings = new Listing[listings.length];
+                for (int i = 0; i < size; i++)
+                {
+                    newOrdinals[i] = ordinals[order[i]];
+                    newListings[i] = listings[order[i]];
+                }
+                ordinals = newOrdinals;
+                listings = newListings;
+                sorted = true;
+            }
+            return Collections.unmodifiableList(Arrays.asList(listings).subList(0, size));
+        }
+
+        synchronized void clear()
+        {
+            ordinals = new long[2];
+            listings = new Listing[2];
+            size = 0;
+            sorted = true;
+        }
+    }
+
+    private final String[] productNames;
+    private final HashMap<String, Integer> productIds;
+    private final Bucket[] buckets;
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+
+    /**
+     * Creates a sink for a set of products
+     *
+     * @param productNames - the names of the products listings can be matched
+     * to
+     */
+    public ResultSink(Collection<String> productNames)
+    {
+        this.productNames = productNames.toArray(new String[productNames.size()]);
+        Arrays.sort(this.productNames);
+        productIds = new HashMap<>(this.productNames.length * 2);
+        buckets = new Bucket[this.productNames.length];
+        for (int i = 0; i < this.productNames.length; i++)
+        {
+            productIds.put(this.productNames[i], i);
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * @return the number of products
+     */
+    public int getProductCount()
+    {
+        return productNames.length;
+    }
+
+    /**
+     * @param productName - a product name
+     * @return the number of the product, -1 if it is not in the sink
+     */
+    public int getProductId(String productName)
+    {
+        Integer id = productIds.get(productName);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param productId - the number of a product
+     * @return the product name
+     */
+    public String getProductName(int productId)
+    {
+        return productNames[productId];
+    }
+
+    /**
+     * Adds a matched listing, this can be called from many threads at once
+     *
+     * @param productName - the product matched
+     * @param ordinal - the place of the listing in the listings matched
+     * @param listing - the listing
+     * @throws IllegalArgumentException - if the product is not in the sink
+     */
+    public void add(String productName, long ordinal, Listing listing) throws IllegalArgumentException
+    {
+        int id = getProductId(productName);
+        if (id < 0)
+        {
+            throw (new IllegalArgumentException("no product named " + productName));
+        }
+        add(id, ordinal, listing);
+    }
+
+    /**
+     * Adds a matched listing, this can be called from many threads at once
+     *
+     * @param productId - the number of the product matched
+     * @param ordinal - the place of the listing in the listings matched
+     * @param listing - the listing
+     */
+    public void add(int productId, long ordinal, Listing listing)
+    {
+        buckets[productId].add(ordinal, listing);
+        matched.increment();
+    }
+
+    /**
+     * Counts a listing that matched no product, this can be called from many
+     * threads at once
+     */
+    public void miss()
+    {
+        missed.increment();
+    }
+
+    /**
+     * @return the number of listings added
+     */
+    public long getMatched()
+    {
+        return matched.sum();
+    }
+
+    /**
+     * @return the number of listings that matched no product
+     */
+    public long getMissed()
+    {
+        return missed.sum();
+    }
+
+    /**
+     * @param productName - a product name
+     * @return the listings matched to the product in ordinal order, empty if
+     * there are none or the product is not in the sink
+     */
+    public List<Listing> getListings(String productName)
+    {
+        int id = getProductId(productName);
+        return id < 0 ? Collections.emptyList() : buckets[id].sortedListings();
+    }
+
+    /**
+     * Gives each product with matched listings its listings in ordinal order,
+     * in product name order
+     *
+     * @param action - given each product name and its listings
+     */
+    public void forEach(BiConsumer<String, List<Listing>> action)
+    {
+        for (int i = 0; i < buckets.length; i++)
+        {
+            List<Listing> listings = buckets[i].sortedListings();
+            if (!listings.isEmpty())
+            {
+                action.accept(productNames[i], listings);
+            }
+        }
+    }
+
+    /**
+     * Gives every matched listing as it was added. The action may add to the
+     * sink, the listings it adds are not given to it
+     *
+     * @param action - given each product name, ordinal and listing
+     */
+    public void forEachMatch(MatchConsumer action)
+    {
+        for (int i = 0; i < buckets.length; i++)
+        {
+            Bucket b = buckets[i];
+            long[] ordinals;
+            Listing[] listings;
+            int size;
+            synchronized (b)
+            {
+                ordinals = b.ordinals;
+                listings = b.listings;
+                size = b.size;
+            }
+            for (int k = 0; k < size; k++)
+            {
+                action.accept(productNames[i], ordinals[k], listings[k]);
+            }
+        }
+    }
+
+    /**
+     * @return a new map of each product name with matched listings to its
+     * listings in ordinal order
+     */
+    public HashMap<String, ArrayList<Listing>> toResults()
+    {
+        HashMap<String, ArrayList<Listing>> results = new HashMap<>();
+        forEach((productName, listings) -> results.put(productName, new ArrayList<>(listings)));
+        return results;
+    }
+
+    /**
+     * Drops every listing and count
+     */
+    public void clear()
+    {
+        for (Bucket b : buckets)
+        {
+            b.clear();
+        }
+        matched.reset();
+        missed.reset();
+    }
+}
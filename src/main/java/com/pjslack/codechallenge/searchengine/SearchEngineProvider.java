@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.searchengine;
+
+import com.pjslack.codechallenge.CodeChallenge;
+
+/**
+ * Makes a search engine, implementations are found with java.util.ServiceLoader
+ * so an engine in any jar on the class path can be chosen by name. A provider
+ * is listed in META-INF/services/com.pjslack.codechallenge.searchengine.SearchEngineProvider
+ * and must have a public no argument constructor.
+ *
+ * @author Peter J Slack
+ */
+public interface SearchEngineProvider
+{
+
+    /**
+     * @return the short name the engine is chosen by, unique among providers
+     */
+    String getName();
+
+    /**
+     * Makes an engine over the loaded data
+     *
+     * @param c - the code challenge holding the products and listings
+     * @return a new engine
+     */
+    AbstractSearchEngine create(CodeChallenge c);
+}
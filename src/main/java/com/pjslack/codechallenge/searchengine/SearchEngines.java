@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.searchengine;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Finds the search engines on the class path and makes them by name.
+ *
+ * An engine is named either by the name of its SearchEngineProvider or by the
+ * fully qualified name of an AbstractSearchEngine subclass with a public
+ * constructor taking the CodeChallenge.
+ *
+ * @author Peter J Slack
+ */
+public final class SearchEngines
+{
+
+    /**
+     * the engine used when none is chosen
+     */
+    public static final String DEFAULT_ENGINE = "slacker";
+
+    private SearchEngines()
+    {
+    }
+
+    /**
+     * @return every provider on the class path in class path order
+     */
+    public static List<SearchEngineProvider> providers()
+    {
+        List<SearchEngineProvider> providers = new ArrayList<>();
+        ServiceLoader.load(SearchEngineProvider.class).forEach(providers::add);
+        return providers;
+    }
+
+    /**
+     * Makes an engine by provider name or class name
+     *
+     * @param name - the provider name, ignoring case, or engine class name
+     * @param c - the code challenge holding the products and listings
+     * @return a new engine
+     * @throws IllegalArgumentException - if there is no such engine or it
+     * cannot be made
+     */
+    public static AbstractSearchEngine create(String name, CodeChallenge c) throws IllegalArgumentException
+    {
+        for (SearchEngineProvider p : providers())
+        {
+            if (p.getName().equalsIgnoreCase(name))
+            {
+                return p.create(c);
+            }
+        }
+
+        Class<?> type;
+        try
+        {
+            type = Class.forName(name);
+        } catch (ClassNotFoundException ex)
+        {
+            throw (new IllegalArgumentException("no search engine named " + name + ", known engines are " + names()));
+        }
+        if (!AbstractSearchEngine.class.isAssignableFrom(type))
+        {
+            throw (new IllegalArgumentException(name + " is not a search engine"));
+        }
+        try
+        {
+            Constructor<?> constructor = type.getConstructor(CodeChallenge.class);
+            return (AbstractSearchEngine) constructor.newInstance(c);
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException ex)
+        {
+            throw (new IllegalArgumentException("cannot make search engine " + name, ex));
+        }
+    }
+
+    /**
+     * @return the names of the providers on the class path
+     */
+    public static List<String> names()
+    {
+        List<String> names = new ArrayList<>();
+        providers().forEach((p) -> names.add(p.getName()));
+        return names;
+    }
+}
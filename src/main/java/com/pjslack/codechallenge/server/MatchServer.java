@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2016 Peter J Slack
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pjslack.codechallenge.server;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.JsonLinesReader;
+import com.pjslack.codechallenge.Listing;
+import com.pjslack.codechallenge.impl.IndexSnapshot;
+import com.pjslack.codechallenge.impl.SlackerTestMethod;
+import com.pjslack.codechallenge.impl.TitleMatchCache;
+import com.pjslack.codechallenge.searchengine.AbstractSearchEngine;
+import com.pjslack.codechallenge.searchengine.MatchResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.json.Json;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Serves matches from a SlackerTestMethod index that is built, or read from
+ * the index snapshot, once when the server starts.
+ *
+ * <pre>
+ * POST /match   body: one listing or JSON lines of listings
+ *               reply: one JSON line per listing in the same order
+ *               {"title":"...","product_name":"...","reason":"MATCHED"} with a
+ *               null product_name and the reason when nothing matched, or
+ *               {"error":"..."} for a listing without a title or manufacturer
+ * GET  /health  reply: {"status":"ok","requests":n,"listings":n,"matches":n}
+ * </pre>
+ *
+ * The index is not changed after it is built so requests are matched
+ * concurrently on a fixed pool of threads without any locking.
+ *
+ * @author Peter J Slack
+ */
+public class MatchServer
+{
+
+    /**
+     * the port used when none is given
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * the path listings are posted to
+     */
+    public static final String MATCH_PATH = "/match";
+
+    /**
+     * the path of the health check
+     */
+    public static final String HEALTH_PATH = "/health";
+
+    /**
+     * the reply key of the match reason
+     */
+    public static final String REASON_KEY = "reason";
+
+    private static final String JSON_LINES = "application/x-ndjson; charset=utf-8";
+
+    private static final JsonBuilderFactory BUILDER_FACTORY = Json.createBuilderFactory(null);
+
+    private final AbstractSearchEngine engine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder listings = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+
+    /**
+     * Creates a server over an engine with a built index, the server is not
+     * started
+     *
+     * @param engine - the engine, its index must be built or read
+     * @param address - the address to listen on
+     * @param threads - the number of request threads
+     * @throws IOException - if the address cannot be bound
+     */
+    public MatchServer(AbstractSearchEngine engine, InetSocketAddress address, int threads) throws IOException
+    {
+        this.engine = engine;
+        executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext(MATCH_PATH, this::handleMatch);
+        server.createContext(HEALTH_PATH, this::handleHealth);
+    }
+
+    /**
+     * Builds an engine with its index ready for matching, the index is read
+     * from the snapshot when one was made from the same product data, the
+     * stream is read to the end and closed
+     *
+     * @param productData - the product definitions
+     * @param snapshotFile - the index snapshot, or null to always build
+     * @return the engine
+     * @throws IOException - if the products cannot be read
+     */
+    public static SlackerTestMethod buildEngine(InputStream productData, File snapshotFile) throws IOException
+    {
+        DigestInputStream products = new DigestInputStream(productData, IndexSnapshot.newCatalogDigest());
+        CodeChallenge c = new CodeChallenge(new ByteArrayInputStream(new byte[0]), products);
+        SlackerTestMethod engine = new SlackerTestMethod(c);
+        byte[] catalogHash = products.getMessageDigest().digest();
+
+        boolean loaded = false;
+        if (snapshotFile != null)
+        {
+            try
+            {
+                loaded = IndexSnapshot.load(snapshotFile, catalogHash, engine);
+            } catch (IOException | RuntimeException ex)
+            {
+                Logger.getLogger(MatchServer.class.getName()).log(Level.WARNING, "Index snapshot could not be read, building the index", ex);
+            }
+        }
+
+        engine.buildIndex();
+
+        if (snapshotFile != null && !loaded)
+        {
+            try
+            {
+                IndexSnapshot.write(snapshotFile, catalogHash, engine);
+            } catch (IOException ex)
+            {
+                Logger.getLogger(MatchServer.class.getName()).log(Level.WARNING, "Index snapshot could not be written", ex);
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Starts serving requests
+     */
+    public void start()
+    {
+        server.start();
+    }
+
+    /**
+     * Stops the server, requests in progress are given a few seconds to finish
+     */
+    public void stop()
+    {
+        server.stop(2);
+        executor.shutdown();
+        try
+        {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the address the server listens on
+     */
+    public InetSocketAddress getAddress()
+    {
+        return server.getAddress();
+    }
+
+    private void handleMatch(HttpExchange exchange) throws IOException
+    {
+        requests.increment();
+        try
+        {
+            if (!"POST".equals(exchange.getRequestMethod()))
+            {
+                sendError(exchange, 405, "use POST");
+                return;
+            }
+
+            //the whole reply is built before it is sent so that a listing that
+            //cannot be parsed gives a clean 400
+            StringBuilder reply = new StringBuilder();
+            try (JsonLinesReader reader = new JsonLinesReader(exchange.getRequestBody()))
+            {
+                while (reader.hasNext())
+                {
+                    reply.append(matchOne(reader.next()).toString()).append('\n');
+                }
+            } catch (JsonException ex)
+            {
+                sendError(exchange, 400, String.valueOf(ex.getMessage()));
+                return;
+            }
+
+            send(exchange, 200, reply);
+        } finally
+        {
+            exchange.close();
+        }
+    }
+
+    private JsonObject matchOne(JsonObject j)
+    {
+        String title = j.getString(CodeChallenge.PRODUCT_LISTING_TITLE_KEY, null);
+        String mfg = j.getString(CodeChallenge.PRODUCT_MANUFACTURER_KEY, null);
+        if (title == null || mfg == null)
+        {
+            return BUILDER_FACTORY.createObjectBuilder().add("error", "listing needs a title and a manufacturer").build();
+        }
+
+        listings.increment();
+        MatchResult result = engine.match(new Listing(title, mfg, j));
+
+        JsonObjectBuilder b = BUILDER_FACTORY.createObjectBuilder().add(CodeChallenge.PRODUCT_LISTING_TITLE_KEY, title);
+        if (result.isMatched())
+        {
+            matches.increment();
+            b.add(CodeChallenge.PRODUCT_NAME_KEY, result.getProductName().get());
+        } else
+        {
+            b.addNull(CodeChallenge.PRODUCT_NAME_KEY);
+        }
+        b.add(REASON_KEY, result.getReason().name());
+        return b.build();
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            JsonObjectBuilder health = BUILDER_FACTORY.createObjectBuilder()
+                    .add("status", "ok")
+                    .add("requests", requests.sum())
+                    .add("listings", listings.sum())
+                    .add("matches", matches.sum());
+            TitleMatchCache cache = engine instanceof SlackerTestMethod ? ((SlackerTestMethod) engine).getTitleCache() : null;
+            if (cache != null)
+            {
+                health.add("titleCacheHitRate", cache.getHitRate());
+            }
+            send(exchange, 200, health.build().toString() + "\n");
+        } finally
+        {
+            exchange.close();
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException
+    {
+        send(exchange, status, BUILDER_FACTORY.createObjectBuilder().add("error", message).build().toString() + "\n");
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence body) throws IOException
+    {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_LINES);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0)
+        {
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    /**
+     * Runs the match server on the loopback address until the process is
+     * stopped
+     *
+     * @param args - optionally the port and the products file, the bundled
+     * products are used when no file is given
+     */
+    public static void main(String[] args)
+    {
+        if (args.length > 2)
+        {
+            System.err.println("usage: MatchServer [port] [products file]");
+            System.exit(1);
+        }
+
+        try
+        {
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            InputStream products = args.length > 1 ? new FileInputStream(args[1])
+                    : CodeChallenge.class.getResourceAsStream(CodeChallenge.PRODUCTS_RESOURCE_PATH);
+
+            long startTime = System.currentTimeMillis();
+            SlackerTestMethod engine = buildEngine(products,
+                    new File(System.getProperty("user.dir"), CodeChallenge.INDEX_SNAPSHOT_FILE_NAME));
+            long difference = System.currentTimeMillis() - startTime;
+            //titles repeat across requests so their model searches are kept
+            engine.setTitleCache(new TitleMatchCache(TitleMatchCache.DEFAULT_CAPACITY));
+
+            int threads = Runtime.getRuntime().availableProcessors();
+            MatchServer server = new MatchServer(engine, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+
+            System.out.println("Index ready (ms)           : " + difference);
+            System.out.println("Listening on               : http://" + server.getAddress().getHostString()
+                    + ":" + server.getAddress().getPort() + MATCH_PATH);
+            System.out.println("Threads                    : " + threads);
+        } catch (IllegalArgumentException | IOException | JsonException ex)
+        {
+            Logger.getLogger(MatchServer.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(2);
+        }
+    }
+}
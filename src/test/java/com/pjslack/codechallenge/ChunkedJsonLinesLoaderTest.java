@@ -0,0 +1,139 @@
+package com.pjslack.codechallenge;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for reading JSON lines files in chunks on several threads
+ */
+public class ChunkedJsonLinesLoaderTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ChunkedJsonLinesLoaderTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ChunkedJsonLinesLoaderTest.class );
+    }
+
+    private static File copyResource(String resource) throws IOException
+    {
+        File f = File.createTempFile("chunked", ".txt");
+        f.deleteOnExit();
+        try (InputStream in = CodeChallenge.class.getResourceAsStream(resource))
+        {
+            Files.copy(in, f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return f;
+    }
+
+    private static File write(String text) throws IOException
+    {
+        File f = File.createTempFile("chunked", ".txt");
+        f.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(f))
+        {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return f;
+    }
+
+    /**
+     * small chunks read on several threads give the records of the stream in
+     * the same order, and the bytes of the file to a digest
+     */
+    public void testSameRecordsInOrder() throws IOException, NoSuchAlgorithmException
+    {
+        File f = copyResource(CodeChallenge.LISTINGS_RESOURCE_PATH);
+
+        List<JsonObject> expected = new ArrayList<>();
+        try (JsonLinesReader reader = new JsonLinesReader(Files.newInputStream(f.toPath())))
+        {
+            reader.forEachRemaining(expected::add);
+        }
+
+        ChunkedJsonLinesLoader loader = new ChunkedJsonLinesLoader(4);
+        loader.setChunkSize(10000);
+        List<JsonObject> actual = new ArrayList<>();
+        assertEquals(expected.size(), loader.load(f, actual::add));
+        assertEquals(expected, actual);
+
+        //the digest sees the file in order while the chunks are parsed
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        loader.load(f, ChunkedJsonLinesLoader.JSON_LINES, (j) ->
+        {
+        }, digest);
+        assertTrue(Arrays.equals(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(f.toPath())), digest.digest()));
+    }
+
+    /**
+     * chunks end on line feeds, also with blank lines, multi-byte characters
+     * and no line feed at the end
+     */
+    public void testLineBoundaries() throws IOException
+    {
+        File f = write("{\"title\":\"café été\"}\n\n{\"title\":\"b\"}\r\n{\"title\":\"c\"}");
+        ChunkedJsonLinesLoader loader = new ChunkedJsonLinesLoader(3);
+        loader.setChunkSize(1);
+        List<JsonObject> records = new ArrayList<>();
+        assertEquals(3, loader.load(f, records::add));
+        assertEquals("café été", records.get(0).getString("title"));
+        assertEquals("c", records.get(2).getString("title"));
+
+        assertEquals(0, loader.load(write(""), records::add));
+
+        try
+        {
+            loader.load(write("{\"title\":\"a\"}\n{\"title\":\n"), records::add);
+            fail("malformed line was read");
+        } catch (JsonException ex)
+        {
+            //expected
+        }
+    }
+
+    /**
+     * loading the files in chunks keeps the same listings, duplicates and
+     * products as loading the streams
+     */
+    public void testCodeChallengeFromFiles() throws IOException
+    {
+        CodeChallenge streamed = new CodeChallenge();
+        CodeChallenge chunked = new CodeChallenge(copyResource(CodeChallenge.LISTINGS_RESOURCE_PATH),
+                copyResource(CodeChallenge.PRODUCTS_RESOURCE_PATH), 4);
+
+        assertEquals(streamed.getTotalListings(), chunked.getTotalListings());
+        assertEquals(streamed.getListingKeys().keySet(), chunked.getListingKeys().keySet());
+        assertEquals(streamed.getProductKeys().keySet(), chunked.getProductKeys().keySet());
+        assertEquals(streamed.getDuplicateListings().keySet(), chunked.getDuplicateListings().keySet());
+        streamed.getListingKeys().forEach((title, l) ->
+                assertEquals(l.getJson(), chunked.getListingKeys().get(title).getJson()));
+    }
+}
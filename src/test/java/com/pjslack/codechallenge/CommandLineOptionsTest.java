@@ -0,0 +1,136 @@
+package com.pjslack.codechallenge;
+
+import com.pjslack.codechallenge.searchengine.AbstractSearchEngine;
+import com.pjslack.codechallenge.searchengine.SearchEngines;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the command line options
+ */
+public class CommandLineOptionsTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public CommandLineOptionsTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( CommandLineOptionsTest.class );
+    }
+
+    /**
+     * no options gives the bundled data and the defaults, both option forms
+     * are read
+     */
+    public void testParse()
+    {
+        CommandLineOptions o = CommandLineOptions.parse(new String[0]);
+        assertNull(o.getListings());
+        assertNull(o.getProducts());
+        assertEquals(SearchEngines.DEFAULT_ENGINE, o.getEngine());
+        assertEquals(AbstractSearchEngine.DEFAULT_BATCH_SIZE, o.getBatchSize());
+        assertNull(o.getIndex());
+        assertFalse(o.isStandardOutput());
+        assertEquals(new File("match.idx"), CommandLineOptions.parse(new String[]{"--index", "match.idx"}).getIndex());
+
+        o = CommandLineOptions.parse(new String[]
+        {
+            "-l", "listings.gz", "--products=products.txt", "-o", "-", "--threads", "4",
+            "--batch-size=32", "--engine", "slacker-leftmost", "--no-index", "--sorted"
+        });
+        assertEquals("listings.gz", o.getListings());
+        assertEquals("products.txt", o.getProducts());
+        assertTrue(o.isStandardOutput());
+        assertEquals(4, o.getThreads());
+        assertEquals(32, o.getBatchSize());
+        assertEquals("slacker-leftmost", o.getEngine());
+        assertNull(o.getIndex());
+        assertTrue(o.isSorted());
+    }
+
+    /**
+     * bad command lines are refused with a message
+     */
+    public void testRefused()
+    {
+        String[][] bad =
+        {
+            {"--threads", "0"}, {"--batch-size", "many"}, {"--output"}, {"--bogus", "1"},
+            {"--engine", "no-such-engine"}, {"-l", "-", "-p", "-"}
+        };
+        for (String[] args : bad)
+        {
+            try
+            {
+                CommandLineOptions.parse(args);
+                fail("accepted " + String.join(" ", args));
+            } catch (IllegalArgumentException ex)
+            {
+                assertNotNull(ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * gzip input is decompressed and plain input is read as it is
+     *
+     * @throws IOException - if the test files cannot be written
+     */
+    public void testOpenInput() throws IOException
+    {
+        byte[] line = "{\"title\":\"a\"}\n".getBytes(StandardCharsets.UTF_8);
+        File plain = File.createTempFile("codechallenge", ".txt");
+        File zipped = File.createTempFile("codechallenge", ".gz");
+        try
+        {
+            try (OutputStream out = new FileOutputStream(plain))
+            {
+                out.write(line);
+            }
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(zipped)))
+            {
+                out.write(line);
+            }
+            assertEquals(new String(line, StandardCharsets.UTF_8), read(plain));
+            assertEquals(new String(line, StandardCharsets.UTF_8), read(zipped));
+        } finally
+        {
+            plain.delete();
+            zipped.delete();
+        }
+    }
+
+    private static String read(File f) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = CommandLineOptions.openInput(f.getPath(), null))
+        {
+            byte[] buffer = new byte[256];
+            for (int n; (n = in.read(buffer)) > 0;)
+            {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
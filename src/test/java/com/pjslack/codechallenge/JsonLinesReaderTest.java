@@ -0,0 +1,140 @@
+package com.pjslack.codechallenge;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the streaming JSON lines reader
+ */
+public class JsonLinesReaderTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public JsonLinesReaderTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( JsonLinesReaderTest.class );
+    }
+
+    private static JsonLinesReader reader(String text)
+    {
+        return new JsonLinesReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * records come back in order, blank lines are skipped and the input is
+     * decoded as UTF-8
+     */
+    public void testReadsRecords()
+    {
+        try (JsonLinesReader r = reader("{\"title\":\"Appareil photo numérique\",\"price\":1.50}\n\n"
+                + "{\"title\":\"b\",\"tags\":[1,true,null,{\"x\":\"y\"}]}\n"))
+        {
+            assertTrue(r.hasNext());
+            JsonObject first = r.next();
+            assertEquals("Appareil photo numérique", first.getString("title"));
+            assertEquals("1.50", first.getJsonNumber("price").toString());
+            JsonObject second = r.next();
+            assertEquals("[1,true,null,{\"x\":\"y\"}]", second.getJsonArray("tags").toString());
+            assertFalse(r.hasNext());
+            assertEquals(2, r.getRecordCount());
+        }
+    }
+
+    /**
+     * an empty input has no records
+     */
+    public void testEmptyInput()
+    {
+        try (JsonLinesReader r = reader(""))
+        {
+            assertFalse(r.hasNext());
+        }
+    }
+
+    /**
+     * a line that is not an object is an error
+     */
+    public void testRejectsNonObjectLine()
+    {
+        try (JsonLinesReader r = reader("{\"a\":\"b\"}\n[1,2]\n"))
+        {
+            r.next();
+            r.next();
+            fail("expected a JsonException");
+        } catch (JsonException ex)
+        {
+        }
+    }
+
+    /**
+     * a line holding a second value after its record is an error, a nested
+     * object and a Windows line ending are not
+     */
+    public void testRejectsSecondValueOnALine()
+    {
+        try (JsonLinesReader r = reader("{\"a\":{\"b\":[1]}}\r\n \t\r\n{\"c\":\"}{\"}\r\n"))
+        {
+            assertEquals("{\"b\":[1]}", r.next().getJsonObject("a").toString());
+            assertEquals("}{", r.next().getString("c"));
+            assertFalse(r.hasNext());
+        }
+
+        try (JsonLinesReader r = reader("{\"a\":\"b\"},{\"a\":\"c\"}\n"))
+        {
+            r.next();
+            r.next();
+            fail("expected a JsonException");
+        } catch (JsonException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("line 1"));
+        }
+    }
+
+    /**
+     * only spaces, tabs and line ends are whitespace between tokens, another
+     * control character is refused as a per line reader would refuse it
+     */
+    public void testRejectsControlCharacters()
+    {
+        for (String bad : new String[]
+        {
+            "{\"a\":\u0000\"b\"}\n", "{\"a\":\"b\"}\f\n", "\u0001\n{\"a\":\"b\"}\n"
+        })
+        {
+            try (JsonLinesReader r = reader(bad))
+            {
+                while (r.hasNext())
+                {
+                    r.next();
+                }
+                fail("read " + bad);
+            } catch (JsonException ex)
+            {
+                //expected
+            }
+        }
+
+        try (JsonLinesReader r = reader("{\"a\":\"b\"}\r{\"a\":\t\"c\"}"))
+        {
+            r.next();
+            assertEquals("c", r.next().getString("a"));
+        }
+    }
+}
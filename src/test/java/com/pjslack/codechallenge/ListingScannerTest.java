@@ -0,0 +1,235 @@
+package com.pjslack.codechallenge;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for scanning listings without parsing them
+ */
+public class ListingScannerTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ListingScannerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ListingScannerTest.class );
+    }
+
+    private static List<ListingScanner.Line> scan(String text)
+    {
+        List<ListingScanner.Line> lines = new ArrayList<>();
+        new ListingScanner().scan(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), 0, lines::add);
+        return lines;
+    }
+
+    /**
+     * the title and manufacturer of every bundled listing are the ones the
+     * JSON parser finds and the line parses to the same object, and a line is
+     * refused exactly when the parser refuses it
+     */
+    public void testAgreesWithParser() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = CodeChallenge.class.getResourceAsStream(CodeChallenge.LISTINGS_RESOURCE_PATH))
+        {
+            byte[] b = new byte[8192];
+            int n;
+            while ((n = in.read(b)) != -1)
+            {
+                bytes.write(b, 0, n);
+            }
+        }
+
+        List<JsonObject> expected = new ArrayList<>();
+        try (JsonLinesReader reader = new JsonLinesReader(new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            reader.forEachRemaining(expected::add);
+        }
+        List<ListingScanner.Line> lines = new ArrayList<>();
+        assertEquals(expected.size(), new ListingScanner().scan(ByteBuffer.wrap(bytes.toByteArray()), 0, lines::add));
+
+        for (int i = 0; i < expected.size(); i++)
+        {
+            JsonObject j = expected.get(i);
+            ListingScanner.Line line = lines.get(i);
+            assertEquals(j.getString(CodeChallenge.PRODUCT_LISTING_TITLE_KEY, null), line.getTitle());
+            assertEquals(j.getString(CodeChallenge.PRODUCT_MANUFACTURER_KEY, null), line.getManufacturer());
+            assertEquals(j, line.toListing().getJson());
+        }
+
+        //a line is refused by both or by neither, whatever the values skipped
+        String[] malformed =
+        {
+            "12abc", "[}", "{\"x\":[}}", "01", "-", "1.", "1e", "tru", "nul", "[1,]", "{\"a\":1,}",
+            "{\"a\" 1}", "{1:2}", "\"a\\x\"", "\"\\u12G4\"", "\"\t\"", "[1 2]", "+1", ".5"
+        };
+        String[] valid =
+        {
+            "-0", "1.5E-2", "true", "false", "null", "[[],{}]", "[{\"a\":[true,null,\"\\u00e9\"]}]"
+        };
+        for (String value : malformed)
+        {
+            assertFalse(value, parses(value));
+            assertFalse(value, scans(value));
+        }
+        for (String value : valid)
+        {
+            assertTrue(value, parses(value));
+            assertTrue(value, scans(value));
+        }
+    }
+
+    private static String listingWithPrice(String value)
+    {
+        return "{\"title\":\"Canon X\",\"manufacturer\":\"Canon\",\"price\":" + value + "}\n";
+    }
+
+    private static boolean parses(String value)
+    {
+        byte[] given = listingWithPrice(value).getBytes(StandardCharsets.UTF_8);
+        try (JsonLinesReader reader = new JsonLinesReader(new ByteArrayInputStream(given)))
+        {
+            reader.forEachRemaining((j) ->
+            {
+            });
+            return true;
+        } catch (JsonException ex)
+        {
+            return false;
+        }
+    }
+
+    private static boolean scans(String value)
+    {
+        try
+        {
+            scan(listingWithPrice(value));
+            return true;
+        } catch (JsonException ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * the same bytes are read as the same number of lines, or refused, by the
+     * scanner and the reader
+     */
+    public void testSameFramingAsReader()
+    {
+        String a = "{\"title\":\"a\",\"manufacturer\":\"b\"}";
+        String[] inputs =
+        {
+            a + "\r" + a + "\n", a + "\r\n\r\n" + a, " \t\n" + a + "\t \n", a + "\f\n", "\f" + a,
+            "{\"title\":\"a\",\f\"manufacturer\":\"b\"}", "{\"title\":\"a\",\u0000\"manufacturer\":\"b\"}",
+            "{\"title\":\"a\r\"}", a + "\n\f\n" + a, a + "," + a
+        };
+        for (String input : inputs)
+        {
+            long read;
+            try (JsonLinesReader reader = new JsonLinesReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))))
+            {
+                reader.forEachRemaining((j) ->
+                {
+                });
+                read = reader.getRecordCount();
+            } catch (JsonException ex)
+            {
+                read = -1;
+            }
+            long scanned;
+            try
+            {
+                scanned = scan(input).size();
+            } catch (JsonException ex)
+            {
+                scanned = -1;
+            }
+            assertEquals(input, read, scanned);
+        }
+        assertEquals(2, scan(inputs[0]).size());
+    }
+
+    /**
+     * escapes are decoded, other values are stepped over and a field that is
+     * not a string is missing
+     */
+    public void testFields()
+    {
+        List<ListingScanner.Line> lines = scan(
+                "  {\"price\":{\"a\":[1,\"}\"]},\"title\":\"Caf\\u00e9 \\\"10\\\" \\\\ été\", \"manufacturer\" : \"Nikon\"}\r\n"
+                + "\n"
+                + "{\"title\":12,\"manufacturer\":null,\"x\":true}\n"
+                + "{}");
+        assertEquals(3, lines.size());
+        assertEquals("Café \"10\" \\ été", lines.get(0).getTitle());
+        assertEquals("Nikon", lines.get(0).getManufacturer());
+        assertEquals(2, lines.get(0).getOffset());
+        assertNull(lines.get(1).getTitle());
+        assertNull(lines.get(1).getManufacturer());
+        assertEquals("{}", lines.get(2).toString());
+
+        for (String bad : Arrays.asList("[1]", "{\"title\":\"a}", "{\"title\" \"a\"}", "{\"title\":\"a\"} x", "{\"title\":}"))
+        {
+            try
+            {
+                scan(bad);
+                fail("scanned " + bad);
+            } catch (JsonException ex)
+            {
+                //expected
+            }
+        }
+    }
+
+    /**
+     * a scanned listing is written to the results byte for byte
+     */
+    public void testWrittenAsGiven() throws IOException
+    {
+        String given = "{ \"title\" : \"Nikon S6100 Caméra\", \"manufacturer\":\"Nikon\",\"price\":\"149.00\" }";
+        Listing scanned = scan("\n" + given + "\n").get(0).toListing();
+        Listing parsed = Listing.fromJson(Json.createReader(new StringReader(
+                "{\"title\":\"Nikon S6100\",\"manufacturer\":\"Nikon\"}")).readObject());
+        assertTrue(scanned.hasRawJson());
+        assertFalse(parsed.hasRawJson());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ResultWriter writer = new ResultWriter(out))
+        {
+            writer.write("Nikon \"S6100\"", Arrays.asList(scanned, parsed));
+        }
+        String line = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(line.contains(given));
+        JsonObject j = Json.createReader(new StringReader(line)).readObject();
+        assertEquals("Nikon \"S6100\"", j.getString(ResultWriter.PRODUCT_NAME_KEY));
+        assertEquals(scanned.getJson(), j.getJsonArray(ResultWriter.LISTINGS_KEY).getJsonObject(0));
+        assertEquals(parsed.getJson(), j.getJsonArray(ResultWriter.LISTINGS_KEY).getJsonObject(1));
+    }
+}
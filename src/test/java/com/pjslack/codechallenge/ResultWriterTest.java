@@ -0,0 +1,79 @@
+package com.pjslack.codechallenge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import javax.json.Json;
+import javax.json.JsonObject;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the streaming result writer
+ */
+public class ResultWriterTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ResultWriterTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ResultWriterTest.class );
+    }
+
+    private static Listing listing(String line)
+    {
+        return Listing.fromJson(Json.createReader(new StringReader(line)).readObject());
+    }
+
+    /**
+     * each line is the same as the JsonObject the results used to be built
+     * into, in product name order when sorted, and in UTF-8
+     *
+     * @throws IOException - write error
+     */
+    public void testWriteAllSorted() throws IOException
+    {
+        Listing a = listing("{\"title\":\"Nikon S6100 Caméra\",\"manufacturer\":\"Nikon\",\"currency\":\"EUR\",\"price\":\"149.00\"}");
+        Listing b = listing("{\"title\":\"Nikon S6100\",\"manufacturer\":\"Nikon\",\"price\":99.5}");
+        Listing c = listing("{\"title\":\"Sony DSC-W310\",\"manufacturer\":\"Sony\",\"currency\":\"CAD\",\"price\":\"89.99\"}");
+
+        HashMap<String, ArrayList<Listing>> results = new HashMap<>();
+        results.put("Sony_Cyber-shot_DSC-W310", new ArrayList<>(Arrays.asList(c)));
+        results.put("Nikon-s6100", new ArrayList<>(Arrays.asList(a, b)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ResultWriter w = new ResultWriter(out))
+        {
+            w.writeAll(results, true);
+            assertEquals(2, w.getLinesWritten());
+        }
+
+        JsonObject nikon = Json.createObjectBuilder()
+                .add("product_name", "Nikon-s6100")
+                .add("listings", Json.createArrayBuilder().add(a.getJson()).add(b.getJson()))
+                .build();
+        JsonObject sony = Json.createObjectBuilder()
+                .add("product_name", "Sony_Cyber-shot_DSC-W310")
+                .add("listings", Json.createArrayBuilder().add(c.getJson()))
+                .build();
+
+        assertEquals(nikon.toString() + "\n" + sony.toString() + "\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
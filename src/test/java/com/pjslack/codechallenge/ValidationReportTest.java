@@ -0,0 +1,82 @@
+package com.pjslack.codechallenge;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the validation report
+ */
+public class ValidationReportTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ValidationReportTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ValidationReportTest.class );
+    }
+
+    private static InputStream lines(String... lines)
+    {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * every bad record is counted in its category and only the first few are
+     * kept
+     *
+     * @throws IOException - if the test data cannot be read
+     */
+    public void testCountsBadRecords() throws IOException
+    {
+        StringBuilder listings = new StringBuilder();
+        for (int i = 0; i < 20; i++)
+        {
+            listings.append("{\"title\":\"Camera ").append(i).append("\"}\n");
+        }
+        listings.append("{\"title\":\"Nikon D90\",\"manufacturer\":\"Nikon\"}\n");
+        listings.append("{\"title\":\"Nikon D90\",\"manufacturer\":\"Nikon\"}\n");
+        listings.append("{\"manufacturer\":\"Nikon\"}\n");
+
+        CodeChallenge c = new CodeChallenge(
+                new ByteArrayInputStream(listings.toString().getBytes(StandardCharsets.UTF_8)),
+                lines("{\"product_name\":\"Nikon_D90\",\"manufacturer\":\"Nikon\",\"model\":\"D90\"}",
+                        "{\"product_name\":\"Nikon_D90\",\"manufacturer\":\"Nikon\",\"model\":\"D90\"}",
+                        "{\"product_name\":\"Nikon_D80\",\"manufacturer\":\"Nikon\"}",
+                        "{\"manufacturer\":\"Nikon\",\"model\":\"D70\"}"));
+
+        ValidationReport r = c.getValidationReport();
+        assertEquals(20, r.getCount(ValidationReport.Issue.LISTING_MISSING_MANUFACTURER));
+        assertEquals(ValidationReport.DEFAULT_SAMPLES, r.getSamples(ValidationReport.Issue.LISTING_MISSING_MANUFACTURER).size());
+        assertTrue(r.getSamples(ValidationReport.Issue.LISTING_MISSING_MANUFACTURER).get(0).contains("Camera 0"));
+        assertEquals(1, r.getCount(ValidationReport.Issue.LISTING_MISSING_TITLE));
+        assertEquals(1, r.getCount(ValidationReport.Issue.LISTING_DUPLICATE_TITLE));
+        assertEquals(1, r.getCount(ValidationReport.Issue.PRODUCT_DUPLICATE_NAME));
+        assertEquals("[Nikon_D90]", r.getSamples(ValidationReport.Issue.PRODUCT_DUPLICATE_NAME).toString());
+        assertEquals(1, r.getCount(ValidationReport.Issue.PRODUCT_MISSING_MODEL));
+        assertEquals(1, r.getCount(ValidationReport.Issue.PRODUCT_MISSING_NAME));
+        assertEquals(0, r.getCount(ValidationReport.Issue.PRODUCT_MISSING_MANUFACTURER));
+        assertEquals(25, r.getTotal());
+        assertEquals(3, c.getTotalInvalidProdctListings());
+
+        assertEquals(6, r.getSummary().size());
+        assertEquals(20, r.toJson().getJsonObject(ValidationReport.Issue.LISTING_MISSING_MANUFACTURER.name()).getInt("count"));
+        assertFalse(r.toJson().containsKey(ValidationReport.Issue.PRODUCT_MISSING_MANUFACTURER.name()));
+    }
+}
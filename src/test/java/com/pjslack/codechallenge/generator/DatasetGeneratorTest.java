@@ -0,0 +1,110 @@
+package com.pjslack.codechallenge.generator;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.JsonLinesReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import javax.json.JsonObject;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the synthetic data set generator
+ */
+public class DatasetGeneratorTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public DatasetGeneratorTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( DatasetGeneratorTest.class );
+    }
+
+    private static String[] generate(int scale, long seed) throws IOException
+    {
+        DatasetGenerator g = new DatasetGenerator(scale, seed);
+        g.setListingsPerScale(500);
+        StringWriter products = new StringWriter();
+        StringWriter listings = new StringWriter();
+        StringWriter truth = new StringWriter();
+        g.generate(products, listings, truth);
+        return new String[]
+        {
+            products.toString(), listings.toString(), truth.toString()
+        };
+    }
+
+    private static ByteArrayInputStream utf8(String s)
+    {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * the same scale and seed give the same data, another seed does not
+     *
+     * @throws IOException - generation error
+     */
+    public void testDeterministic() throws IOException
+    {
+        String[] first = generate(2, 7);
+        String[] second = generate(2, 7);
+        for (int i = 0; i < first.length; i++)
+        {
+            assertEquals(first[i], second[i]);
+        }
+        assertFalse(first[1].equals(generate(2, 8)[1]));
+    }
+
+    /**
+     * the catalog and listings load cleanly and the truth names real products
+     *
+     * @throws IOException - generation error
+     */
+    public void testGroundTruth() throws IOException
+    {
+        String[] data = generate(3, DatasetGenerator.DEFAULT_SEED);
+
+        CodeChallenge c = new CodeChallenge(utf8(data[1]), utf8(data[0]));
+        assertEquals(0, c.getTotalInvalidProdctListings());
+        assertEquals(3 * 743, c.getProductKeys().size());
+        assertEquals(1500, c.getTotalListings());
+        assertTrue(c.getNumberOfDuplicateListings() > 0);
+
+        HashSet<String> kinds = new HashSet<>();
+        try (JsonLinesReader r = new JsonLinesReader(new ByteArrayInputStream(data[2].getBytes(StandardCharsets.UTF_8))))
+        {
+            while (r.hasNext())
+            {
+                JsonObject t = r.next();
+                String kind = t.getString(DatasetGenerator.TRUTH_KIND_KEY);
+                kinds.add(kind);
+                String product = t.getString(CodeChallenge.PRODUCT_NAME_KEY, null);
+                if (DatasetGenerator.KIND_ACCESSORY.equals(kind))
+                {
+                    assertNull(product);
+                } else if (product != null)
+                {
+                    assertTrue(product, c.getProductKeys().containsKey(product));
+                }
+                assertTrue(c.getListingKeys().containsKey(t.getString(CodeChallenge.PRODUCT_LISTING_TITLE_KEY)));
+            }
+        }
+        assertEquals(3, kinds.size());
+    }
+}
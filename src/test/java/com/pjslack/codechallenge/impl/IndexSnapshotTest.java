@@ -0,0 +1,108 @@
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.ValidationReport;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the index snapshot
+ */
+public class IndexSnapshotTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public IndexSnapshotTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( IndexSnapshotTest.class );
+    }
+
+    /**
+     * a snapshot loads for the same catalog hash and gives the same matches,
+     * it is refused for another hash or when damaged
+     *
+     * @throws IOException - snapshot error
+     */
+    public void testLoadOnlyWhenValid() throws IOException
+    {
+        byte[] hash = {1, 2, 3};
+        File file = File.createTempFile("codeChallenge", ".idx");
+        try
+        {
+            SlackerTestMethod built = new SlackerTestMethod(new CodeChallenge());
+            built.process();
+            IndexSnapshot.write(file, hash, built);
+
+            SlackerTestMethod other = new SlackerTestMethod(new CodeChallenge());
+            assertFalse(IndexSnapshot.load(file, new byte[]{1, 2, 4}, other));
+
+            CodeChallenge c = new CodeChallenge();
+            SlackerTestMethod loaded = new SlackerTestMethod(c);
+            assertTrue(IndexSnapshot.load(file, hash, loaded));
+            loaded.process();
+            assertEquals(built.getNumberOfMatches(), loaded.getNumberOfMatches());
+            assertEquals(new ArrayList<>(built.getResults().keySet()), new ArrayList<>(loaded.getResults().keySet()));
+            assertEquals(1, c.getTotalInvalidProdctListings());
+
+            //flip a byte in the index
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+            {
+                raf.seek(raf.length() - 10);
+                int b = raf.read();
+                raf.seek(raf.length() - 10);
+                raf.write(b ^ 0xff);
+            }
+            assertFalse(IndexSnapshot.load(file, hash, new SlackerTestMethod(new CodeChallenge())));
+            assertFalse(IndexSnapshot.load(new File(file.getPath() + ".missing"), hash, other));
+        } finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * the validation report of a run that loads the snapshot is the report of
+     * the run that built the index
+     *
+     * @throws IOException - snapshot error
+     */
+    public void testSameValidationWhenLoaded() throws IOException
+    {
+        byte[] hash = {1, 2, 3};
+        File file = File.createTempFile("codeChallenge", ".idx");
+        try
+        {
+            CodeChallenge built = new CodeChallenge();
+            SlackerTestMethod builder = new SlackerTestMethod(built);
+            builder.buildIndex();
+            IndexSnapshot.write(file, hash, builder);
+
+            CodeChallenge loaded = new CodeChallenge();
+            assertTrue(IndexSnapshot.load(file, hash, new SlackerTestMethod(loaded)));
+
+            assertTrue(built.getValidationReport().getCount(ValidationReport.Issue.MODEL_DUPLICATE_IN_MANUFACTURER) > 0);
+            assertEquals(built.getValidationReport().getSummary(), loaded.getValidationReport().getSummary());
+            assertEquals(built.getTotalInvalidProdctListings(), loaded.getTotalInvalidProdctListings());
+        } finally
+        {
+            file.delete();
+        }
+    }
+}
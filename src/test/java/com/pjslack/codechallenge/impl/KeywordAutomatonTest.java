@@ -0,0 +1,86 @@
+package com.pjslack.codechallenge.impl;
+
+import java.util.ArrayList;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the keyword automaton
+ */
+public class KeywordAutomatonTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public KeywordAutomatonTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( KeywordAutomatonTest.class );
+    }
+
+    /**
+     * every keyword contained in the text must be reported, including keywords
+     * found through the failure links and keywords added under several ids
+     */
+    public void testFindsAllKeywords()
+    {
+        KeywordAutomaton a = new KeywordAutomaton();
+        a.addKeyword("CANON", 0);
+        a.addKeyword("NON", 1);
+        a.addKeyword("IXUS", 2);
+        a.addKeyword("IXUS", 3);
+        a.addKeyword("SONY", 4);
+        a.build();
+
+        ArrayList<String> hits = new ArrayList<>();
+        a.search("CANON DIGITAL IXUS 130 ÉDITION", (id, start, length) -> hits.add(id + "@" + start + ":" + length));
+
+        assertTrue(hits.contains("0@0:5"));
+        assertTrue(hits.contains("1@2:3"));
+        assertTrue(hits.contains("2@14:4"));
+        assertTrue(hits.contains("3@14:4"));
+        assertEquals(4, hits.size());
+    }
+
+    /**
+     * an empty keyword is contained in every text, as with String.contains
+     */
+    public void testEmptyKeyword()
+    {
+        KeywordAutomaton a = new KeywordAutomaton();
+        a.addKeyword("", 7);
+        a.build();
+
+        ArrayList<Integer> hits = new ArrayList<>();
+        a.search("", (id, start, length) -> hits.add(id));
+        assertEquals(1, hits.size());
+        assertEquals(7, (int) hits.get(0));
+    }
+
+    /**
+     * keywords cannot be added once the automaton is built
+     */
+    public void testAddAfterBuild()
+    {
+        KeywordAutomaton a = new KeywordAutomaton();
+        a.build();
+        try
+        {
+            a.addKeyword("X", 0);
+            fail("expected an IllegalStateException");
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+}
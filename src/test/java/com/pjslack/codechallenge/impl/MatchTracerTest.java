@@ -0,0 +1,84 @@
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
+import com.pjslack.codechallenge.searchengine.MatchResult;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for match tracing
+ */
+public class MatchTracerTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public MatchTracerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( MatchTracerTest.class );
+    }
+
+    /**
+     * the tracer keeps the sampled listings, only the most recent when it is
+     * full, and tracing does not change a result
+     *
+     * @throws IOException - error reading the bundled data
+     */
+    public void testTrace() throws IOException
+    {
+        CodeChallenge c = new CodeChallenge();
+        SlackerTestMethod engine = new SlackerTestMethod(c);
+        engine.buildIndex();
+
+        Listing ambiguous = new Listing("Camera strap for Nikon Coolpix L21, L22", "Nikon", null);
+        Listing noManufacturer = new Listing("LED Flash Macro Ring Light", "Neewer", null);
+        MatchResult untraced = engine.match(ambiguous);
+
+        //every other listing is traced and the last two traces are kept
+        MatchTracer tracer = new MatchTracer(2, 2);
+        engine.setTracer(tracer);
+        assertSame(untraced, engine.match(ambiguous));
+        engine.match(noManufacturer);
+        engine.match(noManufacturer);
+        engine.match(noManufacturer);
+        engine.match(ambiguous);
+        engine.setTracer(null);
+        engine.match(ambiguous);
+
+        assertEquals(5, tracer.getListingsSeen());
+        assertEquals(3, tracer.getTracesRecorded());
+        List<MatchTrace> traces = tracer.getTraces();
+        assertEquals(2, traces.size());
+        assertEquals(noManufacturer.getTitle(), traces.get(0).getTitle());
+        assertEquals(MatchResult.Reason.NO_MANUFACTURER, traces.get(0).getResult().getReason());
+        assertEquals(0, traces.get(0).getModelsProbed());
+
+        MatchTrace last = traces.get(1);
+        assertEquals(untraced.getReason(), last.getResult().getReason());
+        assertEquals(MatchResult.Reason.AMBIGUOUS_MODEL, last.getResult().getReason());
+        assertTrue(last.getModelsProbed() >= 2);
+        assertTrue(last.getPatternsTried() >= last.getModelsProbed());
+        assertEquals(1, last.getDecisions().size());
+
+        StringWriter out = new StringWriter();
+        assertEquals(2, tracer.write(out));
+        assertEquals(2, out.toString().split("\n").length);
+        assertTrue(out.toString().contains("\"reason\":\"AMBIGUOUS_MODEL\""));
+    }
+}
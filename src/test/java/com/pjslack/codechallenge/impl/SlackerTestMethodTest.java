@@ -0,0 +1,86 @@
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
+import com.pjslack.codechallenge.searchengine.MatchResult;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the single listing match of the SlackerTestMethod
+ */
+public class SlackerTestMethodTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public SlackerTestMethodTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( SlackerTestMethodTest.class );
+    }
+
+    /**
+     * matching the listings one at a time from many threads gives the batch
+     * results, with a reason for every miss
+     *
+     * @throws IOException - error reading the bundled data
+     */
+    public void testMatchAgreesWithProcess() throws IOException
+    {
+        CodeChallenge c = new CodeChallenge();
+        SlackerTestMethod engine = new SlackerTestMethod(c);
+        try
+        {
+            engine.match(c.getListingKeys().values().iterator().next());
+            fail("match before the index is built");
+        } catch (IllegalStateException ex)
+        {
+            //expected
+        }
+        engine.process();
+
+        HashMap<String, String> batch = new HashMap<>();
+        engine.getResults().forEach((productName, listings) -> listings.forEach((l) -> batch.put(l.getTitle(), productName)));
+
+        ConcurrentHashMap<String, MatchResult> single = new ConcurrentHashMap<>();
+        c.getListingKeys().values().parallelStream().forEach((l) -> single.put(l.getTitle(), engine.match(l)));
+
+        int matched = 0;
+        for (Map.Entry<String, MatchResult> e : single.entrySet())
+        {
+            MatchResult r = e.getValue();
+            assertEquals(e.getKey(), batch.get(e.getKey()), r.getProductName().orElse(null));
+            assertEquals(r.getProductName().isPresent(), r.isMatched());
+            if (r.isMatched())
+            {
+                matched++;
+                //the product id is the one the sink gives the product
+                assertEquals(engine.getResultSink().getProductId(batch.get(e.getKey())), r.getProductId());
+                //one result is kept for each product
+                assertSame(r, engine.match(c.getListingKeys().get(e.getKey())));
+            }
+        }
+        assertTrue(matched > 0);
+
+        Listing accessory = new Listing("LED Flash Macro Ring Light", "Neewer Electronics Accessories", null);
+        assertSame(MatchResult.NO_MANUFACTURER, engine.match(accessory));
+        Listing noModel = new Listing("Canon camera bag", "Canon Canada", null);
+        assertSame(MatchResult.NO_MODEL, engine.match(noModel));
+    }
+}
@@ -0,0 +1,153 @@
+package com.pjslack.codechallenge.impl;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
+import com.pjslack.codechallenge.searchengine.MatchResult;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the title match cache
+ */
+public class TitleMatchCacheTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TitleMatchCacheTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TitleMatchCacheTest.class );
+    }
+
+    /**
+     * the title is kept as it is in the fingerprint
+     */
+    public void testFingerprint()
+    {
+        assertFalse(TitleMatchCache.fingerprint("NIKON", null, "NIKON D90")
+                .equals(TitleMatchCache.fingerprint("NIKON", null, "NIKON  D90")));
+        assertFalse(TitleMatchCache.fingerprint("NIKON", null, "D90")
+                .equals(TitleMatchCache.fingerprint("NIKON", "COOLPIX", "D90")));
+    }
+
+    /**
+     * a fingerprint too long for writeUTF is left out of the file and the rest
+     * are still written
+     *
+     * @throws IOException - if the cache file cannot be written or read
+     */
+    public void testLongFingerprintSkipped() throws IOException
+    {
+        char[] title = new char[40000];
+        Arrays.fill(title, '\u00e9');
+        String tooLong = TitleMatchCache.fingerprint("NIKON", null, new String(title));
+        assertFalse(TitleMatchCache.fitsUTF(tooLong));
+        assertTrue(TitleMatchCache.fitsUTF(TitleMatchCache.fingerprint("NIKON", null, "D90")));
+
+        TitleMatchCache cache = new TitleMatchCache(32);
+        cache.put(tooLong, MatchResult.NO_MODEL);
+        cache.put(TitleMatchCache.fingerprint("NIKON", null, "D90"), MatchResult.NO_MODEL);
+
+        SlackerTestMethod engine = new SlackerTestMethod(new CodeChallenge());
+        engine.buildIndex();
+        byte[] catalogHash = {1};
+        File file = File.createTempFile("titles", ".bin");
+        try
+        {
+            cache.write(file, catalogHash);
+            TitleMatchCache read = new TitleMatchCache(32);
+            assertEquals(1, read.load(file, catalogHash, engine));
+            assertNotNull(read.get(TitleMatchCache.fingerprint("NIKON", null, "D90")));
+        } finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * the cache holds no more than its capacity and counts hits and misses
+     */
+    public void testBounded()
+    {
+        TitleMatchCache cache = new TitleMatchCache(32);
+        for (int i = 0; i < 1000; i++)
+        {
+            cache.put(TitleMatchCache.fingerprint("NIKON", null, "TITLE " + i), MatchResult.NO_MODEL);
+        }
+        assertTrue(cache.size() <= 32);
+        assertNotNull(cache.get(TitleMatchCache.fingerprint("NIKON", null, "TITLE 999")));
+        assertNull(cache.get(TitleMatchCache.fingerprint("NIKON", "COOLPIX", "TITLE 999")));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0.0);
+    }
+
+    /**
+     * the cached engine gives the same results, and a cache read back from
+     * its file answers every title only for the same catalog
+     *
+     * @throws IOException - if the bundled data or the cache cannot be read
+     */
+    public void testCachedEngineAndFile() throws IOException
+    {
+        CodeChallenge c = new CodeChallenge();
+        SlackerTestMethod plain = new SlackerTestMethod(c);
+        plain.buildIndex();
+        SlackerTestMethod cached = new SlackerTestMethod(c);
+        cached.buildIndex();
+        TitleMatchCache cache = new TitleMatchCache(TitleMatchCache.DEFAULT_CAPACITY);
+        cached.setTitleCache(cache);
+
+        for (Listing l : c.getListingKeys().values())
+        {
+            MatchResult expected = plain.match(l);
+            MatchResult result = cached.match(l);
+            assertEquals(l.getTitle(), expected.getReason(), result.getReason());
+            assertEquals(l.getTitle(), expected.getProductName(), result.getProductName());
+        }
+        //a title differing only in whitespace is searched on its own
+        Listing single = new Listing("Canon EOS 5D body", "Canon", null);
+        Listing spaced = new Listing("Canon EOS  5D body", "Canon", null);
+        assertEquals(plain.match(single).getReason(), cached.match(single).getReason());
+        assertEquals(plain.match(spaced).getReason(), cached.match(spaced).getReason());
+        assertEquals(plain.match(spaced).getProductName(), cached.match(spaced).getProductName());
+        assertTrue(cache.getHits() > 0);
+
+        byte[] catalogHash = {1, 2, 3};
+        File file = File.createTempFile("titles", ".bin");
+        try
+        {
+            cache.write(file, catalogHash);
+
+            TitleMatchCache stale = new TitleMatchCache(TitleMatchCache.DEFAULT_CAPACITY);
+            assertEquals(0, stale.load(file, new byte[]{9}, plain));
+
+            TitleMatchCache read = new TitleMatchCache(TitleMatchCache.DEFAULT_CAPACITY);
+            assertEquals(cache.size(), read.load(file, catalogHash, plain));
+            plain.setTitleCache(read);
+            for (Listing l : c.getListingKeys().values())
+            {
+                plain.match(l);
+            }
+            assertEquals(0, read.getMisses());
+        } finally
+        {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.pjslack.codechallenge.impl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the inverted model token index
+ */
+public class TokenIndexTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TokenIndexTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TokenIndexTest.class );
+    }
+
+    /**
+     * titles split on anything that is not an ASCII letter or digit
+     */
+    public void testTokenize()
+    {
+        assertEquals(Arrays.asList("CANON", "SX130IS", "12", "1", "MP"), TokenIndex.tokenize("CANON SX130IS-12.1 MP"));
+        assertEquals(Arrays.asList("DSC", "W310"), TokenIndex.tokenize("(DSC_W310)"));
+        assertTrue(TokenIndex.tokenize(" - ").isEmpty());
+    }
+
+    /**
+     * the anchor token is the longest run bounded on both sides by word breaks,
+     * whitespace or separators
+     */
+    public void testAnchorToken()
+    {
+        assertEquals("DSCW310", TokenIndex.anchorToken("\\bDSCW310\\b"));
+        assertEquals("W310", TokenIndex.anchorToken("\\bDSC-W310\\b"));
+        assertEquals("SX130", TokenIndex.anchorToken("\\bSX130\\s+IS\\b"));
+        //runs next to a wildcard are not whole tokens
+        assertEquals("130", TokenIndex.anchorToken("\\b1.5 130\\b"));
+        assertNull(TokenIndex.anchorToken("\\b1.5\\b"));
+        //an optional separator does not bound a run
+        assertNull(TokenIndex.anchorToken("\\bAB-?C\\b"));
+        assertNull(TokenIndex.anchorToken("\\bA(B)\\b"));
+        assertNull(TokenIndex.anchorToken("DSC"));
+    }
+
+    /**
+     * lookups only return the ranks of the scope being searched
+     */
+    public void testLookup()
+    {
+        ModelScope canon = new ModelScope(new String[]{"SX130IS", "G12"});
+        ModelScope nikon = new ModelScope(new String[]{"D90"});
+        TokenIndex index = new TokenIndex();
+        index.add("SX130", canon, 0);
+        index.add("SX130IS", canon, 0);
+        index.add("G12", canon, 1);
+        index.add("D90", nikon, 0);
+
+        BitSet c = canon.newCandidates();
+        index.lookup(TokenIndex.tokenize("CANON SX130 IS WITH D90 LENS"), canon, c);
+        assertTrue(c.get(0));
+        assertFalse(c.get(1));
+        assertEquals(1, c.cardinality());
+        assertEquals(4, index.size());
+
+        //a token shared by many models grows its postings and keeps them all
+        String[] models = new String[1000];
+        Arrays.fill(models, "X");
+        ModelScope many = new ModelScope(models);
+        for (int rank = 0; rank < models.length; rank++)
+        {
+            index.add("IS", many, rank);
+            index.add("IS", many, rank);
+        }
+        index.finish();
+        c = many.newCandidates();
+        index.lookup(TokenIndex.tokenize("SX130 IS"), many, c);
+        assertEquals(models.length, c.cardinality());
+        c = canon.newCandidates();
+        index.lookup(TokenIndex.tokenize("SX130 IS"), canon, c);
+        assertEquals(1, c.cardinality());
+    }
+}
@@ -0,0 +1,222 @@
+package com.pjslack.codechallenge.incremental;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.JsonLinesReader;
+import com.pjslack.codechallenge.Listing;
+import com.pjslack.codechallenge.impl.SlackerTestMethod;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for incremental matching
+ */
+public class IncrementalCodeChallengeTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public IncrementalCodeChallengeTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( IncrementalCodeChallengeTest.class );
+    }
+
+    private static List<String> listingLines(int count) throws IOException
+    {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                IncrementalCodeChallengeTest.class.getResourceAsStream(CodeChallenge.LISTINGS_RESOURCE_PATH), StandardCharsets.UTF_8)))
+        {
+            return r.lines().limit(count).collect(Collectors.toList());
+        }
+    }
+
+    private static InputStream utf8(List<String> lines)
+    {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InputStream products()
+    {
+        return IncrementalCodeChallengeTest.class.getResourceAsStream(CodeChallenge.PRODUCTS_RESOURCE_PATH);
+    }
+
+    private static List<String> productLines() throws IOException
+    {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(products(), StandardCharsets.UTF_8)))
+        {
+            return r.lines().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * product_name and title of every listing in a results file
+     */
+    private static HashSet<String> matchedPairs(File results) throws IOException
+    {
+        HashSet<String> pairs = new HashSet<>();
+        try (JsonLinesReader r = new JsonLinesReader(new FileInputStream(results)))
+        {
+            while (r.hasNext())
+            {
+                JsonObject line = r.next();
+                for (JsonValue l : line.getJsonArray("listings"))
+                {
+                    pairs.add(line.getString("product_name") + "|" + ((JsonObject) l).getString("title"));
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * two incremental runs over a growing feed give the same matches as one
+     * run over the whole feed, and the second run reads the index and only
+     * matches the new titles
+     *
+     * @throws IOException - file error
+     */
+    public void testTwoRunsMatchOneRun() throws IOException
+    {
+        List<String> all = listingLines(4000);
+        List<String> firstHalf = new ArrayList<>(all.subList(0, 2000));
+
+        File dir = Files.createTempDirectory("incremental").toFile();
+        File state = new File(dir, IncrementalCodeChallenge.STATE_FILE_NAME);
+        File results = new File(dir, "codeChallenge.txt");
+        File oneRunResults = new File(dir, "oneRun.txt");
+        try
+        {
+            IncrementalCodeChallenge run = new IncrementalCodeChallenge(state, results);
+            run.run(utf8(firstHalf), products());
+            assertFalse(run.isIndexRestored());
+            assertEquals(0, run.getCodeChallenge().getNumberOfSkippedListings());
+
+            run = new IncrementalCodeChallenge(state, results);
+            run.run(utf8(all), products());
+            assertTrue(run.isIndexRestored());
+            assertTrue(run.getCodeChallenge().getNumberOfSkippedListings() >= 2000);
+            assertTrue(run.getCodeChallenge().getListingKeys().size() < 2000);
+
+            new IncrementalCodeChallenge(new File(dir, "oneRun.state"), oneRunResults).run(utf8(all), products());
+
+            HashSet<String> pairs = matchedPairs(results);
+            assertFalse(pairs.isEmpty());
+            assertEquals(matchedPairs(oneRunResults), pairs);
+        } finally
+        {
+            for (File f : dir.listFiles())
+            {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * a product added to the catalog between two runs over the same feed is
+     * matched to the listings the first run left unmatched, and the results
+     * file holds the matches of the new catalog only
+     *
+     * @throws IOException - file error
+     */
+    public void testCatalogChangeMatchesAgain() throws IOException
+    {
+        List<String> listings = listingLines(2000);
+        List<String> catalog = productLines();
+
+        File dir = Files.createTempDirectory("incremental").toFile();
+        File state = new File(dir, IncrementalCodeChallenge.STATE_FILE_NAME);
+        File results = new File(dir, "codeChallenge.txt");
+        File oneRunResults = new File(dir, "oneRun.txt");
+        try
+        {
+            new IncrementalCodeChallenge(new File(dir, "oneRun.state"), oneRunResults).run(utf8(listings), utf8(catalog));
+            HashSet<String> expected = matchedPairs(oneRunResults);
+            String added = expected.iterator().next().split("\\|")[0];
+
+            //the first catalog is missing a product that matches the feed
+            List<String> smaller = new ArrayList<>();
+            for (String line : catalog)
+            {
+                if (!added.equals(Json.createReader(new StringReader(line)).readObject().getString("product_name")))
+                {
+                    smaller.add(line);
+                }
+            }
+            assertEquals(catalog.size() - 1, smaller.size());
+
+            IncrementalCodeChallenge run = new IncrementalCodeChallenge(state, results);
+            run.run(utf8(listings), utf8(smaller));
+            assertFalse(matchedPairs(results).equals(expected));
+
+            run = new IncrementalCodeChallenge(state, results);
+            run.run(utf8(listings), utf8(catalog));
+            assertFalse(run.isIndexRestored());
+            assertEquals(0, run.getTitlesSeen());
+            assertEquals(0, run.getCodeChallenge().getNumberOfSkippedListings());
+            assertEquals(expected, matchedPairs(results));
+        } finally
+        {
+            for (File f : dir.listFiles())
+            {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * an engine reading a written index matches exactly as the engine that
+     * built it
+     *
+     * @throws IOException - index error
+     */
+    public void testIndexRoundTrip() throws IOException
+    {
+        SlackerTestMethod built = new SlackerTestMethod(new CodeChallenge());
+        built.process();
+
+        IncrementalState state = new IncrementalState(new byte[0]);
+        state.keepIndex(built);
+        SlackerTestMethod read = new SlackerTestMethod(new CodeChallenge());
+        assertTrue(state.restoreIndex(read));
+        read.process();
+
+        assertEquals(built.getNumberOfMatches(), read.getNumberOfMatches());
+        assertEquals(new ArrayList<>(built.getResults().keySet()), new ArrayList<>(read.getResults().keySet()));
+        for (String productName : built.getResults().keySet())
+        {
+            List<String> a = built.getResults().get(productName).stream().map(Listing::getTitle).collect(Collectors.toList());
+            List<String> b = read.getResults().get(productName).stream().map(Listing::getTitle).collect(Collectors.toList());
+            assertEquals(a, b);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.pjslack.codechallenge.metrics;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.searchengine.AbstractSearchEngine;
+import com.pjslack.codechallenge.searchengine.SearchEngines;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the run metrics
+ */
+public class MetricsTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public MetricsTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( MetricsTest.class );
+    }
+
+    /**
+     * percentiles fall within a factor of two of the true value
+     */
+    public void testHistogram()
+    {
+        Histogram h = new Histogram();
+        assertEquals(0, h.getPercentile(50));
+        for (int i = 1; i <= 1000; i++)
+        {
+            h.record(i);
+        }
+        h.record(-5);
+        assertEquals(1001, h.getCount());
+        assertEquals(1000, h.getMax());
+        long p50 = h.getPercentile(50);
+        assertTrue(p50 >= 500 && p50 < 1000);
+        assertEquals(1000, h.getPercentile(100));
+        assertEquals(0, h.getPercentile(0));
+
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+
+    /**
+     * a run records every phase, the listings and the candidates and the
+     * summary and JMX show them
+     *
+     * @throws IOException - if the bundled data cannot be read
+     * @throws JMException - if the metrics cannot be registered
+     */
+    public void testRunMetrics() throws IOException, JMException
+    {
+        CodeChallenge c = new CodeChallenge();
+        AbstractSearchEngine engine = SearchEngines.create(SearchEngines.DEFAULT_ENGINE, c);
+        engine.process();
+
+        Metrics m = c.getMetrics();
+        for (String phase : new String[]
+        {
+            Metrics.PHASE_LOAD_LISTINGS, Metrics.PHASE_LOAD_PRODUCTS, Metrics.PHASE_BUILD_INDEX,
+            Metrics.PHASE_MATCH, Metrics.PHASE_MATCH_DUPLICATES
+        })
+        {
+            assertTrue(phase, m.getPhaseNanos(phase) > 0);
+        }
+        assertEquals((long) c.getListingKeys().size(), (long) m.getCounters().get(Metrics.COUNTER_LISTINGS_MATCHED));
+        assertEquals(c.getListingKeys().size(), m.histogram(Metrics.HISTOGRAM_MATCH_LATENCY).getCount());
+        assertTrue(m.getCounters().get(Metrics.COUNTER_REGEX_PROBES) > 0);
+        assertTrue(m.getListingsPerSecond() > 0);
+
+        File summary = File.createTempFile("metrics", ".json");
+        try
+        {
+            m.writeSummary(summary);
+            try (InputStream in = new FileInputStream(summary); JsonReader r = Json.createReader(in))
+            {
+                JsonObject j = r.readObject();
+                assertTrue(j.getJsonObject("phaseNanos").containsKey(Metrics.PHASE_MATCH));
+                assertEquals(c.getListingKeys().size(), j.getJsonObject("histograms")
+                        .getJsonObject(Metrics.HISTOGRAM_MATCH_LATENCY).getInt("count"));
+            }
+        } finally
+        {
+            summary.delete();
+        }
+
+        Metrics.register(m);
+        Object rate = ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(Metrics.OBJECT_NAME), "ListingsPerSecond");
+        assertEquals(m.getListingsPerSecond(), (Double) rate, 0.0);
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(Metrics.OBJECT_NAME));
+    }
+}
@@ -0,0 +1,81 @@
+package com.pjslack.codechallenge.normalize;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.JsonLinesReader;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for key normalization
+ */
+public class KeyNormalizerTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public KeyNormalizerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( KeyNormalizerTest.class );
+    }
+
+    private static String reference(String pre)
+    {
+        return pre.toUpperCase().replaceAll("[^A-Za-z0-9\\.]", "");
+    }
+
+    /**
+     * the character loop must give the same result as the regex it replaces
+     */
+    public void testConditionMatchesReference()
+    {
+        assertNull(KeyNormalizer.condition(null));
+        assertEquals("", KeyNormalizer.condition(""));
+        assertEquals("CYBERSHOT", KeyNormalizer.condition("Cyber-shot"));
+        assertEquals("130IS", KeyNormalizer.condition("130 IS"));
+        String same = "DSCW310";
+        assertSame(same, KeyNormalizer.condition(same));
+        assertEquals(reference("Straße Ünïcode"), KeyNormalizer.condition("Straße Ünïcode"));
+
+        //every manufacturer and title in the bundled listings
+        try (JsonLinesReader r = new JsonLinesReader(getClass().getResourceAsStream(CodeChallenge.LISTINGS_RESOURCE_PATH)))
+        {
+            r.forEachRemaining((j) ->
+            {
+                String mfg = j.getString(CodeChallenge.PRODUCT_MANUFACTURER_KEY);
+                String title = j.getString(CodeChallenge.PRODUCT_LISTING_TITLE_KEY);
+                assertEquals(reference(mfg), KeyNormalizer.condition(mfg));
+                assertEquals(reference(title), KeyNormalizer.condition(title));
+            });
+        }
+    }
+
+    /**
+     * repeated values are answered from the cache and the cache stops growing
+     * at its capacity
+     */
+    public void testInterningCache()
+    {
+        InterningCache cache = new InterningCache(2, KeyNormalizer::condition);
+        String first = cache.get("Canon Canada");
+        assertEquals("CANONCANADA", first);
+        assertSame(first, cache.get("Canon Canada"));
+        cache.get("Nikon");
+        cache.get("Sony");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertNull(cache.get(null));
+    }
+}
@@ -0,0 +1,121 @@
+package com.pjslack.codechallenge.searchengine;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.Listing;
+import com.pjslack.codechallenge.impl.SlackerTestMethod;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for collecting matches from many threads
+ */
+public class ResultSinkTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ResultSinkTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ResultSinkTest.class );
+    }
+
+    /**
+     * listings added from many threads in any order come back in ordinal
+     * order, listings of one ordinal in the order they were added
+     */
+    public void testConcurrentAdd()
+    {
+        ResultSink sink = new ResultSink(Arrays.asList("b", "a", "c"));
+        assertEquals(3, sink.getProductCount());
+        assertEquals("a", sink.getProductName(0));
+        assertEquals(-1, sink.getProductId("d"));
+
+        int n = 20000;
+        Listing[] listings = new Listing[n];
+        for (int i = 0; i < n; i++)
+        {
+            listings[i] = new Listing("title " + i, "maker", null);
+        }
+        IntStream.range(0, n).parallel().forEach((i) ->
+        {
+            if (i % 3 == 0)
+            {
+                sink.miss();
+            } else
+            {
+                sink.add(i % 3 == 1 ? "a" : "b", i, listings[i]);
+            }
+        });
+        assertEquals(n / 3 + 1, sink.getMissed());
+        assertEquals(n - sink.getMissed(), sink.getMatched());
+
+        List<Listing> a = sink.getListings("a");
+        for (int k = 0; k < a.size(); k++)
+        {
+            assertSame(listings[3 * k + 1], a.get(k));
+        }
+        assertTrue(sink.getListings("c").isEmpty());
+
+        //a listing added again with its ordinal follows it
+        Listing copy = new Listing("title 1", "maker", null);
+        sink.add("a", 1, copy);
+        assertSame(copy, sink.getListings("a").get(1));
+
+        List<String> products = new ArrayList<>();
+        sink.forEach((productName, l) -> products.add(productName));
+        assertEquals(Arrays.asList("a", "b"), products);
+        assertEquals(a.size() + 1, sink.toResults().get("a").size());
+
+        try
+        {
+            sink.add("d", 0, copy);
+            fail("added to an unknown product");
+        } catch (IllegalArgumentException ex)
+        {
+            //expected
+        }
+
+        sink.clear();
+        assertEquals(0, sink.getMatched());
+        assertTrue(sink.toResults().isEmpty());
+    }
+
+    /**
+     * the engine gives the same results in the same order on one thread and on
+     * many
+     *
+     * @throws IOException - error reading the bundled data
+     */
+    public void testSameOnManyThreads() throws IOException
+    {
+        CodeChallenge c = new CodeChallenge();
+        SlackerTestMethod one = new SlackerTestMethod(c);
+        one.process();
+        SlackerTestMethod many = new SlackerTestMethod(c);
+        many.setParallelism(4);
+        many.setBatchSize(16);
+        many.process();
+
+        assertEquals(one.getResults(), many.getResults());
+        assertEquals(one.getNumberOfMatches(), many.getNumberOfMatches());
+        assertEquals(one.getNumberOfMisses(), many.getNumberOfMisses());
+        assertEquals(one.getNumberOfMatches(), many.getResultSink().getMatched());
+    }
+}
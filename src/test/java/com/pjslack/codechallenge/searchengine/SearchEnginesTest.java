@@ -0,0 +1,73 @@
+package com.pjslack.codechallenge.searchengine;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.impl.SlackerTestMethod;
+import java.io.IOException;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for search engine discovery and comparison
+ */
+public class SearchEnginesTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public SearchEnginesTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( SearchEnginesTest.class );
+    }
+
+    /**
+     * the bundled engines are found by name and by class name and an unknown
+     * engine is refused
+     */
+    public void testCreate() throws IOException
+    {
+        assertTrue(SearchEngines.names().contains(SearchEngines.DEFAULT_ENGINE));
+        assertTrue(SearchEngines.names().contains("slacker-leftmost"));
+
+        CodeChallenge c = new CodeChallenge();
+        assertTrue(SearchEngines.create(SearchEngines.DEFAULT_ENGINE, c) instanceof SlackerTestMethod);
+        assertTrue(SearchEngines.create(SlackerTestMethod.class.getName(), c) instanceof SlackerTestMethod);
+
+        try
+        {
+            SearchEngines.create("no-such-engine", c);
+            fail("unknown engine was created");
+        } catch (IllegalArgumentException ex)
+        {
+            //expected
+        }
+    }
+
+    /**
+     * an engine compared with itself agrees on every listing
+     */
+    public void testCompareWithItself() throws IOException
+    {
+        EngineComparison comparison = new EngineComparison(new CodeChallenge());
+        EngineComparison.Report a = comparison.run(SearchEngines.DEFAULT_ENGINE);
+        EngineComparison.Report b = comparison.run(SearchEngines.DEFAULT_ENGINE);
+        assertEquals(a.getMatches(), b.getMatches());
+        assertTrue(a.getMatches() > 0);
+
+        EngineComparison.Diff diff = comparison.diff(a, b);
+        assertEquals(0, diff.getChanged() + diff.getLost() + diff.getGained());
+        assertTrue(diff.getSamples().isEmpty());
+        assertTrue(a.getLatencyNanos(50) <= a.getLatencyNanos(99));
+    }
+}
@@ -0,0 +1,108 @@
+package com.pjslack.codechallenge.server;
+
+import com.pjslack.codechallenge.CodeChallenge;
+import com.pjslack.codechallenge.JsonLinesReader;
+import com.pjslack.codechallenge.impl.SlackerTestMethod;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.json.JsonObject;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the match server
+ */
+public class MatchServerTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public MatchServerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( MatchServerTest.class );
+    }
+
+    private static int post(MatchServer server, String body, List<JsonObject> reply) throws IOException
+    {
+        URL url = new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), MatchServer.MATCH_PATH);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream())
+        {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        if (status == 200)
+        {
+            try (JsonLinesReader r = new JsonLinesReader(connection.getInputStream()))
+            {
+                r.forEachRemaining(reply::add);
+            }
+        } else
+        {
+            //drain the error reply so the connection can be reused
+            try (InputStream err = connection.getErrorStream())
+            {
+                while (err.read() >= 0)
+                {
+                }
+            }
+        }
+        return status;
+    }
+
+    /**
+     * a batch is answered line for line, bad listings are reported in place
+     * and unparseable input is refused
+     *
+     * @throws IOException - server error
+     */
+    public void testMatchBatch() throws IOException
+    {
+        SlackerTestMethod engine = MatchServer.buildEngine(
+                getClass().getResourceAsStream(CodeChallenge.PRODUCTS_RESOURCE_PATH), null);
+        MatchServer server = new MatchServer(engine, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+        server.start();
+        try
+        {
+            List<JsonObject> reply = new ArrayList<>();
+            int status = post(server,
+                    "{\"title\":\"Canon PowerShot SX130IS 12.1 MP Digital Camera + 16GB Deluxe Accessory Kit\",\"manufacturer\":\"Canon Canada\",\"currency\":\"CAD\",\"price\":\"199.96\"}\n"
+                    + "{\"title\":\"LED Flash Macro Ring Light\",\"manufacturer\":\"Neewer Electronics Accessories\"}\n"
+                    + "{\"title\":\"no manufacturer\"}\n", reply);
+            assertEquals(200, status);
+            assertEquals(3, reply.size());
+            assertEquals("Canon_PowerShot_SX130_IS", reply.get(0).getString(CodeChallenge.PRODUCT_NAME_KEY));
+            assertTrue(reply.get(1).isNull(CodeChallenge.PRODUCT_NAME_KEY));
+            assertEquals("MATCHED", reply.get(0).getString(MatchServer.REASON_KEY));
+            assertEquals("NO_MANUFACTURER", reply.get(1).getString(MatchServer.REASON_KEY));
+            assertTrue(reply.get(2).containsKey("error"));
+
+            assertEquals(400, post(server, "{not json\n", new ArrayList<>()));
+        } finally
+        {
+            server.stop();
+        }
+    }
+}